@@ -13,8 +13,8 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class AccountTokenServiceImpl implements IAccountTokenService {
 
-    @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    @Resource(name = "longRedisTemplate")
+    private RedisTemplate<String, Long> redisTemplate;
     @Resource
     private AccountProviderCacheKeyBuilder cacheKeyBuilder;
 
@@ -34,7 +34,7 @@ public class AccountTokenServiceImpl implements IAccountTokenService {
 
         // 将登录令牌与用户ID关联，并保存到Redis缓存中，设置过期时间为30天
         // 这里使用了缓存键构建器buildUserLoginTokenKey来生成缓存键，以保证键的命名规范和唯一性
-        redisTemplate.opsForValue().set(cacheKeyBuilder.buildUserLoginTokenKey(token), String.valueOf(userId), 30, TimeUnit.DAYS);
+        redisTemplate.opsForValue().set(cacheKeyBuilder.buildUserLoginTokenKey(token), userId, 30, TimeUnit.DAYS);
 
         // 返回生成的登录令牌
         return token;
@@ -53,10 +53,7 @@ public class AccountTokenServiceImpl implements IAccountTokenService {
         // 构建Redis中的键，用于存储用户登录token
         String redisKey = cacheKeyBuilder.buildUserLoginTokenKey(tokenKey);
 
-        // 从Redis中获取与键关联的用户ID值
-        Integer userId = (Integer) redisTemplate.opsForValue().get(redisKey);
-
-        // 如果用户ID为空，则直接返回null；否则将其转换为Long类型并返回
-        return userId == null ? null : Long.valueOf(userId);
+        // 从Redis中获取与键关联的用户ID值，如果不存在则返回null
+        return redisTemplate.opsForValue().get(redisKey);
     }
 }
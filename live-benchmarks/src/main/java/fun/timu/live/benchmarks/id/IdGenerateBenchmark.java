@@ -0,0 +1,118 @@
+package fun.timu.live.benchmarks.id;
+
+import fun.timu.live.id.generate.provider.config.IdGenerateProperties;
+import fun.timu.live.id.generate.provider.enums.IdGenerateModeEnum;
+import fun.timu.live.id.generate.provider.refresh.SegmentRefreshScheduler;
+import fun.timu.live.id.generate.provider.service.bo.IdWorkerLeaseBO;
+import fun.timu.live.id.generate.provider.service.impl.IdGenerateServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成热路径的基准测试，mapper使用内存实现
+ * <p>
+ * getSeqId/getUnSeqId/getSnowflakeId/getStripedSeqId使用足够大的步长，测量的是号段内分配的开销；
+ * getSeqIdWithRefresh把步长固定为100，测量持续预加载和切换号段时的开销，数据库延迟由dbLatencyMicros模拟
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerateBenchmark {
+    private static final int SEQ_ID = 1;
+    private static final int UN_SEQ_ID = 2;
+    private static final int SNOWFLAKE_ID = 3;
+    private static final int REFRESH_SEQ_ID = 4;
+    private static final int STRIPED_SEQ_ID = 5;
+
+    @State(Scope.Benchmark)
+    public static class SegmentState {
+        IdGenerateServiceImpl idGenerateService;
+        SegmentRefreshScheduler segmentRefreshScheduler;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            IdGenerateProperties idGenerateProperties = new IdGenerateProperties();
+            idGenerateProperties.setMaxStep(100_000_000);
+            idGenerateProperties.setSegmentDuration(Duration.ofDays(1));
+            InMemoryIdGenerateMapper mapper = new InMemoryIdGenerateMapper(0)
+                    .addRow(SEQ_ID, 1_000_000, 1, IdGenerateModeEnum.SEGMENT.getCode())
+                    .addRow(UN_SEQ_ID, 1_000_000, 0, IdGenerateModeEnum.SEGMENT.getCode())
+                    .addRow(SNOWFLAKE_ID, 1, 1, IdGenerateModeEnum.SNOWFLAKE.getCode())
+                    .addRow(STRIPED_SEQ_ID, 1_000_000, 1, IdGenerateModeEnum.STRIPED_SEGMENT.getCode());
+            segmentRefreshScheduler = new SegmentRefreshScheduler(idGenerateProperties, new SimpleMeterRegistry());
+            idGenerateService = createService(mapper, idGenerateProperties, segmentRefreshScheduler);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            segmentRefreshScheduler.destroy();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RefreshState {
+        @Param({"0", "500"})
+        public long dbLatencyMicros;
+
+        IdGenerateServiceImpl idGenerateService;
+        SegmentRefreshScheduler segmentRefreshScheduler;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            IdGenerateProperties idGenerateProperties = new IdGenerateProperties();
+            // 步长固定为100，每分配75个id就会触发一次预加载
+            idGenerateProperties.setMaxStep(100);
+            InMemoryIdGenerateMapper mapper = new InMemoryIdGenerateMapper(dbLatencyMicros)
+                    .addRow(REFRESH_SEQ_ID, 100, 1, IdGenerateModeEnum.SEGMENT.getCode());
+            segmentRefreshScheduler = new SegmentRefreshScheduler(idGenerateProperties, new SimpleMeterRegistry());
+            idGenerateService = createService(mapper, idGenerateProperties, segmentRefreshScheduler);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            segmentRefreshScheduler.destroy();
+        }
+    }
+
+    private static IdGenerateServiceImpl createService(InMemoryIdGenerateMapper mapper, IdGenerateProperties idGenerateProperties,
+                                                       SegmentRefreshScheduler segmentRefreshScheduler) throws Exception {
+        IdWorkerLeaseBO idWorkerLeaseBO = new IdWorkerLeaseBO();
+        idWorkerLeaseBO.setWorkerId(1);
+        idWorkerLeaseBO.setLeaseExpireAt(Long.MAX_VALUE);
+        IdGenerateServiceImpl idGenerateService = new IdGenerateServiceImpl(mapper.create(), idGenerateProperties, new SimpleMeterRegistry(),
+                () -> idWorkerLeaseBO, segmentRefreshScheduler, new TransactionTemplate(new NoopTransactionManager()));
+        idGenerateService.afterPropertiesSet();
+        return idGenerateService;
+    }
+
+    @Benchmark
+    public Long getSeqId(SegmentState state) {
+        return state.idGenerateService.getSeqId(SEQ_ID);
+    }
+
+    @Benchmark
+    public Long getUnSeqId(SegmentState state) {
+        return state.idGenerateService.getUnSeqId(UN_SEQ_ID);
+    }
+
+    @Benchmark
+    public Long getSnowflakeId(SegmentState state) {
+        return state.idGenerateService.getSeqId(SNOWFLAKE_ID);
+    }
+
+    @Benchmark
+    public Long getStripedSeqId(SegmentState state) {
+        return state.idGenerateService.getSeqId(STRIPED_SEQ_ID);
+    }
+
+    @Benchmark
+    public Long getSeqIdWithRefresh(RefreshState state) {
+        return state.idGenerateService.getSeqId(REFRESH_SEQ_ID);
+    }
+}
@@ -0,0 +1,38 @@
+package fun.timu.live.benchmarks.id;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.results.format.ResultFormatType;
+
+/**
+ * 依次以1、4、16、64个线程运行IdGenerateBenchmark，输出吞吐量、SampleTime分位数（包括p99）和gc分配速率
+ * <p>
+ * 打包：mvn -pl live-benchmarks -am package -DskipTests
+ * 运行：java -cp live-benchmarks/target/benchmarks.jar fun.timu.live.benchmarks.id.IdGenerateBenchmarkRunner [线程数...]
+ * 也可以直接使用JMH的命令行：java -jar live-benchmarks/target/benchmarks.jar IdGenerateBenchmark -t 16 -prof gc
+ */
+public class IdGenerateBenchmarkRunner {
+    private static final int[] DEFAULT_THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        int[] threadsList = DEFAULT_THREADS;
+        if (args.length > 0) {
+            threadsList = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threadsList[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int threads : threadsList) {
+            ChainedOptionsBuilder optionsBuilder = new OptionsBuilder()
+                    .include(IdGenerateBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("id-generate-benchmark-" + threads + "t.json");
+            new Runner(optionsBuilder.build()).run();
+        }
+    }
+}
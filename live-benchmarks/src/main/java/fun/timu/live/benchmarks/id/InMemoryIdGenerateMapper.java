@@ -0,0 +1,106 @@
+package fun.timu.live.benchmarks.id;
+
+import fun.timu.live.id.generate.provider.dao.mapper.IdGenerateMapper;
+import fun.timu.live.id.generate.provider.dao.po.IdGeneratePO;
+import org.springframework.beans.BeanUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存版的IdGenerateMapper，只实现IdGenerateServiceImpl用到的方法，可以模拟数据库的访问延迟
+ */
+public class InMemoryIdGenerateMapper {
+
+    private final Map<Integer, IdGeneratePO> rows = new TreeMap<>();
+    private final long latencyMicros;
+
+    /**
+     * @param latencyMicros 每次访问模拟的数据库延迟，单位微秒
+     */
+    public InMemoryIdGenerateMapper(long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+
+    /**
+     * 添加一条id生成配置
+     *
+     * @param id     主键
+     * @param step   步长
+     * @param isSeq  是否有序
+     * @param idMode id生成方式
+     */
+    public InMemoryIdGenerateMapper addRow(int id, int step, int isSeq, int idMode) {
+        IdGeneratePO idGeneratePO = new IdGeneratePO();
+        idGeneratePO.setId(id);
+        idGeneratePO.setStep(step);
+        idGeneratePO.setIsSeq(isSeq);
+        idGeneratePO.setIdMode(idMode);
+        idGeneratePO.setInitNum(10000);
+        idGeneratePO.setCurrentStart(10000);
+        idGeneratePO.setNextThreshold(10000 + step);
+        rows.put(id, idGeneratePO);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public IdGenerateMapper create() {
+        return (IdGenerateMapper) Proxy.newProxyInstance(IdGenerateMapper.class.getClassLoader(), new Class[]{IdGenerateMapper.class}, (proxy, method, args) -> {
+            synchronized (rows) {
+                this.simulateLatency();
+                switch (method.getName()) {
+                    case "selectAll":
+                    case "selectAllForUpdate":
+                        List<IdGeneratePO> idGeneratePOList = new ArrayList<>();
+                        rows.values().forEach(row -> idGeneratePOList.add(copy(row)));
+                        return idGeneratePOList;
+                    case "selectById":
+                        return copy(rows.get(((Number) args[0]).intValue()));
+                    case "updateNewIdCountAndVersion":
+                        return advance((Integer) args[0], (Integer) args[1], rows.get((Integer) args[0]).getStep());
+                    case "updateNewIdCountAndVersionByStep":
+                        return advance((Integer) args[0], (Integer) args[1], (Long) args[2]);
+                    case "batchUpdateNewIdCountAndVersionByStep":
+                        Map<Integer, Long> steps = (Map<Integer, Long>) args[0];
+                        steps.forEach((id, step) -> advance(id, rows.get(id).getVersion(), step));
+                        return steps.size();
+                    case "toString":
+                        return InMemoryIdGenerateMapper.class.getSimpleName();
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    private int advance(int id, int version, long step) {
+        IdGeneratePO idGeneratePO = rows.get(id);
+        if (idGeneratePO.getVersion() != version) {
+            return 0;
+        }
+        idGeneratePO.setCurrentStart(idGeneratePO.getCurrentStart() + step);
+        idGeneratePO.setNextThreshold(idGeneratePO.getNextThreshold() + step);
+        idGeneratePO.setVersion(idGeneratePO.getVersion() + 1);
+        return 1;
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        if (latencyMicros > 0) {
+            TimeUnit.MICROSECONDS.sleep(latencyMicros);
+        }
+    }
+
+    private static IdGeneratePO copy(IdGeneratePO idGeneratePO) {
+        IdGeneratePO copy = new IdGeneratePO();
+        BeanUtils.copyProperties(idGeneratePO, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,110 @@
+package fun.timu.live.benchmarks.redis;
+
+import fun.timu.live.framework.redis.starter.config.IGenericJackson2JsonRedisSerializer;
+import fun.timu.live.framework.redis.starter.serializer.CodecRedisSerializer;
+import fun.timu.live.framework.redis.starter.serializer.KryoRedisValueCodec;
+import fun.timu.live.framework.redis.starter.serializer.KryoTypedRedisSerializer;
+import fun.timu.live.framework.redis.starter.serializer.RedisValueCodec;
+import fun.timu.live.user.dto.UserDTO;
+import fun.timu.live.user.dto.UserPhoneDTO;
+import fun.timu.live.user.dto.UserTagDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存DTO在json、kryo和单一类型kryo三种编码下的序列化、反序列化耗时，每条数据的字节数由RedisSerializerBenchmarkRunner输出
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisSerializerBenchmark {
+    static final String TYPED = "kryo-typed";
+
+    @Param({"json", "kryo", "kryo-typed"})
+    public String codec;
+
+    @Param({"UserDTO", "UserTagDTO", "UserPhoneDTO"})
+    public String type;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        value = createValue(type);
+        serializer = createSerializer(codec, value.getClass());
+        bytes = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisSerializer<Object> createSerializer(String codec, Class<?> type) {
+        KryoRedisValueCodec kryoRedisValueCodec = new KryoRedisValueCodec(List.of(UserDTO.class, UserTagDTO.class, UserPhoneDTO.class));
+        List<RedisValueCodec> codecs = List.of(kryoRedisValueCodec);
+        RedisValueCodec writeCodec = KryoRedisValueCodec.NAME.equals(codec) ? kryoRedisValueCodec : null;
+        CodecRedisSerializer codecRedisSerializer = new CodecRedisSerializer(writeCodec, codecs, new IGenericJackson2JsonRedisSerializer());
+        if (TYPED.equals(codec)) {
+            return (RedisSerializer<Object>) new KryoTypedRedisSerializer<>(type, codecRedisSerializer, true);
+        }
+        return codecRedisSerializer;
+    }
+
+    static Object createValue(String type) {
+        Date now = new Date();
+        switch (type) {
+            case "UserDTO": {
+                UserDTO userDTO = new UserDTO();
+                userDTO.setUserId(1_234_567_890L);
+                userDTO.setNickName("用户-1234567890");
+                userDTO.setTrueName("张三");
+                userDTO.setAvatar("https://img.example.com/avatar/1234567890.png");
+                userDTO.setSex(1);
+                userDTO.setWorkCity(440300);
+                userDTO.setBornCity(440100);
+                userDTO.setBornDate(now);
+                userDTO.setCreateTime(now);
+                userDTO.setUpdateTime(now);
+                return userDTO;
+            }
+            case "UserTagDTO": {
+                UserTagDTO userTagDTO = new UserTagDTO();
+                userTagDTO.setUserId(1_234_567_890L);
+                userTagDTO.setTagInfo01(7L);
+                userTagDTO.setTagInfo02(0L);
+                userTagDTO.setTagInfo03(0L);
+                userTagDTO.setCreateTime(now);
+                userTagDTO.setUpdateTime(now);
+                return userTagDTO;
+            }
+            case "UserPhoneDTO": {
+                UserPhoneDTO userPhoneDTO = new UserPhoneDTO();
+                userPhoneDTO.setId(98_765L);
+                userPhoneDTO.setUserId(1_234_567_890L);
+                userPhoneDTO.setPhone("13800138000");
+                userPhoneDTO.setStatus(1);
+                userPhoneDTO.setCreateTime(now);
+                userPhoneDTO.setUpdateTime(now);
+                return userPhoneDTO;
+            }
+            default:
+                throw new IllegalArgumentException("unknown type " + type);
+        }
+    }
+}
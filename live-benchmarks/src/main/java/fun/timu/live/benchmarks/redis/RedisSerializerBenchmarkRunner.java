@@ -0,0 +1,38 @@
+package fun.timu.live.benchmarks.redis;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 先输出每种DTO在各种编码下每条数据的字节数，再运行RedisSerializerBenchmark
+ * <p>
+ * 打包：mvn -pl live-benchmarks -am package -DskipTests
+ * 运行：java -cp live-benchmarks/target/benchmarks.jar fun.timu.live.benchmarks.redis.RedisSerializerBenchmarkRunner
+ */
+public class RedisSerializerBenchmarkRunner {
+    private static final String[] CODECS = {"json", "kryo", RedisSerializerBenchmark.TYPED};
+    private static final String[] TYPES = {"UserDTO", "UserTagDTO", "UserPhoneDTO"};
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.printf("%-14s %10s %10s %12s%n", "type", "json(B)", "kryo(B)", "typed(B)");
+        for (String type : TYPES) {
+            Object value = RedisSerializerBenchmark.createValue(type);
+            int[] sizes = new int[CODECS.length];
+            for (int i = 0; i < CODECS.length; i++) {
+                RedisSerializer<Object> serializer = RedisSerializerBenchmark.createSerializer(CODECS[i], value.getClass());
+                sizes[i] = serializer.serialize(value).length;
+            }
+            System.out.printf("%-14s %10d %10d %12d%n", type, sizes[0], sizes[1], sizes[2]);
+        }
+        new Runner(new OptionsBuilder()
+                .include(RedisSerializerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("redis-serializer-benchmark.json")
+                .build()).run();
+    }
+}
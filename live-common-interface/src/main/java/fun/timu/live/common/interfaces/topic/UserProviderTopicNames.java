@@ -6,4 +6,14 @@ public class UserProviderTopicNames {
      * 专门处理和用户信息相关的缓存延迟删除操作
      */
     public static final String CACHE_ASYNC_DELETE_TOPIC = "UserCacheAsyncDelete";
+
+    /**
+     * 新用户注册，用于同步各个节点的userId布隆过滤器
+     */
+    public static final String USER_REGISTER_TOPIC = "UserRegister";
+
+    /**
+     * 用户标签变更，用于同步各个节点的标签位图索引
+     */
+    public static final String USER_TAG_CHANGE_TOPIC = "UserTagChange";
 }
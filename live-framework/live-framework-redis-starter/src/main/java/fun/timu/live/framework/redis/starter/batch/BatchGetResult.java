@@ -0,0 +1,43 @@
+package fun.timu.live.framework.redis.starter.batch;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量读取的结果，命中和未命中的部分都按照传入的顺序保存
+ *
+ * @param <I> 业务id的类型
+ * @param <V> 缓存值的类型
+ */
+@Getter
+public class BatchGetResult<I, V> {
+    /**
+     * 缓存命中的部分，key为业务id
+     */
+    private final Map<I, V> hits;
+    /**
+     * 缓存未命中的业务id
+     */
+    private final List<I> misses;
+
+    public BatchGetResult(int expectedSize) {
+        this.hits = new LinkedHashMap<>(Math.max(16, expectedSize * 2));
+        this.misses = new ArrayList<>();
+    }
+
+    public void hit(I id, V value) {
+        hits.put(id, value);
+    }
+
+    public void miss(I id) {
+        misses.add(id);
+    }
+
+    public boolean isAllHit() {
+        return misses.isEmpty();
+    }
+}
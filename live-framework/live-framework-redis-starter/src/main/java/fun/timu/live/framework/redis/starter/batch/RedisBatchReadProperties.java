@@ -0,0 +1,13 @@
+package fun.timu.live.framework.redis.starter.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@ConfigurationProperties(prefix = "live.redis.batch-read")
+@Configuration
+public class RedisBatchReadProperties {
+    //单条MGET命令的key数量上限，超过时拆分成多条命令放在同一个pipeline中发送，避免单条命令阻塞redis过久
+    private int maxKeysPerCommand = 500;
+}
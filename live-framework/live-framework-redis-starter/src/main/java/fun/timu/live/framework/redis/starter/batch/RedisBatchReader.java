@@ -0,0 +1,138 @@
+package fun.timu.live.framework.redis.starter.batch;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 按位置对应的redis批量读取
+ * <p>
+ * 返回结果中直接区分命中和未命中的业务id，调用方不需要再根据返回值反推缺失的部分；
+ * 集群模式下按照key所在的slot分组，每个slot一条MGET，所有命令放在同一个pipeline中一次往返发送
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+public class RedisBatchReader {
+
+    private final RedisBatchReadProperties redisBatchReadProperties;
+
+    public RedisBatchReader(RedisBatchReadProperties redisBatchReadProperties) {
+        this.redisBatchReadProperties = redisBatchReadProperties;
+    }
+
+    /**
+     * 批量读取字符串类型的缓存
+     *
+     * @param redisTemplate 读取使用的template，决定了value的反序列化方式
+     * @param ids           业务id，重复的id只会读取一次
+     * @param keyFunction   业务id到redis key的映射
+     * @return 按照传入顺序排列的命中和未命中结果
+     */
+    public <I, V> BatchGetResult<I, V> multiGet(RedisTemplate<String, V> redisTemplate, Collection<I> ids, Function<I, String> keyFunction) {
+        List<I> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        BatchGetResult<I, V> result = new BatchGetResult<>(idList.size());
+        if (idList.isEmpty()) {
+            return result;
+        }
+        List<String> keyList = new ArrayList<>(idList.size());
+        for (I id : idList) {
+            keyList.add(keyFunction.apply(id));
+        }
+        List<List<Integer>> commandList = this.groupCommands(keyList, this.isCluster(redisTemplate));
+        List<?> valueList;
+        if (commandList.size() == 1) {
+            valueList = redisTemplate.opsForValue().multiGet(keyList);
+            // 只有一条命令时位置与keyList一致，直接回填
+            for (int i = 0; i < idList.size(); i++) {
+                this.fill(result, idList.get(i), valueList == null ? null : valueList.get(i));
+            }
+            return result;
+        }
+        List<Object> pipelineResult = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V1> Object execute(RedisOperations<K, V1> operations) throws DataAccessException {
+                for (List<Integer> positions : commandList) {
+                    List<K> commandKeys = new ArrayList<>(positions.size());
+                    for (Integer position : positions) {
+                        commandKeys.add((K) keyList.get(position));
+                    }
+                    operations.opsForValue().multiGet(commandKeys);
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < commandList.size(); i++) {
+            List<Integer> positions = commandList.get(i);
+            valueList = (List<?>) pipelineResult.get(i);
+            for (int j = 0; j < positions.size(); j++) {
+                this.fill(result, idList.get(positions.get(j)), valueList == null ? null : valueList.get(j));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把key拆分成多条MGET命令，集群模式下同一条命令中的key必须位于同一个slot
+     *
+     * @return 每条命令包含的key在keyList中的位置
+     */
+    List<List<Integer>> groupCommands(List<String> keyList, boolean cluster) {
+        int maxKeysPerCommand = Math.max(1, redisBatchReadProperties.getMaxKeysPerCommand());
+        List<List<Integer>> commandList = new ArrayList<>();
+        if (!cluster) {
+            this.chunk(commandList, allPositions(keyList.size()), maxKeysPerCommand);
+            return commandList;
+        }
+        Map<Integer, List<Integer>> slotMap = new TreeMap<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            slotMap.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(keyList.get(i)), slot -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> positions : slotMap.values()) {
+            this.chunk(commandList, positions, maxKeysPerCommand);
+        }
+        return commandList;
+    }
+
+    private void chunk(List<List<Integer>> commandList, List<Integer> positions, int maxKeysPerCommand) {
+        for (int from = 0; from < positions.size(); from += maxKeysPerCommand) {
+            commandList.add(positions.subList(from, Math.min(positions.size(), from + maxKeysPerCommand)));
+        }
+    }
+
+    private static List<Integer> allPositions(int size) {
+        List<Integer> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.add(i);
+        }
+        return positions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I, V> void fill(BatchGetResult<I, V> result, I id, Object value) {
+        if (value == null) {
+            result.miss(id);
+        } else {
+            result.hit(id, (V) value);
+        }
+    }
+
+    private boolean isCluster(RedisTemplate<?, ?> redisTemplate) {
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        return connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory && lettuceConnectionFactory.isClusterAware();
+    }
+}
@@ -1,20 +1,46 @@
 package fun.timu.live.framework.redis.starter.config;
 
+import fun.timu.live.framework.redis.starter.serializer.CodecRedisSerializer;
+import fun.timu.live.framework.redis.starter.serializer.IntegerRedisSerializer;
+import fun.timu.live.framework.redis.starter.serializer.LongRedisSerializer;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @ConditionalOnClass(RedisTemplate.class)
 public class RedisConfig {
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory, CodecRedisSerializer defaultRedisValueSerializer) {
+        return createRedisTemplate(redisConnectionFactory, defaultRedisValueSerializer);
+    }
+
+    /**
+     * value为Long的template，例如token到userId的映射
+     */
+    @Bean
+    public RedisTemplate<String, Long> longRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        return createRedisTemplate(redisConnectionFactory, LongRedisSerializer.INSTANCE);
+    }
+
+    /**
+     * value为Integer的template，例如短信验证码
+     */
+    @Bean
+    public RedisTemplate<String, Integer> integerRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        return createRedisTemplate(redisConnectionFactory, IntegerRedisSerializer.INSTANCE);
+    }
+
+    /**
+     * 创建key为字符串、value使用指定序列化器的template
+     */
+    public static <V> RedisTemplate<String, V> createRedisTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<V> valueSerializer) {
+        RedisTemplate<String, V> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
-        IGenericJackson2JsonRedisSerializer valueSerializer = new IGenericJackson2JsonRedisSerializer();
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
         redisTemplate.setKeySerializer(stringRedisSerializer);
         redisTemplate.setValueSerializer(valueSerializer);
@@ -23,4 +49,4 @@ public class RedisConfig {
         redisTemplate.afterPropertiesSet();
         return redisTemplate;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package fun.timu.live.framework.redis.starter.config;
+
+import fun.timu.live.framework.redis.starter.serializer.RedisSerializerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按照配置项live.redis.typed-templates为每个DTO注册一个RedisTemplate&lt;String, DTO&gt;
+ * <p>
+ * bean名称为类名首字母小写加上RedisTemplate，例如UserDTO对应userDTORedisTemplate，
+ * value使用单一类型的kryo序列化器，数据中不包含类型信息，读取时不需要强制类型转换
+ */
+public class TypedRedisTemplateRegistrar implements BeanDefinitionRegistryPostProcessor, EnvironmentAware, BeanFactoryAware {
+
+    public static final String TYPED_TEMPLATES_PROPERTY = "live.redis.typed-templates";
+    private static final String BEAN_NAME_SUFFIX = "RedisTemplate";
+
+    private Environment environment;
+    private BeanFactory beanFactory;
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+        List<String> classNames = Binder.get(environment).bind(TYPED_TEMPLATES_PROPERTY, Bindable.listOf(String.class))
+                .orElse(Collections.emptyList());
+        for (String className : classNames) {
+            Class<?> type;
+            try {
+                type = ClassUtils.forName(className, TypedRedisTemplateRegistrar.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            RootBeanDefinition beanDefinition = new RootBeanDefinition(RedisTemplate.class);
+            beanDefinition.setTargetType(ResolvableType.forClassWithGenerics(RedisTemplate.class, String.class, type));
+            beanDefinition.setInstanceSupplier(() -> this.createRedisTemplate(type));
+            registry.registerBeanDefinition(beanName(type), beanDefinition);
+        }
+    }
+
+    private <T> RedisTemplate<String, T> createRedisTemplate(Class<T> type) {
+        RedisSerializerFactory redisSerializerFactory = beanFactory.getBean(RedisSerializerFactory.class);
+        RedisConnectionFactory redisConnectionFactory = beanFactory.getBean(RedisConnectionFactory.class);
+        return RedisConfig.createRedisTemplate(redisConnectionFactory, redisSerializerFactory.createTyped(type));
+    }
+
+    public static String beanName(Class<?> type) {
+        return StringUtils.uncapitalize(type.getSimpleName()) + BEAN_NAME_SUFFIX;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+}
@@ -0,0 +1,73 @@
+package fun.timu.live.framework.redis.starter.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的count-min sketch，用固定的内存估算每个key的访问次数，估算值只会偏大不会偏小
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(int width, int depth) {
+        this.depth = Math.max(1, depth);
+        int actualWidth = Integer.highestOneBit(Math.max(16, width));
+        if (actualWidth < width) {
+            actualWidth <<= 1;
+        }
+        this.mask = actualWidth - 1;
+        this.counters = new AtomicLongArray(actualWidth * this.depth);
+    }
+
+    /**
+     * 增加key的计数
+     *
+     * @return 增加后的估算值
+     */
+    public long increment(String key) {
+        int hash = spread(key.hashCode());
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.incrementAndGet(this.indexOf(hash, i)));
+        }
+        return min;
+    }
+
+    public long estimate(String key) {
+        int hash = spread(key.hashCode());
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.get(this.indexOf(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数减半，让过去的访问逐渐失去影响
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value = counters.get(i);
+            if (value != 0) {
+                counters.set(i, value >>> 1);
+            }
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        // 每一行使用不同的种子重新混合，得到相互独立的下标
+        int h = spread(hash + row * 0x9E3779B9);
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
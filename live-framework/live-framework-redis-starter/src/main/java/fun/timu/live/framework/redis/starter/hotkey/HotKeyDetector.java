@@ -0,0 +1,171 @@
+package fun.timu.live.framework.redis.starter.hotkey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点key探测
+ * <p>
+ * 按照sampleRate对访问采样，采样到的访问计入count-min sketch，估算值（除以采样比例后）在一个窗口内达到hotThreshold时判定为热点key；
+ * 每个窗口结束时sketch中的计数减半，热点key在上一个窗口的访问次数低于阈值时降级，热点key的数量超过上限时替换访问次数最少的一个
+ */
+@Configuration
+public class HotKeyDetector implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotKeyDetector.class);
+
+    private final HotKeyProperties hotKeyProperties;
+    private final CountMinSketch sketch;
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService decayExecutor;
+    /**
+     * 采样计数需要达到的值，等于hotThreshold * sampleRate
+     */
+    private final long sampledThreshold;
+
+    public HotKeyDetector(HotKeyProperties hotKeyProperties) {
+        this.hotKeyProperties = hotKeyProperties;
+        this.sketch = new CountMinSketch(hotKeyProperties.getSketchWidth(), hotKeyProperties.getSketchDepth());
+        this.sampledThreshold = Math.max(1, Math.round(hotKeyProperties.getHotThreshold() * hotKeyProperties.getSampleRate()));
+        this.decayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-hot-key-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowMillis = hotKeyProperties.getWindow().toMillis();
+        decayExecutor.scheduleWithFixedDelay(this::decay, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次对key的访问
+     *
+     * @return key当前是否为热点key
+     */
+    public boolean record(String key) {
+        if (!hotKeyProperties.isEnabled()) {
+            return false;
+        }
+        HotKey hotKey = hotKeys.get(key);
+        if (ThreadLocalRandom.current().nextDouble() >= hotKeyProperties.getSampleRate()) {
+            return hotKey != null;
+        }
+        if (hotKey != null) {
+            hotKey.sampled.increment();
+            return true;
+        }
+        long estimate = sketch.increment(key);
+        if (estimate < sampledThreshold) {
+            return false;
+        }
+        return this.promote(key, estimate);
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 按照估算的访问次数从高到低返回当前的热点key
+     */
+    public List<Map<String, Object>> hotKeys() {
+        List<HotKey> hotKeyList = new ArrayList<>(hotKeys.values());
+        hotKeyList.sort(Comparator.comparingLong(HotKey::estimatedCount).reversed());
+        List<Map<String, Object>> resultList = new ArrayList<>(hotKeyList.size());
+        for (HotKey hotKey : hotKeyList) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", hotKey.key);
+            item.put("estimatedCount", hotKey.estimatedCount());
+            item.put("hotSince", hotKey.hotSince);
+            resultList.add(item);
+        }
+        return resultList;
+    }
+
+    private synchronized boolean promote(String key, long estimate) {
+        if (hotKeys.containsKey(key)) {
+            return true;
+        }
+        if (hotKeys.size() >= hotKeyProperties.getMaxHotKeys()) {
+            HotKey coldest = null;
+            for (HotKey hotKey : hotKeys.values()) {
+                if (coldest == null || hotKey.estimatedCount() < coldest.estimatedCount()) {
+                    coldest = hotKey;
+                }
+            }
+            if (coldest == null || coldest.sampledCount() >= estimate) {
+                return false;
+            }
+            hotKeys.remove(coldest.key);
+        }
+        HotKey hotKey = new HotKey(key, estimate);
+        hotKeys.put(key, hotKey);
+        LOGGER.info("[promote] redis hot key detected,key is {},estimatedCount is {}", key, hotKey.estimatedCount());
+        return true;
+    }
+
+    /**
+     * 窗口结束时计数减半，上一个窗口访问次数低于阈值的热点key降级
+     */
+    private void decay() {
+        try {
+            sketch.decay();
+            for (HotKey hotKey : hotKeys.values()) {
+                long windowCount = hotKey.sampled.sumThenReset();
+                hotKey.lastWindowSampled = windowCount;
+                if (windowCount < sampledThreshold) {
+                    hotKeys.remove(hotKey.key);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("[decay] redis hot key decay is error", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        decayExecutor.shutdownNow();
+    }
+
+    private class HotKey {
+        private final String key;
+        private final long hotSince = System.currentTimeMillis();
+        /**
+         * 当前窗口内的采样计数
+         */
+        private final LongAdder sampled = new LongAdder();
+        /**
+         * 上一个窗口的采样计数，刚成为热点key时为判定时的估算值
+         */
+        private volatile long lastWindowSampled;
+
+        HotKey(String key, long sampledEstimate) {
+            this.key = key;
+            this.lastWindowSampled = sampledEstimate;
+        }
+
+        long sampledCount() {
+            return Math.max(lastWindowSampled, sampled.sum());
+        }
+
+        /**
+         * 一个窗口内估算的实际访问次数
+         */
+        long estimatedCount() {
+            return Math.round(this.sampledCount() / hotKeyProperties.getSampleRate());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package fun.timu.live.framework.redis.starter.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 热点key的actuator端点，查看当前节点探测到的热点key和本地缓存的命中情况
+ */
+@Configuration
+@Endpoint(id = "redishotkeys")
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector hotKeyDetector;
+    private final HotKeyLocalCache hotKeyLocalCache;
+    private final HotKeyProperties hotKeyProperties;
+
+    public HotKeyEndpoint(HotKeyDetector hotKeyDetector, HotKeyLocalCache hotKeyLocalCache, HotKeyProperties hotKeyProperties) {
+        this.hotKeyDetector = hotKeyDetector;
+        this.hotKeyLocalCache = hotKeyLocalCache;
+        this.hotKeyProperties = hotKeyProperties;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotKeys() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", hotKeyProperties.isEnabled());
+        result.put("sampleRate", hotKeyProperties.getSampleRate());
+        result.put("window", hotKeyProperties.getWindow().toString());
+        result.put("hotThreshold", hotKeyProperties.getHotThreshold());
+        result.put("localCacheSize", hotKeyLocalCache.size());
+        result.put("localCacheHitCount", hotKeyLocalCache.getHitCount());
+        result.put("hotKeys", hotKeyDetector.hotKeys());
+        return result;
+    }
+}
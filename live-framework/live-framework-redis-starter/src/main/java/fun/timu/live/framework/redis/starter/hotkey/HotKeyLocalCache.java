@@ -0,0 +1,82 @@
+package fun.timu.live.framework.redis.starter.hotkey;
+
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 热点key的本地缓存
+ * <p>
+ * 读取redis之前先记录访问，只有被判定为热点的key才会写入本地缓存，过期时间很短，
+ * 修改数据的节点通过invalidate立即淘汰，其他节点最多在localTtl之后读到新的值
+ */
+@Configuration
+public class HotKeyLocalCache {
+
+    private final HotKeyDetector hotKeyDetector;
+    private final HotKeyProperties hotKeyProperties;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+
+    public HotKeyLocalCache(HotKeyDetector hotKeyDetector, HotKeyProperties hotKeyProperties) {
+        this.hotKeyDetector = hotKeyDetector;
+        this.hotKeyProperties = hotKeyProperties;
+    }
+
+    /**
+     * 读取缓存，热点key优先从本地缓存中读取
+     *
+     * @param key         redis的key
+     * @param redisReader 从redis中读取的方法
+     * @return 缓存的值
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String key, Supplier<V> redisReader) {
+        boolean hot = hotKeyDetector.record(key);
+        if (hot) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.expireTime > System.currentTimeMillis()) {
+                hitCount.increment();
+                return (V) entry.value;
+            }
+        } else if (!cache.isEmpty()) {
+            // 已经降级的key不再使用本地缓存
+            cache.remove(key);
+        }
+        V value = redisReader.get();
+        if (hot && value != null) {
+            this.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 修改数据后淘汰当前节点的本地缓存
+     */
+    public void invalidate(String key) {
+        cache.remove(key);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    private void put(String key, Object value) {
+        long now = System.currentTimeMillis();
+        // 只有热点key会写入，数量超过上限时说明有较多已经降级的key残留，清理过期的部分
+        if (cache.size() >= hotKeyProperties.getMaxHotKeys()) {
+            cache.values().removeIf(entry -> entry.expireTime <= now);
+        }
+        cache.put(key, new Entry(value, now + hotKeyProperties.getLocalTtl().toMillis()));
+    }
+
+    private record Entry(Object value, long expireTime) {
+    }
+}
@@ -0,0 +1,29 @@
+package fun.timu.live.framework.redis.starter.hotkey;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.redis.hot-key")
+@Configuration
+public class HotKeyProperties {
+    //是否开启热点key的探测和本地缓存
+    private boolean enabled = true;
+    //访问的采样比例，只有被采样的访问才会计入统计
+    private double sampleRate = 0.1;
+    //统计窗口，每个窗口结束时所有计数减半
+    private Duration window = Duration.ofSeconds(5);
+    //一个窗口内估算的访问次数达到该值时判定为热点key
+    private long hotThreshold = 500;
+    //同时保存的热点key数量上限
+    private int maxHotKeys = 100;
+    //热点key在本地缓存中的过期时间，也是其他节点修改后本地缓存最长的不一致时间
+    private Duration localTtl = Duration.ofSeconds(2);
+    //count-min sketch每一行的计数器数量，会向上取整为2的幂
+    private int sketchWidth = 8192;
+    //count-min sketch的行数
+    private int sketchDepth = 4;
+}
@@ -8,7 +8,10 @@ import org.springframework.context.annotation.Configuration;
 public class UserProviderCacheKeyBuilder extends RedisKeyBuilder {
 
     private static String USER_INFO_KEY = "userInfo";
+    private static String USER_INFO_HASH_KEY = "userInfoHash";
     private static String USER_TAG_KEY = "userTag";
+    private static String USER_TAG_HASH_KEY = "userTagHash";
+    private static String USER_TAG_BIT_KEY = "userTagBit";
     private static String USER_TAG_LOCK_KEY = "userTagLock";
     private static String USER_PHONE_LIST_KEY = "userPhoneList";
     private static String USER_PHONE_OBJ_KEY = "userPhoneObj";
@@ -18,6 +21,10 @@ public class UserProviderCacheKeyBuilder extends RedisKeyBuilder {
         return super.getPrefix() + USER_INFO_KEY + super.getSplitItem() + userId;
     }
 
+    public String buildUserInfoHashKey(Long userId) {
+        return super.getPrefix() + USER_INFO_HASH_KEY + super.getSplitItem() + userId;
+    }
+
     public String buildTagLockKey(Long userId) {
         return super.getPrefix() + USER_TAG_LOCK_KEY + super.getSplitItem() + userId;
     }
@@ -26,6 +33,14 @@ public class UserProviderCacheKeyBuilder extends RedisKeyBuilder {
         return super.getPrefix() + USER_TAG_KEY + super.getSplitItem() + userId;
     }
 
+    public String buildTagHashKey(Long userId) {
+        return super.getPrefix() + USER_TAG_HASH_KEY + super.getSplitItem() + userId;
+    }
+
+    public String buildTagBitKey(Long userId) {
+        return super.getPrefix() + USER_TAG_BIT_KEY + super.getSplitItem() + userId;
+    }
+
     public String buildUserPhoneListKey(Long userId) {
         return super.getPrefix() + USER_PHONE_LIST_KEY + super.getSplitItem() + userId;
     }
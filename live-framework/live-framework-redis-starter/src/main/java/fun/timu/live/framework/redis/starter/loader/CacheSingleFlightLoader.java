@@ -0,0 +1,85 @@
+package fun.timu.live.framework.redis.starter.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存未命中时的回源加载器，避免热点key过期时大量请求同时打到数据库
+ * <p>
+ * 进程内通过SingleFlight保证每个key同一时刻只有一个线程回源；开启distributed后，
+ * 回源前还需要抢占一个redis短锁，没有抢到锁的节点轮询缓存，等待抢到锁的节点回填
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+public class CacheSingleFlightLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheSingleFlightLoader.class);
+    private static final String LOCK_SUFFIX = ":loadLock";
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final SingleFlightProperties singleFlightProperties;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public CacheSingleFlightLoader(SingleFlightProperties singleFlightProperties, StringRedisTemplate stringRedisTemplate) {
+        this.singleFlightProperties = singleFlightProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 合并同一个缓存key的回源加载
+     *
+     * @param cacheKey    缓存的key，同时作为合并请求的key
+     * @param cacheReader 读取缓存的方法，分布式模式下等待其他节点回填时使用
+     * @param loader      回源加载的方法，负责回填缓存，可以返回null
+     * @return 加载结果
+     */
+    public <T> T load(String cacheKey, Supplier<T> cacheReader, Supplier<T> loader) {
+        return singleFlight.execute(cacheKey, () -> {
+            if (!singleFlightProperties.isDistributed()) {
+                return loader.get();
+            }
+            return this.loadWithLock(cacheKey, cacheReader, loader);
+        });
+    }
+
+    private <T> T loadWithLock(String cacheKey, Supplier<T> cacheReader, Supplier<T> loader) {
+        String lockKey = cacheKey + LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token,
+                singleFlightProperties.getLockTtl().toMillis(), TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                return loader.get();
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+        // 其他节点正在回源，等待其回填缓存
+        long deadline = System.nanoTime() + singleFlightProperties.getWaitTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(singleFlightProperties.getPollInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            T cached = cacheReader.get();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        LOGGER.warn("[CacheSingleFlightLoader] wait for cache timeout, load by self, key is {}", cacheKey);
+        return loader.get();
+    }
+}
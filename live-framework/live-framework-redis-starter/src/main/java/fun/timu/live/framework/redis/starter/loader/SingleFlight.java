@@ -0,0 +1,56 @@
+package fun.timu.live.framework.redis.starter.loader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的请求合并
+ * 同一个key同一时刻只有一个线程执行加载，其他并发请求等待同一个future并共享加载结果（包括异常）
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载，同一个key并发的请求只会有一个真正执行loader
+     *
+     * @param key    合并请求的key
+     * @param loader 加载方法，可以返回null
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
+        try {
+            T result = loader.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Error也需要通知等待的线程，否则它们会一直阻塞在join上
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 当前正在加载的key数量
+     */
+    public int inFlightSize() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,21 @@
+package fun.timu.live.framework.redis.starter.loader;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.redis.single-flight")
+@Configuration
+public class SingleFlightProperties {
+    //是否在进程内合并的基础上，再通过redis短锁在集群内合并缓存未命中的加载
+    private boolean distributed;
+    //redis锁的过期时间，需要大于一次回源加载的耗时
+    private Duration lockTtl = Duration.ofSeconds(3);
+    //没有抢到锁时等待其他节点回填缓存的最长时间，超时后自行回源
+    private Duration waitTimeout = Duration.ofMillis(500);
+    //等待期间轮询缓存的间隔
+    private Duration pollInterval = Duration.ofMillis(20);
+}
@@ -0,0 +1,72 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Collection;
+
+/**
+ * 支持多种编码的value序列化器
+ * <p>
+ * 写入时使用指定的编码并加上[魔数, codecId]头部，指定的编码为空时按照原来的json格式写入；
+ * 读取时有头部的数据交给对应的编码解码，没有头部的数据（包括升级之前写入的json）按照json读取，
+ * 因此切换编码时不需要清理旧数据
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CodecRedisSerializer.class);
+    /**
+     * 0xFE不会出现在合法的utf-8数据中，可以和json以及直接写入的字符串区分开
+     */
+    public static final byte MAGIC = (byte) 0xFE;
+    private static final int HEADER_LENGTH = 2;
+
+    private final RedisValueCodec writeCodec;
+    private final RedisValueCodec[] readCodecs = new RedisValueCodec[256];
+    private final RedisSerializer<Object> jsonSerializer;
+
+    /**
+     * @param writeCodec     写入使用的编码，为null时写入json
+     * @param readCodecs     所有可以读取的编码
+     * @param jsonSerializer json序列化器，用于写入json以及读取没有头部的数据
+     */
+    public CodecRedisSerializer(RedisValueCodec writeCodec, Collection<RedisValueCodec> readCodecs, RedisSerializer<Object> jsonSerializer) {
+        this.writeCodec = writeCodec;
+        this.jsonSerializer = jsonSerializer;
+        for (RedisValueCodec codec : readCodecs) {
+            this.readCodecs[codec.getCodecId() & 0xFF] = codec;
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        // 字符串保持直接写入原始内容，兼容lua脚本和其他语言的读取
+        if (writeCodec == null || value == null || value instanceof String || value instanceof Character) {
+            return jsonSerializer.serialize(value);
+        }
+        byte[] body = writeCodec.encode(value);
+        byte[] bytes = new byte[HEADER_LENGTH + body.length];
+        bytes[0] = MAGIC;
+        bytes[1] = writeCodec.getCodecId();
+        System.arraycopy(body, 0, bytes, HEADER_LENGTH, body.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        RedisValueCodec codec = readCodecs[bytes[1] & 0xFF];
+        if (codec == null) {
+            LOGGER.warn("[CodecRedisSerializer] unknown codec,codecId is {}", bytes[1]);
+            return null;
+        }
+        return codec.decode(bytes, HEADER_LENGTH);
+    }
+}
@@ -0,0 +1,39 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Integer类型的序列化器，以十进制ascii字符串保存，与json序列化数字的结果完全一致
+ */
+public class IntegerRedisSerializer implements RedisSerializer<Integer> {
+
+    public static final IntegerRedisSerializer INSTANCE = new IntegerRedisSerializer();
+
+    @Override
+    public byte[] serialize(Integer value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        return Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public Integer deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        long value = LongRedisSerializer.parseLong(bytes);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new SerializationException("Could not read integer, value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Integer.class;
+    }
+}
@@ -0,0 +1,158 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 基于kryo的二进制编码
+ * <p>
+ * 注册过的类只写入一个varint的注册编号，字段按照顺序直接写值，不包含字段名和类名；
+ * 数据开头写入注册类结构的指纹，类结构变化后旧数据的指纹不一致，读取时按照缓存未命中处理
+ */
+public class KryoRedisValueCodec implements RedisValueCodec {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KryoRedisValueCodec.class);
+    public static final String NAME = "kryo";
+    private static final byte CODEC_ID = 1;
+    /**
+     * kryo内置类型占用了较小的注册编号，业务类从100开始注册
+     */
+    private static final int FIRST_REGISTRATION_ID = 100;
+    /**
+     * DTO中常见的非final字段类型，注册后不需要写入类名
+     */
+    private static final List<Class<?>> COMMON_CLASSES = List.of(Date.class, ArrayList.class, HashMap.class);
+    private static final int FIRST_COMMON_REGISTRATION_ID = 90;
+    private static final int POOL_SIZE = 64;
+
+    private final List<Class<?>> registeredClasses;
+    private final int fingerprint;
+    private final Pool<Kryo> kryoPool;
+    private final Pool<Output> outputPool;
+
+    /**
+     * @param registeredClasses 需要注册的类，注册编号由顺序决定，所有节点必须保持一致
+     */
+    public KryoRedisValueCodec(List<Class<?>> registeredClasses) {
+        this.registeredClasses = new ArrayList<>(registeredClasses);
+        this.fingerprint = fingerprint(this.registeredClasses);
+        this.kryoPool = new Pool<>(true, false, POOL_SIZE) {
+            @Override
+            protected Kryo create() {
+                return createKryo();
+            }
+        };
+        this.outputPool = new Pool<>(true, false, POOL_SIZE) {
+            @Override
+            protected Output create() {
+                return new Output(256, -1);
+            }
+        };
+    }
+
+    private Kryo createKryo() {
+        return createKryo(registeredClasses);
+    }
+
+    /**
+     * 创建kryo实例，所有节点对同一组类的注册编号保持一致
+     */
+    static Kryo createKryo(List<Class<?>> registeredClasses) {
+        Kryo kryo = new Kryo();
+        // 未注册的类写入类名，保证任意类型都可以缓存
+        kryo.setRegistrationRequired(false);
+        // 缓存的DTO之间没有循环引用，关闭引用追踪可以减少体积
+        kryo.setReferences(false);
+        int registrationId = FIRST_COMMON_REGISTRATION_ID;
+        for (Class<?> clazz : COMMON_CLASSES) {
+            kryo.register(clazz, registrationId++);
+        }
+        registrationId = FIRST_REGISTRATION_ID;
+        for (Class<?> clazz : registeredClasses) {
+            kryo.register(clazz, registrationId++);
+        }
+        return kryo;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getCodecId() {
+        return CODEC_ID;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            output.writeInt(fingerprint);
+            kryo.writeClassAndObject(output, value);
+            return output.toBytes();
+        } finally {
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset) {
+        Input input = new Input(bytes, offset, bytes.length - offset);
+        Kryo kryo = kryoPool.obtain();
+        try {
+            if (input.readInt() != fingerprint) {
+                return null;
+            }
+            return kryo.readClassAndObject(input);
+        } catch (RuntimeException e) {
+            LOGGER.warn("[KryoRedisValueCodec] decode is error,length is {}", bytes.length, e);
+            return null;
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 根据注册类的类名以及字段的名称、类型和声明顺序计算指纹
+     */
+    static int fingerprint(List<Class<?>> classes) {
+        CRC32 crc32 = new CRC32();
+        for (Class<?> clazz : COMMON_CLASSES) {
+            crc32.update(clazz.getName().getBytes(StandardCharsets.UTF_8));
+        }
+        for (Class<?> clazz : classes) {
+            crc32.update(clazz.getName().getBytes(StandardCharsets.UTF_8));
+            for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    crc32.update((field.getName() + ":" + field.getType().getName() + ";").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return (int) crc32.getValue();
+    }
+}
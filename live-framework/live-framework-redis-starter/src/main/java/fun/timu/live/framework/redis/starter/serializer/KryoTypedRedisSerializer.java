@@ -0,0 +1,112 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.List;
+
+/**
+ * 单一类型的kryo序列化器，value的类型由RedisTemplate确定，数据中不包含任何类型信息
+ * <p>
+ * 写入格式为[魔数, codecId, 指纹, 字段值]，读取时其他格式的数据（json或者多态的kryo）交给兜底的序列化器，
+ * 类型不一致时按照缓存未命中处理，调用方不需要强制类型转换。
+ * 关闭kryo写入时由兜底的序列化器写入json，用于所有节点都能读取kryo之前的灰度和回滚
+ *
+ * @param <T> value的类型
+ */
+public class KryoTypedRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KryoTypedRedisSerializer.class);
+    public static final byte CODEC_ID = 2;
+    private static final int HEADER_LENGTH = 2;
+    private static final int POOL_SIZE = 64;
+
+    private final Class<T> type;
+    private final int fingerprint;
+    private final RedisSerializer<Object> fallbackSerializer;
+    private final boolean writeKryo;
+    private final Pool<Kryo> kryoPool;
+    private final Pool<Output> outputPool;
+
+    /**
+     * @param type               value的类型
+     * @param fallbackSerializer 读取其他格式数据使用的序列化器
+     * @param writeKryo          是否以kryo格式写入，为false时交给兜底的序列化器写入
+     */
+    public KryoTypedRedisSerializer(Class<T> type, RedisSerializer<Object> fallbackSerializer, boolean writeKryo) {
+        this.type = type;
+        this.fingerprint = KryoRedisValueCodec.fingerprint(List.of(type));
+        this.fallbackSerializer = fallbackSerializer;
+        this.writeKryo = writeKryo;
+        this.kryoPool = new Pool<>(true, false, POOL_SIZE) {
+            @Override
+            protected Kryo create() {
+                return KryoRedisValueCodec.createKryo(List.of(type));
+            }
+        };
+        this.outputPool = new Pool<>(true, false, POOL_SIZE) {
+            @Override
+            protected Output create() {
+                return new Output(256, -1);
+            }
+        };
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (!writeKryo) {
+            return fallbackSerializer.serialize(value);
+        }
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            output.writeByte(CodecRedisSerializer.MAGIC);
+            output.writeByte(CODEC_ID);
+            output.writeInt(fingerprint);
+            kryo.writeObject(output, value);
+            return output.toBytes();
+        } finally {
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != CodecRedisSerializer.MAGIC || bytes[1] != CODEC_ID) {
+            Object value = fallbackSerializer.deserialize(bytes);
+            return type.isInstance(value) ? type.cast(value) : null;
+        }
+        Input input = new Input(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        Kryo kryo = kryoPool.obtain();
+        try {
+            if (input.readInt() != fingerprint) {
+                return null;
+            }
+            return kryo.readObject(input, type);
+        } catch (RuntimeException e) {
+            LOGGER.warn("[KryoTypedRedisSerializer] decode is error,type is {},length is {}", type.getName(), bytes.length, e);
+            return null;
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return type;
+    }
+}
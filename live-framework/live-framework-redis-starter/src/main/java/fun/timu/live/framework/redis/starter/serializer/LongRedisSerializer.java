@@ -0,0 +1,79 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Long类型的序列化器，以十进制ascii字符串保存
+ * <p>
+ * 与直接写入String.valueOf(value)以及json序列化数字的结果完全一致，可以读取这两种方式写入的旧数据
+ */
+public class LongRedisSerializer implements RedisSerializer<Long> {
+
+    public static final LongRedisSerializer INSTANCE = new LongRedisSerializer();
+
+    @Override
+    public byte[] serialize(Long value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public Long deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return parseLong(bytes);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Long.class;
+    }
+
+    /**
+     * 直接从字节中解析十进制数字，不创建中间的字符串
+     */
+    static long parseLong(byte[] bytes) {
+        int index = 0;
+        boolean negative = false;
+        if (bytes[0] == '-') {
+            negative = true;
+            index = 1;
+        }
+        if (index == bytes.length || bytes.length - index > 19) {
+            return parseSlow(bytes);
+        }
+        long result = 0;
+        for (; index < bytes.length; index++) {
+            int digit = bytes[index] - '0';
+            if (digit < 0 || digit > 9) {
+                return parseSlow(bytes);
+            }
+            result = result * 10 - digit;
+            if (result > 0) {
+                // 溢出
+                return parseSlow(bytes);
+            }
+        }
+        if (negative) {
+            return result;
+        }
+        if (result == Long.MIN_VALUE) {
+            return parseSlow(bytes);
+        }
+        return -result;
+    }
+
+    private static long parseSlow(byte[] bytes) {
+        try {
+            return Long.parseLong(new String(bytes, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Could not read number: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import fun.timu.live.framework.redis.starter.config.IGenericJackson2JsonRedisSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按照编码名称创建value序列化器，每个RedisTemplate可以选择不同的编码
+ * <p>
+ * 所有RedisValueCodec类型的bean都会被注册，创建出的序列化器都可以读取任意编码写入的数据
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+public class RedisSerializerFactory {
+
+    public static final String JSON = "json";
+
+    private final Map<String, RedisValueCodec> codecMap = new HashMap<>();
+    private final IGenericJackson2JsonRedisSerializer jsonSerializer = new IGenericJackson2JsonRedisSerializer();
+    private final RedisSerializerProperties redisSerializerProperties;
+
+    public RedisSerializerFactory(ObjectProvider<RedisValueCodec> redisValueCodecs, RedisSerializerProperties redisSerializerProperties) {
+        this.redisSerializerProperties = redisSerializerProperties;
+        List<RedisValueCodec> codecList = new ArrayList<>(redisValueCodecs.orderedStream().toList());
+        // 显式声明的同名编码优先
+        if (codecList.stream().noneMatch(codec -> KryoRedisValueCodec.NAME.equals(codec.getName()))) {
+            codecList.add(createKryoCodec(redisSerializerProperties));
+        }
+        RedisValueCodec[] codecIds = new RedisValueCodec[256];
+        for (RedisValueCodec codec : codecList) {
+            if (JSON.equals(codec.getName()) || codec.getCodecId() == 0) {
+                throw new IllegalStateException("codec name json and codec id 0 are reserved,codec is " + codec.getName());
+            }
+            RedisValueCodec exist = codecIds[codec.getCodecId() & 0xFF];
+            if (exist != null) {
+                throw new IllegalStateException("duplicate codec id " + codec.getCodecId() + " for " + exist.getName() + " and " + codec.getName());
+            }
+            codecIds[codec.getCodecId() & 0xFF] = codec;
+            codecMap.put(codec.getName(), codec);
+        }
+    }
+
+    /**
+     * 创建使用默认配置编码的value序列化器
+     */
+    @Bean
+    public CodecRedisSerializer defaultRedisValueSerializer(RedisSerializerProperties redisSerializerProperties) {
+        return this.create(redisSerializerProperties.getCodec());
+    }
+
+    /**
+     * 创建value序列化器
+     *
+     * @param codecName 写入使用的编码名称，json表示写入原来的json格式
+     */
+    public CodecRedisSerializer create(String codecName) {
+        RedisValueCodec writeCodec = null;
+        if (!JSON.equals(codecName)) {
+            writeCodec = codecMap.get(codecName);
+            if (writeCodec == null) {
+                throw new IllegalArgumentException("unknown redis codec " + codecName + ",available codecs are " + codecMap.keySet());
+            }
+        }
+        return new CodecRedisSerializer(writeCodec, codecMap.values(), jsonSerializer);
+    }
+
+    /**
+     * 创建单一类型的value序列化器，可以读取任意编码写入的同类型数据
+     * 写入格式跟随默认配置的编码：配置为json时写入原来的json格式，升级之前的节点仍然可以读取，
+     * 其他编码时写入单一类型的kryo格式
+     *
+     * @param type value的类型
+     */
+    public <T> KryoTypedRedisSerializer<T> createTyped(Class<T> type) {
+        boolean writeKryo = !JSON.equals(redisSerializerProperties.getCodec());
+        return new KryoTypedRedisSerializer<>(type, this.create(JSON), writeKryo);
+    }
+
+    public RedisSerializer<Object> getJsonSerializer() {
+        return jsonSerializer;
+    }
+
+    private static KryoRedisValueCodec createKryoCodec(RedisSerializerProperties redisSerializerProperties) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : redisSerializerProperties.getKryoClasses()) {
+            try {
+                classes.add(ClassUtils.forName(className, RedisSerializerFactory.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return new KryoRedisValueCodec(classes);
+    }
+}
@@ -0,0 +1,18 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "live.redis.serializer")
+@Configuration
+public class RedisSerializerProperties {
+    //默认RedisTemplate写入value使用的编码，json或者kryo，读取时会自动识别所有编码
+    private String codec = RedisSerializerFactory.JSON;
+    //kryo需要注册的类，注册编号由顺序决定，只能在末尾追加，所有节点必须保持一致
+    private List<String> kryoClasses = new ArrayList<>();
+}
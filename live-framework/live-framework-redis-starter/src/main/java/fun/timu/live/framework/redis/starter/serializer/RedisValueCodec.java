@@ -0,0 +1,34 @@
+package fun.timu.live.framework.redis.starter.serializer;
+
+/**
+ * redis缓存值的编解码扩展点
+ * <p>
+ * 实现类注册为spring bean后即可通过名称被RedisTemplate选用，编码结果写入redis时会加上
+ * [魔数, codecId]两个字节的头部，读取时根据头部选择解码器；没有头部的数据按照json读取
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 编码名称，对应配置项live.redis.serializer.codec
+     */
+    String getName();
+
+    /**
+     * 写在数据头部的编码标识，0保留给json，不同实现之间不能重复
+     */
+    byte getCodecId();
+
+    /**
+     * 编码，返回的数据不包含头部
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码
+     *
+     * @param bytes  包含头部的完整数据
+     * @param offset 去掉头部之后数据开始的位置
+     * @return 解码结果，数据与当前的类结构不兼容时返回null，按照缓存未命中处理
+     */
+    Object decode(byte[] bytes, int offset);
+}
@@ -0,0 +1,289 @@
+package fun.timu.live.id.generate.client;
+
+import fun.timu.live.id.generate.enums.IdTypeEnum;
+import fun.timu.live.id.generate.interfaces.IdGenerateRpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * id生成服务的客户端预取缓存
+ * 每种id类型在本地维护一个预取好的id环形缓冲区，剩余数量低于水位线时异步调用批量接口补充，
+ * 业务线程在绝大多数情况下直接从本地取id，不需要额外的网络调用；缓冲区取空时退化为同步调用单个id的接口
+ * <p>
+ * 有序id从缓存中取出时只能保证同一个节点、补充并发度为1时单调递增，需要全局有序的场景不要使用缓存
+ */
+public class IdPrefetchCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdPrefetchCache.class);
+    /**
+     * 与服务端单次批量分配的上限保持一致
+     */
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final IdGenerateRpc idGenerateRpc;
+    private final int capacity;
+    private final int lowWaterMark;
+    private final int refillParallelism;
+    private final ThreadPoolExecutor refillExecutor;
+    private final Map<IdTypeEnum, IdRing> seqIdRingMap = new EnumMap<>(IdTypeEnum.class);
+    private final Map<IdTypeEnum, IdRing> unSeqIdRingMap = new EnumMap<>(IdTypeEnum.class);
+
+    /**
+     * @param idGenerateRpc     id生成服务
+     * @param capacity          每种id类型的缓冲区容量
+     * @param lowWaterMark      缓冲区剩余数量低于该值时触发补充
+     * @param refillParallelism 每种id类型同时进行的补充请求数量上限
+     */
+    public IdPrefetchCache(IdGenerateRpc idGenerateRpc, int capacity, int lowWaterMark, int refillParallelism) {
+        if (capacity <= 0 || lowWaterMark < 0 || lowWaterMark >= capacity || refillParallelism <= 0) {
+            throw new IllegalArgumentException("illegal prefetch config,capacity is " + capacity
+                    + ",lowWaterMark is " + lowWaterMark + ",refillParallelism is " + refillParallelism);
+        }
+        this.idGenerateRpc = idGenerateRpc;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.refillParallelism = refillParallelism;
+        for (IdTypeEnum idTypeEnum : IdTypeEnum.values()) {
+            seqIdRingMap.put(idTypeEnum, new IdRing(idTypeEnum, true));
+            unSeqIdRingMap.put(idTypeEnum, new IdRing(idTypeEnum, false));
+        }
+        int threads = refillParallelism * IdTypeEnum.values().length * 2;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.refillExecutor = new ThreadPoolExecutor(threads, threads, 3, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("id-prefetch-thread-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refillExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取有序id
+     *
+     * @param idTypeEnum id类型
+     * @return id，服务端不可用时返回null
+     */
+    public Long getSeqId(IdTypeEnum idTypeEnum) {
+        return seqIdRingMap.get(idTypeEnum).take();
+    }
+
+    /**
+     * 获取无序id
+     *
+     * @param idTypeEnum id类型
+     * @return id，服务端不可用时返回null
+     */
+    public Long getUnSeqId(IdTypeEnum idTypeEnum) {
+        return unSeqIdRingMap.get(idTypeEnum).take();
+    }
+
+    /**
+     * 预热缓冲区，一般在应用启动时调用，避免第一批请求全部退化为同步调用
+     *
+     * @param idTypeEnum id类型
+     * @param isSeq      是否为有序id
+     */
+    public void warmUp(IdTypeEnum idTypeEnum, boolean isSeq) {
+        (isSeq ? seqIdRingMap : unSeqIdRingMap).get(idTypeEnum).triggerRefill();
+    }
+
+    public long getHitCount() {
+        long hit = 0;
+        for (IdTypeEnum idTypeEnum : IdTypeEnum.values()) {
+            hit += this.getHitCount(idTypeEnum);
+        }
+        return hit;
+    }
+
+    public long getStallCount() {
+        long stall = 0;
+        for (IdTypeEnum idTypeEnum : IdTypeEnum.values()) {
+            stall += this.getStallCount(idTypeEnum);
+        }
+        return stall;
+    }
+
+    /**
+     * 本地缓冲区命中率
+     */
+    public double getHitRatio() {
+        return hitRatio(this.getHitCount(), this.getStallCount());
+    }
+
+    /**
+     * 某种id类型（包括有序和无序id）直接从本地缓冲区取到id的次数
+     */
+    public long getHitCount(IdTypeEnum idTypeEnum) {
+        return seqIdRingMap.get(idTypeEnum).hitCount.sum() + unSeqIdRingMap.get(idTypeEnum).hitCount.sum();
+    }
+
+    /**
+     * 某种id类型（包括有序和无序id）缓冲区为空、退化为同步rpc调用的次数
+     */
+    public long getStallCount(IdTypeEnum idTypeEnum) {
+        return seqIdRingMap.get(idTypeEnum).stallCount.sum() + unSeqIdRingMap.get(idTypeEnum).stallCount.sum();
+    }
+
+    /**
+     * 某种id类型的本地缓冲区命中率
+     */
+    public double getHitRatio(IdTypeEnum idTypeEnum) {
+        return hitRatio(this.getHitCount(idTypeEnum), this.getStallCount(idTypeEnum));
+    }
+
+    private static double hitRatio(long hit, long stall) {
+        long total = hit + stall;
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 当前缓冲区中剩余的id数量
+     */
+    public int getBufferedSize(IdTypeEnum idTypeEnum, boolean isSeq) {
+        return (isSeq ? seqIdRingMap : unSeqIdRingMap).get(idTypeEnum).size();
+    }
+
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    /**
+     * 单个id类型的环形缓冲区
+     */
+    private class IdRing {
+        private final IdTypeEnum idTypeEnum;
+        private final boolean isSeq;
+        private final long[] ids = new long[capacity];
+        private final ReentrantLock lock = new ReentrantLock();
+        /**
+         * 正在进行中的补充请求数量
+         */
+        private final AtomicInteger refillRunning = new AtomicInteger();
+        /**
+         * 直接从本地缓冲区取到id的次数
+         */
+        private final LongAdder hitCount = new LongAdder();
+        /**
+         * 缓冲区为空，退化为同步rpc调用的次数
+         */
+        private final LongAdder stallCount = new LongAdder();
+        private int head;
+        private int size;
+        /**
+         * 已经发出、还没有写回缓冲区的id数量，避免并发补充时超出容量
+         */
+        private int pending;
+
+        IdRing(IdTypeEnum idTypeEnum, boolean isSeq) {
+            this.idTypeEnum = idTypeEnum;
+            this.isSeq = isSeq;
+        }
+
+        Long take() {
+            long id = 0;
+            boolean hit = false;
+            int remain;
+            lock.lock();
+            try {
+                if (size > 0) {
+                    id = ids[head];
+                    head = (head + 1) % capacity;
+                    size--;
+                    hit = true;
+                }
+                remain = size;
+            } finally {
+                lock.unlock();
+            }
+            if (remain < lowWaterMark || !hit) {
+                this.triggerRefill();
+            }
+            if (hit) {
+                hitCount.increment();
+                return id;
+            }
+            stallCount.increment();
+            int code = idTypeEnum.getCode();
+            return isSeq ? idGenerateRpc.getSeqId(code) : idGenerateRpc.getUnSeqId(code);
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void triggerRefill() {
+            if (refillRunning.incrementAndGet() > refillParallelism) {
+                refillRunning.decrementAndGet();
+                return;
+            }
+            int count;
+            lock.lock();
+            try {
+                count = Math.min(capacity - size - pending, MAX_BATCH_SIZE);
+                if (count <= 0) {
+                    refillRunning.decrementAndGet();
+                    return;
+                }
+                pending += count;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                refillExecutor.execute(() -> this.refill(count));
+            } catch (RejectedExecutionException e) {
+                this.afterRefill(null, count);
+            }
+        }
+
+        private void refill(int count) {
+            long[] batch = null;
+            try {
+                int code = idTypeEnum.getCode();
+                batch = isSeq ? idGenerateRpc.getSeqIdBatch(code, count) : idGenerateRpc.getUnSeqIdBatch(code, count);
+                if (batch == null) {
+                    LOGGER.error("[IdPrefetchCache] refill return null,idType is {},isSeq is {}", idTypeEnum, isSeq);
+                }
+            } catch (Exception e) {
+                LOGGER.error("[IdPrefetchCache] refill error,idType is {},isSeq is {}", idTypeEnum, isSeq, e);
+            } finally {
+                this.afterRefill(batch, count);
+            }
+        }
+
+        private void afterRefill(long[] batch, int count) {
+            lock.lock();
+            try {
+                pending -= count;
+                if (batch != null) {
+                    int tail = (head + size) % capacity;
+                    int length = Math.min(batch.length, capacity - size);
+                    for (int i = 0; i < length; i++) {
+                        ids[tail] = batch[i];
+                        tail = (tail + 1) % capacity;
+                    }
+                    size += length;
+                }
+            } finally {
+                lock.unlock();
+                refillRunning.decrementAndGet();
+            }
+        }
+    }
+}
@@ -16,4 +16,22 @@ public interface IdGenerateRpc {
      * @return
      */
     Long getUnSeqId(Integer id);
+
+    /**
+     * 批量获取有序id
+     *
+     * @param type  id类型
+     * @param count 需要的id数量
+     * @return
+     */
+    long[] getSeqIdBatch(int type, int count);
+
+    /**
+     * 批量获取无序id
+     *
+     * @param type  id类型
+     * @param count 需要的id数量
+     * @return
+     */
+    long[] getUnSeqIdBatch(int type, int count);
 }
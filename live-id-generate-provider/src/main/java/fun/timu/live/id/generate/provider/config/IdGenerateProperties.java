@@ -0,0 +1,53 @@
+package fun.timu.live.id.generate.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.id-generate")
+@Configuration
+public class IdGenerateProperties {
+    //动态步长的下限，小于等于0时使用t_id_generate_config中配置的step
+    private long minStep;
+    //动态步长的上限
+    private long maxStep = 1000000;
+    //期望一个号段的使用时长，号段消耗得比这更快时步长翻倍，超过两倍时长时步长减半
+    private Duration segmentDuration = Duration.ofMinutes(15);
+    //雪花算法模式的配置
+    private Snowflake snowflake = new Snowflake();
+    //号段预加载的配置
+    private Refresh refresh = new Refresh();
+    //分条号段模式的配置
+    private Striped striped = new Striped();
+
+    @Data
+    public static class Snowflake {
+        //时间戳的起始时间，上线后不能再修改，默认为2024-01-01 00:00:00 UTC
+        private long epoch = 1704067200000L;
+        //workerId租约的有效期，心跳间隔为有效期的三分之一
+        private Duration leaseDuration = Duration.ofSeconds(60);
+        //可以容忍的时钟回拨时长，回拨在此范围内时继续沿用上一次的时间戳，超过时拒绝生成id
+        private Duration maxClockBackward = Duration.ofMillis(10);
+    }
+
+    @Data
+    public static class Refresh {
+        //预加载号段的线程数
+        private int threads = 4;
+        //预加载失败后的最大重试次数
+        private int maxRetries = 3;
+        //第一次重试的等待时长，之后每次重试翻倍
+        private Duration retryBackoff = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Striped {
+        //分条数量，小于等于0时使用CPU核数，实际数量会向上取整为2的幂
+        private int stripes;
+        //每个分条一次从号段中租用的id数量
+        private int blockSize = 64;
+    }
+}
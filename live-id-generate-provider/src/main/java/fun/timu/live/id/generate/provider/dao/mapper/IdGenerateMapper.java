@@ -8,6 +8,7 @@ import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface IdGenerateMapper extends BaseMapper<IdGeneratePO> {
@@ -16,6 +17,42 @@ public interface IdGenerateMapper extends BaseMapper<IdGeneratePO> {
             "current_start=current_start+step,version=version+1 where id =#{id} and version=#{version}")
     int updateNewIdCountAndVersion(@Param("id") int id, @Param("version") int version);
 
+    /**
+     * 按照指定的步长抢占号段，本次抢占到的号段为[current_start, current_start + step)
+     * 记录中的 next_threshold - current_start 仍然等于配置的 step，按照配置步长抢占的节点不会与之重叠
+     *
+     * @param id      主键
+     * @param version 乐观锁版本号
+     * @param step    本次抢占的步长
+     * @return
+     */
+    @Update("update t_id_generate_config set next_threshold=next_threshold+#{step}," +
+            "current_start=current_start+#{step},version=version+1 where id =#{id} and version=#{version}")
+    int updateNewIdCountAndVersionByStep(@Param("id") int id, @Param("version") int version, @Param("step") long step);
+
+    /**
+     * 按照各自的步长一次性抢占多个id类型的号段，需要在事务中配合selectAllForUpdate使用
+     *
+     * @param steps 主键 -> 本次抢占的步长
+     * @return 更新的记录数
+     */
+    @Update({"<script>",
+            "update t_id_generate_config set",
+            "current_start = case id",
+            "<foreach collection='steps' index='id' item='step'> when #{id} then current_start + #{step} </foreach>",
+            "end,",
+            "next_threshold = case id",
+            "<foreach collection='steps' index='id' item='step'> when #{id} then next_threshold + #{step} </foreach>",
+            "end,",
+            "version = version + 1",
+            "where id in",
+            "<foreach collection='steps' index='id' item='step' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int batchUpdateNewIdCountAndVersionByStep(@Param("steps") Map<Integer, Long> steps);
+
     @Select("select * from t_id_generate_config")
     List<IdGeneratePO> selectAll();
+
+    @Select("select * from t_id_generate_config for update")
+    List<IdGeneratePO> selectAllForUpdate();
 }
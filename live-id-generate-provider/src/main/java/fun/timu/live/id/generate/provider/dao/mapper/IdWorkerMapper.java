@@ -0,0 +1,59 @@
+package fun.timu.live.id.generate.provider.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import fun.timu.live.id.generate.provider.dao.po.IdWorkerPO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface IdWorkerMapper extends BaseMapper<IdWorkerPO> {
+
+    /**
+     * 查询租约已经过期的workerId
+     *
+     * @param now 当前时间戳
+     * @return
+     */
+    @Select("select * from t_id_generate_worker where lease_expire < #{now} order by worker_id limit 16")
+    List<IdWorkerPO> selectExpired(@Param("now") long now);
+
+    /**
+     * 下一个还没有被使用过的workerId
+     *
+     * @return
+     */
+    @Select("select ifnull(max(worker_id) + 1, 0) from t_id_generate_worker")
+    int selectNextWorkerId();
+
+    /**
+     * 基于乐观锁接管一个租约已经过期的workerId
+     *
+     * @param workerId    workerId
+     * @param version     乐观锁版本号
+     * @param instance    当前实例标识
+     * @param leaseExpire 新的租约过期时间戳
+     * @return
+     */
+    @Update("update t_id_generate_worker set instance=#{instance},lease_expire=#{leaseExpire},version=version+1 " +
+            "where worker_id=#{workerId} and version=#{version}")
+    int takeOver(@Param("workerId") int workerId, @Param("version") int version,
+                 @Param("instance") String instance, @Param("leaseExpire") long leaseExpire);
+
+    /**
+     * 续约，只有仍然持有该workerId的实例才能续约成功
+     *
+     * @param workerId      workerId
+     * @param instance      当前实例标识
+     * @param leaseExpire   新的租约过期时间戳
+     * @param lastTimestamp 当前实例生成id使用到的最大时间戳
+     * @return
+     */
+    @Update("update t_id_generate_worker set lease_expire=#{leaseExpire},last_timestamp=greatest(last_timestamp,#{lastTimestamp}) " +
+            "where worker_id=#{workerId} and instance=#{instance}")
+    int renew(@Param("workerId") int workerId, @Param("instance") String instance,
+              @Param("leaseExpire") long leaseExpire, @Param("lastTimestamp") long lastTimestamp);
+}
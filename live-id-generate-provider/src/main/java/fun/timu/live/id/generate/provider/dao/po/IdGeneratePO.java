@@ -34,6 +34,11 @@ public class IdGeneratePO {
      */
     private int isSeq;
 
+    /**
+     * id生成方式，0号段模式，1雪花算法模式，2分条号段模式
+     */
+    private int idMode;
+
     /**
      * 当前id所在阶段的开始值
      */
@@ -0,0 +1,40 @@
+package fun.timu.live.id.generate.provider.dao.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@TableName("t_id_generate_worker")
+public class IdWorkerPO {
+
+    @TableId(type = IdType.INPUT)
+    private Integer workerId;
+
+    /**
+     * 当前持有租约的实例标识
+     */
+    private String instance;
+
+    /**
+     * 租约过期时间戳，单位毫秒
+     */
+    private long leaseExpire;
+
+    /**
+     * 持有该workerId的实例最后一次上报的时间戳，重新获得该workerId的实例不能生成早于该时间的id
+     */
+    private long lastTimestamp;
+
+    /**
+     * 乐观锁版本号
+     */
+    private int version;
+
+    private Date createTime;
+
+    private Date updateTime;
+}
@@ -0,0 +1,21 @@
+package fun.timu.live.id.generate.provider.enums;
+
+import lombok.Getter;
+
+/**
+ * id的生成方式，对应t_id_generate_config中的id_mode字段
+ */
+@Getter
+public enum IdGenerateModeEnum {
+    SEGMENT(0, "数据库号段模式"),
+    SNOWFLAKE(1, "雪花算法模式，热路径不访问数据库"),
+    STRIPED_SEGMENT(2, "分条号段模式，只对有序id生效，每个分条从号段中租用小块id");
+
+    int code;
+    String desc;
+
+    IdGenerateModeEnum(int code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,16 @@
+package fun.timu.live.id.generate.provider.refresh;
+
+import fun.timu.live.id.generate.provider.service.bo.IdSegmentBO;
+
+/**
+ * 从数据库抢占号段并装填到指定槽位
+ */
+@FunctionalInterface
+public interface SegmentLoader {
+
+    /**
+     * @param id      id生成配置的主键
+     * @param segment 需要装填的号段
+     */
+    void load(int id, IdSegmentBO segment);
+}
@@ -0,0 +1,123 @@
+package fun.timu.live.id.generate.provider.refresh;
+
+import fun.timu.live.id.generate.provider.config.IdGenerateProperties;
+import fun.timu.live.id.generate.provider.service.bo.AbstractLocalIdBO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 号段预加载调度器
+ * <p>
+ * 每个id类型通过AbstractLocalIdBO.refreshScheduled保证同一时刻最多只有一个预加载任务，重复的预加载请求直接合并，
+ * 因此队列中的任务数量不会超过id类型的数量。加载失败时按照指数退避重试，等待重试期间不持有threadRunning，
+ * 分配线程在号段用完时仍然可以同步加载
+ */
+@Component
+public class SegmentRefreshScheduler implements DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentRefreshScheduler.class);
+
+    private final IdGenerateProperties idGenerateProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Counter coalescedCounter;
+    private final Counter retryCounter;
+
+    public SegmentRefreshScheduler(IdGenerateProperties idGenerateProperties, MeterRegistry meterRegistry) {
+        this.idGenerateProperties = idGenerateProperties;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(idGenerateProperties.getRefresh().getThreads(), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("id-segment-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+        Gauge.builder("live.id.generate.refresh.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("live.id.generate.refresh.coalesced").register(meterRegistry);
+        this.retryCounter = Counter.builder("live.id.generate.refresh.retry").register(meterRegistry);
+    }
+
+    /**
+     * 提交一个预加载任务，该id类型已经有预加载任务时直接合并
+     *
+     * @param localIdBO     本地id的双buffer
+     * @param segmentLoader 号段加载方法
+     */
+    public void submit(AbstractLocalIdBO localIdBO, SegmentLoader segmentLoader) {
+        if (!localIdBO.getRefreshScheduled().compareAndSet(false, true)) {
+            coalescedCounter.increment();
+            return;
+        }
+        this.schedule(localIdBO, segmentLoader, 0);
+    }
+
+    private void schedule(AbstractLocalIdBO localIdBO, SegmentLoader segmentLoader, int attempt) {
+        long delay = attempt == 0 ? 0 : idGenerateProperties.getRefresh().getRetryBackoff().toMillis() << (attempt - 1);
+        try {
+            executor.schedule(() -> this.load(localIdBO, segmentLoader, attempt), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 任务没有提交成功，需要复位标记，否则该id类型不会再被刷新
+            localIdBO.getRefreshScheduled().set(false);
+            LOGGER.error("[SegmentRefreshScheduler] rejected,id is {}", localIdBO.getId(), e);
+        }
+    }
+
+    private void load(AbstractLocalIdBO localIdBO, SegmentLoader segmentLoader, int attempt) {
+        // 备用号段已经准备好，或者分配线程正在同步加载
+        if (localIdBO.isNextReady() || !localIdBO.getThreadRunning().compareAndSet(false, true)) {
+            localIdBO.getRefreshScheduled().set(false);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean loadStatus = false;
+        try {
+            // 将新号段装填到备用槽位，备用槽位此时不会被分配线程访问
+            segmentLoader.load(localIdBO.getId(), localIdBO.getNext());
+            loadStatus = true;
+        } catch (Exception e) {
+            LOGGER.error("[SegmentRefreshScheduler] load segment error,id is {},attempt is {}", localIdBO.getId(), attempt, e);
+        } finally {
+            if (loadStatus) {
+                localIdBO.getLock().writeLock().lock();
+                localIdBO.setNextReady(true);
+                localIdBO.getThreadRunning().set(false);
+                localIdBO.getLock().writeLock().unlock();
+            } else {
+                localIdBO.getThreadRunning().set(false);
+            }
+            Timer.builder("live.id.generate.refresh.latency")
+                    .tag("id", String.valueOf(localIdBO.getId()))
+                    .tag("result", loadStatus ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (loadStatus) {
+            localIdBO.getRefreshScheduled().set(false);
+            LOGGER.info("本地id段预加载完成,id is {}", localIdBO.getId());
+        } else if (attempt < idGenerateProperties.getRefresh().getMaxRetries()) {
+            retryCounter.increment();
+            this.schedule(localIdBO, segmentLoader, attempt + 1);
+        } else {
+            localIdBO.getRefreshScheduled().set(false);
+            LOGGER.error("[SegmentRefreshScheduler] give up loading segment,id is {}", localIdBO.getId());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
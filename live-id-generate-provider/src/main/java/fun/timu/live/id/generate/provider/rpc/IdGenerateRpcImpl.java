@@ -22,4 +22,14 @@ public class IdGenerateRpcImpl implements IdGenerateRpc {
     public Long getUnSeqId(Integer id) {
         return idGenerateService.getUnSeqId(id);
     }
+
+    @Override
+    public long[] getSeqIdBatch(int type, int count) {
+        return idGenerateService.getSeqIdBatch(type, count);
+    }
+
+    @Override
+    public long[] getUnSeqIdBatch(int type, int count) {
+        return idGenerateService.getUnSeqIdBatch(type, count);
+    }
 }
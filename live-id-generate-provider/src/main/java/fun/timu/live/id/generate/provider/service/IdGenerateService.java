@@ -17,4 +17,22 @@ public interface IdGenerateService {
      * @return
      */
     Long getUnSeqId(Integer id);
+
+    /**
+     * 批量获取有序id
+     *
+     * @param id
+     * @param count
+     * @return
+     */
+    long[] getSeqIdBatch(Integer id, int count);
+
+    /**
+     * 批量获取无序id
+     *
+     * @param id
+     * @param count
+     * @return
+     */
+    long[] getUnSeqIdBatch(Integer id, int count);
 }
@@ -0,0 +1,13 @@
+package fun.timu.live.id.generate.provider.service;
+
+import fun.timu.live.id.generate.provider.service.bo.IdWorkerLeaseBO;
+
+public interface IdWorkerLeaseService {
+
+    /**
+     * 获取当前实例的workerId租约，首次调用时从数据库中抢占workerId并开始心跳续约，之后的调用返回同一个租约
+     *
+     * @return
+     */
+    IdWorkerLeaseBO acquire();
+}
@@ -0,0 +1,54 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Data;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 本地id的双buffer，一个号段在使用，另一个号段提前预加载，当前号段用完后原地切换
+ */
+@Data
+public abstract class AbstractLocalIdBO {
+    private int id;
+    /**
+     * 两个号段交替使用
+     */
+    private final IdSegmentBO[] segments = new IdSegmentBO[]{new IdSegmentBO(), new IdSegmentBO()};
+    /**
+     * 当前正在使用的号段下标
+     */
+    private volatile int currentPos;
+    /**
+     * 备用号段是否已经加载完成
+     */
+    private volatile boolean nextReady;
+    /**
+     * 是否有线程正在加载备用号段
+     */
+    private final AtomicBoolean threadRunning = new AtomicBoolean(false);
+    /**
+     * 是否已经提交了预加载任务（包括等待重试的任务），保证每个id类型同一时刻只有一个预加载任务
+     */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    /**
+     * 分配id时持有读锁，切换号段时持有写锁
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public IdSegmentBO getCurrent() {
+        return segments[currentPos];
+    }
+
+    public IdSegmentBO getNext() {
+        return segments[nextPos()];
+    }
+
+    public int nextPos() {
+        return (currentPos + 1) % 2;
+    }
+
+    public void switchPos() {
+        currentPos = nextPos();
+    }
+}
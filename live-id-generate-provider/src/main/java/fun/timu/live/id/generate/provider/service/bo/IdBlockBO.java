@@ -0,0 +1,23 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分条从号段中租用的一小块id，范围是[cursor初始值 + 1, end]，用完后整体替换为新的对象
+ */
+@Getter
+public class IdBlockBO {
+    private final AtomicLong cursor;
+    private final long end;
+
+    /**
+     * @param first 第一个可以分配的id
+     * @param end   最后一个可以分配的id
+     */
+    public IdBlockBO(long first, long end) {
+        this.cursor = new AtomicLong(first - 1);
+        this.end = end;
+    }
+}
@@ -0,0 +1,73 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import fun.timu.live.id.generate.provider.utils.IdShuffleUtils;
+import lombok.Data;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个id号段，作为双buffer中的一个槽位被反复复用，切换号段时不会产生新的对象
+ */
+@Data
+public class IdSegmentBO {
+    /**
+     * 在内存中记录的当前id的值
+     */
+    private final AtomicLong currentNum = new AtomicLong();
+    /**
+     * 当前id段的开始值
+     */
+    private volatile long currentStart;
+    /**
+     * 当前id段的结束值
+     */
+    private volatile long nextThreshold;
+    /**
+     * 无序id使用的置换密钥，每次装填号段时重新生成
+     */
+    private volatile long shuffleKey;
+    /**
+     * 无序id置换的半块位数
+     */
+    private volatile int shuffleHalfBits;
+
+    /**
+     * 重新装填号段，只会在号段处于备用状态（没有线程在分配）时调用
+     *
+     * @param currentStart  号段开始值
+     * @param nextThreshold 号段结束值
+     */
+    public void reset(long currentStart, long nextThreshold) {
+        this.currentStart = currentStart;
+        this.nextThreshold = nextThreshold;
+        this.shuffleKey = ThreadLocalRandom.current().nextLong();
+        this.shuffleHalfBits = IdShuffleUtils.halfBits(nextThreshold - currentStart);
+        this.currentNum.set(currentStart);
+    }
+
+    /**
+     * 将递增分配到的值转换为号段内的无序id
+     *
+     * @param value currentNum自增后的值，范围是(currentStart, nextThreshold]
+     * @return 范围是[currentStart, nextThreshold)的无序id
+     */
+    public long toUnSeqId(long value) {
+        long index = value - currentStart - 1;
+        return currentStart + IdShuffleUtils.shuffle(index, getStep(), shuffleHalfBits, shuffleKey);
+    }
+
+    /**
+     * 号段的总长度
+     */
+    public long getStep() {
+        return nextThreshold - currentStart;
+    }
+
+    /**
+     * 号段中还未分配的id数量
+     */
+    public long getIdle() {
+        return nextThreshold - currentNum.get();
+    }
+}
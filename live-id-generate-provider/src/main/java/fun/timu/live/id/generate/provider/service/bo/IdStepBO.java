@@ -0,0 +1,27 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Data;
+
+/**
+ * 记录每种id类型的动态步长，根据上一个号段的使用时长来调整下一次抢占的步长
+ */
+@Data
+public class IdStepBO {
+    private int id;
+    /**
+     * 下一次抢占号段使用的步长
+     */
+    private volatile long step;
+    /**
+     * 步长的下限
+     */
+    private long minStep;
+    /**
+     * 上一次抢占号段的时间戳，为0表示还没有抢占过
+     */
+    private volatile long updateTimestamp;
+    /**
+     * 上一个号段的使用时长，单位毫秒
+     */
+    private volatile long lastLifetime;
+}
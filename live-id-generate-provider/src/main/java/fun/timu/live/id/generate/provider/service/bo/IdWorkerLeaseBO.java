@@ -0,0 +1,23 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Data;
+
+/**
+ * 当前实例持有的workerId租约，所有雪花算法模式的id类型共用同一个workerId
+ */
+@Data
+public class IdWorkerLeaseBO {
+    private int workerId;
+    /**
+     * 当前实例标识
+     */
+    private String instance;
+    /**
+     * 租约在本地的过期时间戳，心跳续约成功后推后，租约过期后不再生成id
+     */
+    private volatile long leaseExpireAt;
+    /**
+     * 获得租约时该workerId上一次上报的时间戳
+     */
+    private long lastTimestamp;
+}
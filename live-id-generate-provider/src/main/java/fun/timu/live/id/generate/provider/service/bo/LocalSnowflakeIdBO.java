@@ -0,0 +1,141 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法模式的本地id生成器，id由时间戳、workerId和序列号组成，生成过程完全在内存中完成
+ * <p>
+ * 时间戳（相对epoch，41位）和序列号（12位）打包在同一个AtomicLong中，通过CAS推进，不需要加锁。
+ * 单毫秒内的序列号用完后，在maxClockBackward范围内借用下一毫秒；
+ * 时钟回拨不超过maxClockBackward时继续沿用上一次的时间戳，超过时拒绝生成id
+ */
+@Getter
+public class LocalSnowflakeIdBO {
+    public static final int SEQUENCE_BITS = 12;
+    public static final int WORKER_ID_BITS = 10;
+    public static final int MAX_WORKER_ID = (1 << WORKER_ID_BITS) - 1;
+    /**
+     * 租约已经过期
+     */
+    public static final long LEASE_EXPIRED = -1;
+    /**
+     * 时钟回拨超过了可以容忍的范围
+     */
+    public static final long CLOCK_BACKWARD = -2;
+    private static final long WAIT_NEXT_MILLIS = -3;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final int id;
+    private final IdWorkerLeaseBO lease;
+    private final long epoch;
+    private final long maxBackwardMillis;
+    /**
+     * 高位为相对epoch的时间戳，低SEQUENCE_BITS位为该时间戳下最后一个已经分配的序列号
+     */
+    private final AtomicLong state;
+
+    public LocalSnowflakeIdBO(int id, IdWorkerLeaseBO lease, long epoch, long maxBackwardMillis) {
+        this.id = id;
+        this.lease = lease;
+        this.epoch = epoch;
+        this.maxBackwardMillis = maxBackwardMillis;
+        // 从上一个持有者上报的时间戳之后开始，序列号置满保证不会复用该毫秒
+        long lastElapsed = Math.max(lease.getLastTimestamp() - epoch, 0);
+        this.state = new AtomicLong(lastElapsed << SEQUENCE_BITS | SEQUENCE_MASK);
+    }
+
+    /**
+     * 生成一个id
+     *
+     * @return 生成的id，租约过期时返回LEASE_EXPIRED，时钟回拨过大时返回CLOCK_BACKWARD
+     */
+    public long nextId() {
+        while (true) {
+            // 先读状态再读时钟，避免线程在两次读取之间被挂起，把其他线程推进后的状态误判为时钟回拨
+            long current = state.get();
+            long now = System.currentTimeMillis();
+            if (now >= lease.getLeaseExpireAt()) {
+                return LEASE_EXPIRED;
+            }
+            long next = advance(current, now - epoch, 1);
+            if (next == CLOCK_BACKWARD) {
+                return CLOCK_BACKWARD;
+            }
+            if (next == WAIT_NEXT_MILLIS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (state.compareAndSet(current, next)) {
+                return toId(next >>> SEQUENCE_BITS, next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 从offset开始填充ids，一次CAS最多预留当前毫秒内剩余的全部序列号
+     *
+     * @param ids    存放id的数组
+     * @param offset 开始填充的位置
+     * @return 本次填充的数量，租约过期时返回LEASE_EXPIRED，时钟回拨过大时返回CLOCK_BACKWARD
+     */
+    public long nextIds(long[] ids, int offset) {
+        while (true) {
+            // 先读状态再读时钟，避免线程在两次读取之间被挂起，把其他线程推进后的状态误判为时钟回拨
+            long current = state.get();
+            long now = System.currentTimeMillis();
+            if (now >= lease.getLeaseExpireAt()) {
+                return LEASE_EXPIRED;
+            }
+            long next = advance(current, now - epoch, ids.length - offset);
+            if (next == CLOCK_BACKWARD) {
+                return CLOCK_BACKWARD;
+            }
+            if (next == WAIT_NEXT_MILLIS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (state.compareAndSet(current, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long first = timestamp == current >>> SEQUENCE_BITS ? (current & SEQUENCE_MASK) + 1 : 0;
+                long last = next & SEQUENCE_MASK;
+                for (long sequence = first; sequence <= last; sequence++) {
+                    ids[offset++] = toId(timestamp, sequence);
+                }
+                return last - first + 1;
+            }
+        }
+    }
+
+    /**
+     * 计算从current出发预留最多count个序列号之后的新状态
+     *
+     * @param current 当前状态
+     * @param elapsed 当前时间相对epoch的毫秒数
+     * @param count   需要的序列号数量
+     * @return 新状态，需要等待下一毫秒时返回WAIT_NEXT_MILLIS，时钟回拨过大时返回CLOCK_BACKWARD
+     */
+    private long advance(long current, long elapsed, int count) {
+        long timestamp = current >>> SEQUENCE_BITS;
+        if (elapsed > timestamp) {
+            return elapsed << SEQUENCE_BITS | Math.min(count - 1, SEQUENCE_MASK);
+        }
+        if (timestamp - elapsed > maxBackwardMillis) {
+            return CLOCK_BACKWARD;
+        }
+        long sequence = current & SEQUENCE_MASK;
+        if (sequence < SEQUENCE_MASK) {
+            return current + Math.min(count, SEQUENCE_MASK - sequence);
+        }
+        // 当前毫秒的序列号已经用完，超前量不超过maxBackwardMillis时借用下一毫秒
+        if (timestamp + 1 - elapsed > maxBackwardMillis) {
+            return WAIT_NEXT_MILLIS;
+        }
+        return (timestamp + 1) << SEQUENCE_BITS | Math.min(count - 1, SEQUENCE_MASK);
+    }
+
+    private long toId(long timestamp, long sequence) {
+        return timestamp << (WORKER_ID_BITS + SEQUENCE_BITS) | (long) lease.getWorkerId() << SEQUENCE_BITS | sequence;
+    }
+}
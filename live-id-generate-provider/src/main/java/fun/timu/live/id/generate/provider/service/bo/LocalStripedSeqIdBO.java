@@ -0,0 +1,41 @@
+package fun.timu.live.id.generate.provider.service.bo;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分条的有序id本地双buffer
+ * 线程按照线程id映射到不同的分条，每个分条从当前号段中租用一小块id后在块内自增，
+ * 号段的currentNum只在租用新块时才会被竞争。id全局唯一，整体上按照块的粒度递增
+ */
+@Getter
+public class LocalStripedSeqIdBO extends LocalSeqIdBO {
+    private final AtomicReferenceArray<IdBlockBO> blocks;
+    private final int stripeMask;
+    private final int blockSize;
+
+    /**
+     * @param stripes   分条数量，向上取整为2的幂
+     * @param blockSize 每个分条一次租用的id数量
+     */
+    public LocalStripedSeqIdBO(int stripes, int blockSize) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.blocks = new AtomicReferenceArray<>(size);
+        // 初始为空块，第一次分配时租用
+        IdBlockBO empty = new IdBlockBO(1, 0);
+        for (int i = 0; i < size; i++) {
+            blocks.set(i, empty);
+        }
+        this.stripeMask = size - 1;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * 当前线程对应的分条下标
+     */
+    public int stripeIndex() {
+        long threadId = Thread.currentThread().getId();
+        return (int) (threadId ^ (threadId >>> 16)) & stripeMask;
+    }
+}
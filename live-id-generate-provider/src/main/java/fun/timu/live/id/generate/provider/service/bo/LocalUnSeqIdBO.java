@@ -1,23 +1,7 @@
 package fun.timu.live.id.generate.provider.service.bo;
 
-import lombok.Data;
-
-import java.util.concurrent.ConcurrentLinkedQueue;
-
-@Data
-public class LocalUnSeqIdBO {
-    private int id;
-    /**
-     * 提前将无序的id存放在这条队列中
-     */
-    private ConcurrentLinkedQueue<Long> idQueue;
-    /**
-     * 当前id段的开始值
-     */
-    private Long currentStart;
-    /**
-     * 当前id段的结束值
-     */
-    private Long nextThreshold;
-
+/**
+ * 无序id的本地双buffer，号段内的顺序下标经过Feistel置换后再分配，不需要提前生成并打乱整个号段
+ */
+public class LocalUnSeqIdBO extends AbstractLocalIdBO {
 }
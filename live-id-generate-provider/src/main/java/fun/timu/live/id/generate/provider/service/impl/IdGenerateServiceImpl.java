@@ -1,56 +1,70 @@
 package fun.timu.live.id.generate.provider.service.impl;
 
+import fun.timu.live.id.generate.provider.config.IdGenerateProperties;
 import fun.timu.live.id.generate.provider.dao.mapper.IdGenerateMapper;
 import fun.timu.live.id.generate.provider.dao.po.IdGeneratePO;
+import fun.timu.live.id.generate.provider.enums.IdGenerateModeEnum;
+import fun.timu.live.id.generate.provider.refresh.SegmentLoader;
+import fun.timu.live.id.generate.provider.refresh.SegmentRefreshScheduler;
 import fun.timu.live.id.generate.provider.service.IdGenerateService;
+import fun.timu.live.id.generate.provider.service.IdWorkerLeaseService;
+import fun.timu.live.id.generate.provider.service.bo.AbstractLocalIdBO;
+import fun.timu.live.id.generate.provider.service.bo.IdBlockBO;
+import fun.timu.live.id.generate.provider.service.bo.IdSegmentBO;
+import fun.timu.live.id.generate.provider.service.bo.IdStepBO;
 import fun.timu.live.id.generate.provider.service.bo.LocalSeqIdBO;
+import fun.timu.live.id.generate.provider.service.bo.LocalSnowflakeIdBO;
+import fun.timu.live.id.generate.provider.service.bo.LocalStripedSeqIdBO;
 import fun.timu.live.id.generate.provider.service.bo.LocalUnSeqIdBO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class IdGenerateServiceImpl implements IdGenerateService, InitializingBean {
     private final IdGenerateMapper idGenerateMapper;
+    private final IdGenerateProperties idGenerateProperties;
+    private final MeterRegistry meterRegistry;
+    private final IdWorkerLeaseService idWorkerLeaseService;
+    private final SegmentRefreshScheduler segmentRefreshScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final SegmentLoader segmentLoader = this::loadSegment;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(IdGenerateServiceImpl.class);
     private static Map<Integer, LocalSeqIdBO> localSeqIdBOMap = new ConcurrentHashMap<>();
     private static Map<Integer, LocalUnSeqIdBO> localUnSeqIdBOMap = new ConcurrentHashMap<>();
-    private static ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(8, 16, 3, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000), new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(r);
-            thread.setName("id-generate-thread-" + ThreadLocalRandom.current().nextInt(1000));
-            return thread;
-        }
-    });
+    private static Map<Integer, LocalSnowflakeIdBO> localSnowflakeIdBOMap = new ConcurrentHashMap<>();
     private static final float UPDATE_RATE = 0.75f;
     private static final int SEQ_ID = 1;
-    private static Map<Integer, Semaphore> semaphoreMap = new ConcurrentHashMap<>();
+    private static final int MAX_BATCH_SIZE = 10000;
+    private static Map<Integer, IdStepBO> idStepBOMap = new ConcurrentHashMap<>();
 
-    public IdGenerateServiceImpl(IdGenerateMapper idGenerateMapper) {
+    public IdGenerateServiceImpl(IdGenerateMapper idGenerateMapper, IdGenerateProperties idGenerateProperties, MeterRegistry meterRegistry,
+                                 IdWorkerLeaseService idWorkerLeaseService, SegmentRefreshScheduler segmentRefreshScheduler,
+                                 TransactionTemplate transactionTemplate) {
         this.idGenerateMapper = idGenerateMapper;
+        this.idGenerateProperties = idGenerateProperties;
+        this.meterRegistry = meterRegistry;
+        this.idWorkerLeaseService = idWorkerLeaseService;
+        this.segmentRefreshScheduler = segmentRefreshScheduler;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
      * 获取序列ID
      *
      * @param id 用于获取序列ID的键，不能为空
-     * @return 返回序列ID，如果输入参数为空或对应参数无序列ID信息，则返回null
-     * <p>
-     * 此方法用于根据给定的键获取一个唯一的序列ID它首先检查输入的键是否为空，
-     * 如果为空，则记录错误日志并返回null接着，它尝试从一个映射中获取与键关联的序列ID对象，
-     * 如果找不到，则同样记录错误日志并返回null在成功获取序列ID对象后，它会刷新该对象以确保序列的正确性，
-     * 然后尝试获取下一个可用的序列ID如果当前序列ID超过了预定义的阈值，
-     * 表明序列ID已用尽，此时记录错误日志并返回null否则，返回当前序列ID
+     * @return 返回序列ID，如果输入参数为空、对应参数无序列ID信息或者数据库不可用导致号段无法加载，则返回null
      */
     @Override
     public Long getSeqId(Integer id) {
@@ -59,6 +73,11 @@ public class IdGenerateServiceImpl implements IdGenerateService, InitializingBea
             LOGGER.error("[getSeqId] id is error,id is {}", id);
             return null;
         }
+        // 雪花算法模式的id本身按时间递增
+        LocalSnowflakeIdBO localSnowflakeIdBO = localSnowflakeIdBOMap.get(id);
+        if (localSnowflakeIdBO != null) {
+            return this.nextSnowflakeId(localSnowflakeIdBO);
+        }
         // 从映射中获取序列ID对象
         LocalSeqIdBO localSeqIdBO = localSeqIdBOMap.get(id);
         // 检查序列ID对象是否存在
@@ -66,262 +85,519 @@ public class IdGenerateServiceImpl implements IdGenerateService, InitializingBea
             LOGGER.error("[getSeqId] localSeqIdBO is null,id is {}", id);
             return null;
         }
-        // 刷新序列ID对象
-        this.refreshLocalSeqId(localSeqIdBO);
-        // 获取当前序列ID
-        long returnId = localSeqIdBO.getCurrentNum().incrementAndGet();
-        // 检查序列ID是否超过阈值
-        if (returnId > localSeqIdBO.getNextThreshold()) {
-            //同步去刷新
-            LOGGER.error("[getSeqId] id is over limit,id is {}", id);
-            return null;
+        if (localSeqIdBO instanceof LocalStripedSeqIdBO localStripedSeqIdBO) {
+            return this.nextStripedId(localStripedSeqIdBO);
         }
-        // 返回当前序列ID
-        return returnId;
+        return this.nextId(localSeqIdBO, true);
     }
 
     /**
      * 获取不连续序列ID
-     * 该方法用于从本地不连续序列ID缓存中获取一个ID
-     * 如果给定的ID为空或在缓存中找不到对应的ID队列，或者ID队列为空，则返回null
      *
      * @param id 用于标识特定序列的ID
-     * @return 从序列中获取的不连续ID，如果无法获取则返回null
+     * @return 从序列中获取的不连续ID，如果输入参数为空、找不到对应的配置或者数据库不可用导致号段无法加载，则返回null
      */
     @Override
     public Long getUnSeqId(Integer id) {
         // 检查输入的ID是否为空，如果为空则记录错误日志并返回null
         if (id == null) {
-            LOGGER.error("[getSeqId] id is error,id is {}", id);
+            LOGGER.error("[getUnSeqId] id is error,id is {}", id);
             return null;
         }
-
+        LocalSnowflakeIdBO localSnowflakeIdBO = localSnowflakeIdBOMap.get(id);
+        if (localSnowflakeIdBO != null) {
+            return this.nextSnowflakeId(localSnowflakeIdBO);
+        }
         // 从映射中获取与给定ID关联的本地不连续序列ID对象
         LocalUnSeqIdBO localUnSeqIdBO = localUnSeqIdBOMap.get(id);
-
         // 检查获取到的对象是否为空，如果为空则记录错误日志并返回null
         if (localUnSeqIdBO == null) {
             LOGGER.error("[getUnSeqId] localUnSeqIdBO is null,id is {}", id);
             return null;
         }
+        return this.nextId(localUnSeqIdBO, false);
+    }
+
+    /**
+     * 批量获取有序id，整批id在号段内一次性预留，号段不够时跨号段继续分配
+     *
+     * @param id    id类型
+     * @param count 需要的id数量，不能超过MAX_BATCH_SIZE
+     * @return 分配到的id，参数异常或者数据库不可用时返回null
+     */
+    @Override
+    public long[] getSeqIdBatch(Integer id, int count) {
+        if (id == null || count <= 0 || count > MAX_BATCH_SIZE) {
+            LOGGER.error("[getSeqIdBatch] param is error,id is {},count is {}", id, count);
+            return null;
+        }
+        LocalSnowflakeIdBO localSnowflakeIdBO = localSnowflakeIdBOMap.get(id);
+        if (localSnowflakeIdBO != null) {
+            return this.nextSnowflakeIdBatch(localSnowflakeIdBO, count);
+        }
+        LocalSeqIdBO localSeqIdBO = localSeqIdBOMap.get(id);
+        if (localSeqIdBO == null) {
+            LOGGER.error("[getSeqIdBatch] localSeqIdBO is null,id is {}", id);
+            return null;
+        }
+        return this.nextIdBatch(localSeqIdBO, true, count);
+    }
+
+    /**
+     * 批量获取无序id，整批id在号段内一次性预留，号段不够时跨号段继续分配
+     *
+     * @param id    id类型
+     * @param count 需要的id数量，不能超过MAX_BATCH_SIZE
+     * @return 分配到的id，参数异常或者数据库不可用时返回null
+     */
+    @Override
+    public long[] getUnSeqIdBatch(Integer id, int count) {
+        if (id == null || count <= 0 || count > MAX_BATCH_SIZE) {
+            LOGGER.error("[getUnSeqIdBatch] param is error,id is {},count is {}", id, count);
+            return null;
+        }
+        LocalSnowflakeIdBO localSnowflakeIdBO = localSnowflakeIdBOMap.get(id);
+        if (localSnowflakeIdBO != null) {
+            return this.nextSnowflakeIdBatch(localSnowflakeIdBO, count);
+        }
+        LocalUnSeqIdBO localUnSeqIdBO = localUnSeqIdBOMap.get(id);
+        if (localUnSeqIdBO == null) {
+            LOGGER.error("[getUnSeqIdBatch] localUnSeqIdBO is null,id is {}", id);
+            return null;
+        }
+        return this.nextIdBatch(localUnSeqIdBO, false, count);
+    }
+
+    /**
+     * 从本地双buffer中分配一个id
+     * <p>
+     * 当前号段的使用量超过UPDATE_RATE时异步预加载备用号段，
+     * 当前号段用完后在写锁内原地切换到备用号段，切换过程不会创建新的对象。
+     * 如果备用号段没能提前加载好（例如异步加载失败），则在写锁内同步加载，保证数据库可用时不会返回null。
+     * 有序id直接返回号段内递增的值，无序id将递增的值经过Feistel置换后返回
+     *
+     * @param localIdBO 本地id的双buffer
+     * @param isSeq     是否为有序id
+     * @return 分配到的id，数据库不可用导致号段无法加载时返回null
+     */
+    private Long nextId(AbstractLocalIdBO localIdBO, boolean isSeq) {
+        while (true) {
+            localIdBO.getLock().readLock().lock();
+            try {
+                IdSegmentBO segment = localIdBO.getCurrent();
+                // 使用量超过阈值时，异步预加载备用号段
+                this.refreshLocalId(localIdBO, segment);
+                long value = segment.getCurrentNum().incrementAndGet();
+                if (value <= segment.getNextThreshold()) {
+                    return isSeq ? value : segment.toUnSeqId(value);
+                }
+            } finally {
+                localIdBO.getLock().readLock().unlock();
+            }
+            // 当前号段已经用完，切换到备用号段
+            if (!this.switchSegment(localIdBO)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 从当前线程对应的分条中分配一个有序id
+     * 分条中的块用完后，在该块上加锁租用新块，同一个分条同一时刻只会有一个线程去号段中租用
+     *
+     * @param localIdBO 分条的本地双buffer
+     * @return 分配到的id，数据库不可用导致号段无法加载时返回null
+     */
+    private Long nextStripedId(LocalStripedSeqIdBO localIdBO) {
+        int index = localIdBO.stripeIndex();
+        while (true) {
+            IdBlockBO block = localIdBO.getBlocks().get(index);
+            long value = block.getCursor().incrementAndGet();
+            if (value <= block.getEnd()) {
+                return value;
+            }
+            synchronized (block) {
+                // 其他线程已经替换了该分条的块
+                if (localIdBO.getBlocks().get(index) != block) {
+                    continue;
+                }
+                IdBlockBO newBlock = this.leaseBlock(localIdBO);
+                if (newBlock == null) {
+                    return null;
+                }
+                localIdBO.getBlocks().set(index, newBlock);
+            }
+        }
+    }
+
+    /**
+     * 从当前号段中租用一块id，号段剩余的id不够一块时只租用剩余的部分
+     *
+     * @param localIdBO 分条的本地双buffer
+     * @return 租用到的块，数据库不可用导致号段无法加载时返回null
+     */
+    private IdBlockBO leaseBlock(LocalStripedSeqIdBO localIdBO) {
+        int blockSize = localIdBO.getBlockSize();
+        while (true) {
+            localIdBO.getLock().readLock().lock();
+            try {
+                IdSegmentBO segment = localIdBO.getCurrent();
+                long end = segment.getCurrentNum().addAndGet(blockSize);
+                long last = Math.min(end, segment.getNextThreshold());
+                this.refreshLocalId(localIdBO, segment);
+                if (end - blockSize < last) {
+                    return new IdBlockBO(end - blockSize + 1, last);
+                }
+            } finally {
+                localIdBO.getLock().readLock().unlock();
+            }
+            if (!this.switchSegment(localIdBO)) {
+                return null;
+            }
+        }
+    }
 
-        // 从本地不连续序列ID对象的队列中获取一个ID
-        Long returnId = localUnSeqIdBO.getIdQueue().poll();
+    /**
+     * 从本地双buffer中批量分配id
+     * 每个号段内通过一次原子的addAndGet预留整块id，当前号段不够时继续从下一个号段预留剩余的部分
+     *
+     * @param localIdBO 本地id的双buffer
+     * @param isSeq     是否为有序id
+     * @param count     需要的id数量
+     * @return 分配到的id，数据库不可用导致号段无法加载时返回null
+     */
+    private long[] nextIdBatch(AbstractLocalIdBO localIdBO, boolean isSeq, int count) {
+        long[] ids = new long[count];
+        int filled = 0;
+        while (true) {
+            localIdBO.getLock().readLock().lock();
+            try {
+                IdSegmentBO segment = localIdBO.getCurrent();
+                int need = count - filled;
+                long end = segment.getCurrentNum().addAndGet(need);
+                // 本次预留到的值为(end - need, end]，超过号段结束值的部分作废
+                long last = Math.min(end, segment.getNextThreshold());
+                for (long value = end - need + 1; value <= last; value++) {
+                    ids[filled++] = isSeq ? value : segment.toUnSeqId(value);
+                }
+                this.refreshLocalId(localIdBO, segment);
+                if (filled == count) {
+                    return ids;
+                }
+            } finally {
+                localIdBO.getLock().readLock().unlock();
+            }
+            if (!this.switchSegment(localIdBO)) {
+                return null;
+            }
+        }
+    }
 
-        // 检查获取到的ID是否为空，如果为空则记录错误日志并返回null
-        if (returnId == null) {
-            LOGGER.error("[getUnSeqId] returnId is null,id is {}", id);
+    /**
+     * 从雪花算法生成器中获取一个id
+     *
+     * @param localSnowflakeIdBO 雪花算法生成器
+     * @return 生成的id，租约过期或者时钟回拨过大时返回null
+     */
+    private Long nextSnowflakeId(LocalSnowflakeIdBO localSnowflakeIdBO) {
+        long id = localSnowflakeIdBO.nextId();
+        if (id < 0) {
+            this.logSnowflakeError(localSnowflakeIdBO, id);
             return null;
         }
+        return id;
+    }
+
+    /**
+     * 从雪花算法生成器中批量获取id
+     *
+     * @param localSnowflakeIdBO 雪花算法生成器
+     * @param count              需要的id数量
+     * @return 生成的id，租约过期或者时钟回拨过大时返回null
+     */
+    private long[] nextSnowflakeIdBatch(LocalSnowflakeIdBO localSnowflakeIdBO, int count) {
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            long result = localSnowflakeIdBO.nextIds(ids, filled);
+            if (result < 0) {
+                this.logSnowflakeError(localSnowflakeIdBO, result);
+                return null;
+            }
+            filled += (int) result;
+        }
+        return ids;
+    }
+
+    private void logSnowflakeError(LocalSnowflakeIdBO localSnowflakeIdBO, long errorCode) {
+        if (errorCode == LocalSnowflakeIdBO.CLOCK_BACKWARD) {
+            LOGGER.error("[nextSnowflakeId] clock moved backwards,id is {}", localSnowflakeIdBO.getId());
+        } else {
+            LOGGER.error("[nextSnowflakeId] worker lease expired,id is {},workerId is {}",
+                    localSnowflakeIdBO.getId(), localSnowflakeIdBO.getLease().getWorkerId());
+        }
+    }
 
-        // 调用方法刷新本地不连续序列ID对象
-        this.refreshLocalUnSeqId(localUnSeqIdBO);
+    /**
+     * 当前号段用完后切换到备用号段
+     * 先等待正在进行的预加载结束，然后在写锁内切换；备用号段没有加载好时在写锁内同步加载
+     *
+     * @param localIdBO 本地id的双buffer
+     * @return 数据库不可用导致号段无法加载时返回false
+     */
+    private boolean switchSegment(AbstractLocalIdBO localIdBO) {
+        this.waitAndSleep(localIdBO);
+        localIdBO.getLock().writeLock().lock();
+        try {
+            IdSegmentBO segment = localIdBO.getCurrent();
+            // 其他线程可能已经完成了切换
+            if (segment.getIdle() > 0) {
+                return true;
+            }
+            if (localIdBO.isNextReady()) {
+                localIdBO.switchPos();
+                localIdBO.setNextReady(false);
+            } else if (localIdBO.getThreadRunning().compareAndSet(false, true)) {
+                // 备用号段没有加载好，同步加载后再切换
+                try {
+                    this.loadSegment(localIdBO.getId(), localIdBO.getNext());
+                    localIdBO.switchPos();
+                } catch (Exception e) {
+                    LOGGER.error("[switchSegment] sync load segment error,id is {}", localIdBO.getId(), e);
+                    return false;
+                } finally {
+                    localIdBO.getThreadRunning().set(false);
+                }
+            }
+            return true;
+        } finally {
+            localIdBO.getLock().writeLock().unlock();
+        }
+    }
 
-        // 返回获取到的ID
-        return returnId;
+    /**
+     * 等待备用号段的异步加载结束，先自旋一段时间，仍未结束则短暂休眠
+     *
+     * @param localIdBO 本地id的双buffer
+     */
+    private void waitAndSleep(AbstractLocalIdBO localIdBO) {
+        int roll = 0;
+        while (localIdBO.getThreadRunning().get()) {
+            roll += 1;
+            if (roll > 10000) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
     }
 
     /**
      * 在所有属性设置完成后执行此方法
-     * 主要用于服务启动时，初始化一些必要的资源或完成一些必须的设置
+     * 服务启动时在一个事务中批量抢占所有号段模式id类型的第一个号段，数据库交互次数与id类型的数量无关
      *
      * @throws Exception 如果属性设置过程中有异常，将会被抛出
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        // 从数据库中获取所有ID生成记录
-        List<IdGeneratePO> idGeneratePOList = idGenerateMapper.selectAll();
+        List<IdGeneratePO> idGeneratePOList = this.claimAllSegments();
         for (IdGeneratePO idGeneratePO : idGeneratePOList) {
-            // 记录日志，表示服务启动时正在抢占新的ID段
-            LOGGER.info("服务刚启动，抢占新的id段");
-            // 尝试更新MySQL记录，以获取新的ID段
-            tryUpdateMySQLRecord(idGeneratePO);
-            // 在信号量映射中为当前ID生成记录添加一个信号量，初始许可数为1
-            semaphoreMap.put(idGeneratePO.getId(), new Semaphore(1));
+            // 雪花算法模式不需要抢占号段，只需要获得workerId租约
+            if (idGeneratePO.getIdMode() == IdGenerateModeEnum.SNOWFLAKE.getCode()) {
+                localSnowflakeIdBOHandler(idGeneratePO);
+                continue;
+            }
+            localIdBOHandler(idGeneratePO);
         }
     }
 
     /**
-     * 刷新本地序列ID，以保持ID生成的效率和唯一性
-     * 本方法主要目的是为了在本地序列ID使用达到一定阈值时，异步更新本地ID段，减少数据库访问频率
+     * 启动时批量抢占号段
+     * 在同一个事务中通过select for update锁住所有配置，再用一条update语句按照各自的步长推进所有号段模式的记录，
+     * 多个节点同时启动时依靠行锁排队，不需要乐观锁重试
      *
-     * @param localSeqIdBO 包含本地序列ID信息的业务对象，包括当前使用的ID段起始值、下一个阈值、当前已使用的ID数量等
+     * @return 所有的id生成配置，号段模式的记录中currentStart和nextThreshold为本次抢占到的号段
      */
-    private void refreshLocalSeqId(LocalSeqIdBO localSeqIdBO) {
-        // 计算当前ID段的步长，用于判断是否需要更新ID段
-        long step = localSeqIdBO.getNextThreshold() - localSeqIdBO.getCurrentStart();
-        // 当前已使用的ID数量超过当前ID段起始值加上步长乘以更新率时，触发ID段更新
-        if (localSeqIdBO.getCurrentNum().get() - localSeqIdBO.getCurrentStart() > step * UPDATE_RATE) {
-            // 获取对应的信号量，用于控制同时更新的线程数量
-            Semaphore semaphore = semaphoreMap.get(localSeqIdBO.getId());
-            // 如果信号量为null，则记录错误日志并返回
-            if (semaphore == null) {
-                LOGGER.error("semaphore is null,id is {}", localSeqIdBO.getId());
-                return;
+    private List<IdGeneratePO> claimAllSegments() {
+        return transactionTemplate.execute(status -> {
+            List<IdGeneratePO> idGeneratePOList = idGenerateMapper.selectAllForUpdate();
+            Map<Integer, Long> stepMap = new HashMap<>();
+            for (IdGeneratePO idGeneratePO : idGeneratePOList) {
+                if (idGeneratePO.getIdMode() != IdGenerateModeEnum.SNOWFLAKE.getCode()) {
+                    IdStepBO idStepBO = idStepBOMap.computeIfAbsent(idGeneratePO.getId(), key -> initIdStepBO(idGeneratePO));
+                    stepMap.put(idGeneratePO.getId(), idStepBO.getStep());
+                }
             }
-            // 尝试获取信号量，如果成功则开始同步操作
-            boolean acquireStatus = semaphore.tryAcquire();
-            if (acquireStatus) {
-                LOGGER.info("开始尝试进行本地id段的同步操作");
-                // 异步进行同步id段操作
-                threadPoolExecutor.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            // 从数据库中获取ID生成记录
-                            IdGeneratePO idGeneratePO = idGenerateMapper.selectById(localSeqIdBO.getId());
-                            // 尝试更新MySQL记录，以获取新的ID段
-                            tryUpdateMySQLRecord(idGeneratePO);
-                        } catch (Exception e) {
-                            LOGGER.error("[refreshLocalSeqId] error is ", e);
-                        } finally {
-                            // 释放信号量，确保其他等待的线程可以进行同步操作
-                            semaphoreMap.get(localSeqIdBO.getId()).release();
-                            LOGGER.info("本地有序id段同步完成,id is {}", localSeqIdBO.getId());
-                        }
-                    }
-                });
+            if (stepMap.isEmpty()) {
+                return idGeneratePOList;
             }
+            int updateResult = idGenerateMapper.batchUpdateNewIdCountAndVersionByStep(stepMap);
+            if (updateResult != stepMap.size()) {
+                throw new RuntimeException("批量抢占id段失败，期望更新" + stepMap.size() + "条记录，实际更新" + updateResult + "条");
+            }
+            long now = System.currentTimeMillis();
+            for (IdGeneratePO idGeneratePO : idGeneratePOList) {
+                Long step = stepMap.get(idGeneratePO.getId());
+                if (step != null) {
+                    idGeneratePO.setNextThreshold(idGeneratePO.getCurrentStart() + step);
+                    idStepBOMap.get(idGeneratePO.getId()).setUpdateTimestamp(now);
+                }
+            }
+            LOGGER.info("服务刚启动，批量抢占新的id段,count is {}", stepMap.size());
+            return idGeneratePOList;
+        });
+    }
+
+    /**
+     * 预加载备用号段
+     * 当前号段的使用量超过UPDATE_RATE且备用号段还没有准备好时，提交给SegmentRefreshScheduler异步抢占一个新的号段放入备用槽位，
+     * 同一时刻每个id类型最多只有一个加载任务
+     *
+     * @param localIdBO 本地id的双buffer
+     * @param segment   当前正在使用的号段
+     */
+    private void refreshLocalId(AbstractLocalIdBO localIdBO, IdSegmentBO segment) {
+        if (localIdBO.isNextReady() || localIdBO.getRefreshScheduled().get()
+                || segment.getIdle() > segment.getStep() * (1 - UPDATE_RATE)) {
+            return;
         }
+        segmentRefreshScheduler.submit(localIdBO, segmentLoader);
     }
 
     /**
-     * 刷新本地无序ID段
-     * 当剩余可用ID数量低于预设阈值时，尝试获取信号量以更新本地ID段
-     * 此方法确保在多线程环境下高效且安全地更新ID段
+     * 从数据库抢占一个新的号段，并装填到指定的号段槽位中
      *
-     * @param localUnSeqIdBO 包含本地无序ID信息的业务对象
+     * @param id      id生成配置的主键
+     * @param segment 需要装填的号段
      */
-    private void refreshLocalUnSeqId(LocalUnSeqIdBO localUnSeqIdBO) {
-        // 获取当前ID段的起始值和下一个阈值
-        long begin = localUnSeqIdBO.getCurrentStart();
-        long end = localUnSeqIdBO.getNextThreshold();
-        // 计算当前剩余的ID数量
-        long remainSize = localUnSeqIdBO.getIdQueue().size();
-        // 如果使用剩余空间不足25%，则进行刷新
-        if ((end - begin) * 0.25 > remainSize) {
-            // 获取对应的信号量对象
-            Semaphore semaphore = semaphoreMap.get(localUnSeqIdBO.getId());
-            // 如果信号量对象为空，则记录错误并返回
-            if (semaphore == null) {
-                LOGGER.error("semaphore is null,id is {}", localUnSeqIdBO.getId());
-                return;
-            }
-            // 尝试获取信号量
-            boolean acquireStatus = semaphore.tryAcquire();
-            // 如果成功获取信号量，则提交任务到线程池以更新ID段
-            if (acquireStatus) {
-                threadPoolExecutor.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            // 从数据库中获取ID生成信息
-                            IdGeneratePO idGeneratePO = idGenerateMapper.selectById(localUnSeqIdBO.getId());
-                            // 尝试更新MySQL记录
-                            tryUpdateMySQLRecord(idGeneratePO);
-                        } catch (Exception e) {
-                            // 记录异常信息
-                            LOGGER.error("[refreshLocalUnSeqId] error is ", e);
-                        } finally {
-                            // 释放信号量
-                            semaphoreMap.get(localUnSeqIdBO.getId()).release();
-                            // 记录ID段同步完成的信息
-                            LOGGER.info("本地无序id段同步完成，id is {}", localUnSeqIdBO.getId());
-                        }
-                    }
-                });
+    private void loadSegment(int id, IdSegmentBO segment) {
+        IdGeneratePO idGeneratePO = claimSegment(idGenerateMapper.selectById(id));
+        segment.reset(idGeneratePO.getCurrentStart(), idGeneratePO.getNextThreshold());
+    }
+
+    /**
+     * 按照动态步长抢占一个新的号段
+     * 首次抢占使用配置的步长，之后根据上一个号段的使用时长调整：
+     * 使用时长小于segmentDuration时步长翻倍，超过两倍segmentDuration时步长减半，步长始终在[minStep, maxStep]之间
+     *
+     * @param idGeneratePO 数据库中最新的id生成配置
+     * @return 本次抢占到的号段，currentStart和nextThreshold即为号段的范围
+     */
+    private IdGeneratePO claimSegment(IdGeneratePO idGeneratePO) {
+        IdStepBO idStepBO = idStepBOMap.computeIfAbsent(idGeneratePO.getId(), key -> initIdStepBO(idGeneratePO));
+        long now = System.currentTimeMillis();
+        long step = idStepBO.getStep();
+        if (idStepBO.getUpdateTimestamp() > 0) {
+            long lifetime = now - idStepBO.getUpdateTimestamp();
+            long duration = idGenerateProperties.getSegmentDuration().toMillis();
+            if (lifetime < duration) {
+                step = Math.min(step * 2, idGenerateProperties.getMaxStep());
+            } else if (lifetime >= duration * 2) {
+                step = Math.max(step / 2, idStepBO.getMinStep());
             }
+            idStepBO.setLastLifetime(lifetime);
+            Timer.builder("live.id.generate.segment.lifetime")
+                    .tag("id", String.valueOf(idStepBO.getId()))
+                    .register(meterRegistry)
+                    .record(lifetime, TimeUnit.MILLISECONDS);
         }
+        IdGeneratePO claimedPO = tryUpdateMySQLRecord(idGeneratePO, step);
+        idStepBO.setStep(step);
+        idStepBO.setUpdateTimestamp(now);
+        LOGGER.info("抢占新的id段,id is {},step is {},lastLifetime is {}ms", idStepBO.getId(), step, idStepBO.getLastLifetime());
+        return claimedPO;
     }
 
+    /**
+     * 初始化id类型的动态步长，并注册步长的监控指标
+     *
+     * @param idGeneratePO id生成配置
+     * @return 动态步长对象
+     */
+    private IdStepBO initIdStepBO(IdGeneratePO idGeneratePO) {
+        IdStepBO idStepBO = new IdStepBO();
+        idStepBO.setId(idGeneratePO.getId());
+        long minStep = idGenerateProperties.getMinStep() > 0 ? idGenerateProperties.getMinStep() : idGeneratePO.getStep();
+        idStepBO.setMinStep(minStep);
+        idStepBO.setStep(Math.min(Math.max(idGeneratePO.getStep(), minStep), idGenerateProperties.getMaxStep()));
+        Gauge.builder("live.id.generate.segment.step", idStepBO, IdStepBO::getStep)
+                .tag("id", String.valueOf(idStepBO.getId()))
+                .register(meterRegistry);
+        return idStepBO;
+    }
 
     /**
      * 尝试更新MySQL数据库中的记录
-     * 该方法首先尝试更新数据库中的ID计数和版本信息，如果更新成功，则处理本地ID业务逻辑
+     * 该方法首先尝试按照指定步长更新数据库中的ID计数和版本信息，如果更新成功，则返回本次抢占到的号段
      * 如果更新失败，则重试更新操作，重试次数限定为3次
      * 如果多次更新均失败，则抛出运行时异常，表明表ID段占用失败
      *
      * @param idGeneratePO 包含ID和版本信息的实体对象，用于数据库记录的更新
+     * @param step         本次抢占的步长
+     * @return 更新前的记录，其中的currentStart和nextThreshold被修正为本次抢占到的号段
      * @throws RuntimeException 如果多次尝试更新记录失败，抛出此异常
      */
-    private void tryUpdateMySQLRecord(IdGeneratePO idGeneratePO) {
+    private IdGeneratePO tryUpdateMySQLRecord(IdGeneratePO idGeneratePO, long step) {
         // 尝试更新数据库中的ID计数和版本信息
-        int updateResult = idGenerateMapper.updateNewIdCountAndVersion(idGeneratePO.getId(), idGeneratePO.getVersion());
-        // 如果更新成功
-        if (updateResult > 0) {
-            // 处理本地ID业务逻辑
-            localIdBOHandler(idGeneratePO);
-            return;
-        }
+        int updateResult = idGenerateMapper.updateNewIdCountAndVersionByStep(idGeneratePO.getId(), idGeneratePO.getVersion(), step);
         // 重试进行更新
-        for (int i = 0; i < 3; i++) {
+        for (int i = 0; i < 3 && updateResult <= 0; i++) {
             // 重新获取当前ID的最新信息
             idGeneratePO = idGenerateMapper.selectById(idGeneratePO.getId());
             // 再次尝试更新ID计数和版本信息
-            updateResult = idGenerateMapper.updateNewIdCountAndVersion(idGeneratePO.getId(), idGeneratePO.getVersion());
-            // 如果更新成功
-            if (updateResult > 0) {
-                // 处理本地ID业务逻辑
-                localIdBOHandler(idGeneratePO);
-                return;
-            }
+            updateResult = idGenerateMapper.updateNewIdCountAndVersionByStep(idGeneratePO.getId(), idGeneratePO.getVersion(), step);
         }
         // 如果多次更新均失败，抛出异常
-        throw new RuntimeException("表id段占用失败，竞争过于激烈，id is " + idGeneratePO.getId());
+        if (updateResult <= 0) {
+            throw new RuntimeException("表id段占用失败，竞争过于激烈，id is " + idGeneratePO.getId());
+        }
+        idGeneratePO.setNextThreshold(idGeneratePO.getCurrentStart() + step);
+        return idGeneratePO;
     }
 
     /**
      * 处理本地ID生成的业务逻辑
-     * 根据传入的IdGeneratePO对象中的配置，创建相应的本地ID处理对象
-     * 如果是顺序ID，则创建LocalSeqIdBO对象；如果是非顺序ID，则创建LocalUnSeqIdBO对象
+     * 根据传入的IdGeneratePO对象中的配置，创建相应的本地ID双buffer，并把启动时抢占到的号段放入第一个槽位
+     * 如果是顺序ID，则创建LocalSeqIdBO对象（分条号段模式创建LocalStripedSeqIdBO）；如果是非顺序ID，则创建LocalUnSeqIdBO对象
      *
      * @param idGeneratePO 包含ID生成策略和当前ID段信息的PO对象
      */
     private void localIdBOHandler(IdGeneratePO idGeneratePO) {
-        // 获取当前ID段的起始值
-        long currentStart = idGeneratePO.getCurrentStart();
-        // 获取当前ID段的结束阈值
-        long nextThreshold = idGeneratePO.getNextThreshold();
-        // 初始化当前数值为ID段的起始值
-        long currentNum = currentStart;
-
         // 判断是否为顺序ID
         if (idGeneratePO.getIsSeq() == SEQ_ID) {
-            // 创建LocalSeqIdBO对象用于处理顺序ID的逻辑
-            LocalSeqIdBO localSeqIdBO = new LocalSeqIdBO();
-            // 使用AtomicLong来保证并发环境下ID的自增操作是线程安全的
-            AtomicLong atomicLong = new AtomicLong(currentNum);
-            // 设置LocalSeqIdBO对象的属性值
+            LocalSeqIdBO localSeqIdBO = idGeneratePO.getIdMode() == IdGenerateModeEnum.STRIPED_SEGMENT.getCode()
+                    ? this.newStripedSeqIdBO() : new LocalSeqIdBO();
             localSeqIdBO.setId(idGeneratePO.getId());
-            localSeqIdBO.setCurrentNum(atomicLong);
-            localSeqIdBO.setCurrentStart(currentStart);
-            localSeqIdBO.setNextThreshold(nextThreshold);
-            // 将LocalSeqIdBO对象放入map中以便后续使用
+            localSeqIdBO.getCurrent().reset(idGeneratePO.getCurrentStart(), idGeneratePO.getNextThreshold());
             localSeqIdBOMap.put(localSeqIdBO.getId(), localSeqIdBO);
         } else {
-            // 创建LocalUnSeqIdBO对象用于处理非顺序ID的逻辑
             LocalUnSeqIdBO localUnSeqIdBO = new LocalUnSeqIdBO();
-            // 设置LocalUnSeqIdBO对象的属性值
-            localUnSeqIdBO.setCurrentStart(currentStart);
-            localUnSeqIdBO.setNextThreshold(nextThreshold);
             localUnSeqIdBO.setId(idGeneratePO.getId());
-            // 初始化ID列表，用于存储当前ID段的所有ID
-            long begin = localUnSeqIdBO.getCurrentStart();
-            long end = localUnSeqIdBO.getNextThreshold();
-            List<Long> idList = new ArrayList<>();
-            // 将当前ID段的所有ID添加到列表中
-            for (long i = begin; i < end; i++) {
-                idList.add(i);
-            }
-            // 将本地ID段提前打乱，然后放入到队列中
-            Collections.shuffle(idList);
-            ConcurrentLinkedQueue<Long> idQueue = new ConcurrentLinkedQueue<>();
-            idQueue.addAll(idList);
-            // 将打乱后的ID队列设置到LocalUnSeqIdBO对象中
-            localUnSeqIdBO.setIdQueue(idQueue);
-            // 将LocalUnSeqIdBO对象放入map中以便后续使用
+            localUnSeqIdBO.getCurrent().reset(idGeneratePO.getCurrentStart(), idGeneratePO.getNextThreshold());
             localUnSeqIdBOMap.put(localUnSeqIdBO.getId(), localUnSeqIdBO);
         }
     }
 
+    private LocalStripedSeqIdBO newStripedSeqIdBO() {
+        IdGenerateProperties.Striped striped = idGenerateProperties.getStriped();
+        int stripes = striped.getStripes() > 0 ? striped.getStripes() : Runtime.getRuntime().availableProcessors();
+        return new LocalStripedSeqIdBO(stripes, striped.getBlockSize());
+    }
+
+    /**
+     * 为雪花算法模式的id类型创建本地生成器，所有雪花算法模式的id类型共用当前实例的workerId
+     *
+     * @param idGeneratePO id生成配置
+     */
+    private void localSnowflakeIdBOHandler(IdGeneratePO idGeneratePO) {
+        IdGenerateProperties.Snowflake snowflake = idGenerateProperties.getSnowflake();
+        LocalSnowflakeIdBO localSnowflakeIdBO = new LocalSnowflakeIdBO(idGeneratePO.getId(), idWorkerLeaseService.acquire(),
+                snowflake.getEpoch(), snowflake.getMaxClockBackward().toMillis());
+        localSnowflakeIdBOMap.put(localSnowflakeIdBO.getId(), localSnowflakeIdBO);
+    }
+
 }
@@ -0,0 +1,162 @@
+package fun.timu.live.id.generate.provider.service.impl;
+
+import fun.timu.live.id.generate.provider.config.IdGenerateProperties;
+import fun.timu.live.id.generate.provider.dao.mapper.IdWorkerMapper;
+import fun.timu.live.id.generate.provider.dao.po.IdWorkerPO;
+import fun.timu.live.id.generate.provider.service.IdWorkerLeaseService;
+import fun.timu.live.id.generate.provider.service.bo.IdWorkerLeaseBO;
+import fun.timu.live.id.generate.provider.service.bo.LocalSnowflakeIdBO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class IdWorkerLeaseServiceImpl implements IdWorkerLeaseService, DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdWorkerLeaseServiceImpl.class);
+    private static final int MAX_ACQUIRE_TIMES = 5;
+
+    private final IdWorkerMapper idWorkerMapper;
+    private final IdGenerateProperties idGenerateProperties;
+    private final String instance = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    private volatile IdWorkerLeaseBO idWorkerLeaseBO;
+    private ScheduledExecutorService heartbeatExecutor;
+
+    public IdWorkerLeaseServiceImpl(IdWorkerMapper idWorkerMapper, IdGenerateProperties idGenerateProperties) {
+        this.idWorkerMapper = idWorkerMapper;
+        this.idGenerateProperties = idGenerateProperties;
+    }
+
+    @Override
+    public synchronized IdWorkerLeaseBO acquire() {
+        if (idWorkerLeaseBO != null) {
+            return idWorkerLeaseBO;
+        }
+        IdWorkerLeaseBO leaseBO = this.takeWorkerId();
+        this.waitLastTimestamp(leaseBO.getLastTimestamp());
+        long leaseMillis = idGenerateProperties.getSnowflake().getLeaseDuration().toMillis();
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("id-worker-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(() -> this.renew(leaseBO), leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+        LOGGER.info("获得workerId租约,workerId is {},instance is {}", leaseBO.getWorkerId(), instance);
+        idWorkerLeaseBO = leaseBO;
+        return leaseBO;
+    }
+
+    /**
+     * 抢占一个workerId，优先接管租约已经过期的workerId，没有时插入一个新的workerId
+     *
+     * @return 抢占到的租约
+     * @throws RuntimeException workerId已经用完或者竞争过于激烈时抛出
+     */
+    private IdWorkerLeaseBO takeWorkerId() {
+        long leaseMillis = idGenerateProperties.getSnowflake().getLeaseDuration().toMillis();
+        for (int i = 0; i < MAX_ACQUIRE_TIMES; i++) {
+            long now = System.currentTimeMillis();
+            for (IdWorkerPO idWorkerPO : idWorkerMapper.selectExpired(now)) {
+                if (idWorkerMapper.takeOver(idWorkerPO.getWorkerId(), idWorkerPO.getVersion(), instance, now + leaseMillis) > 0) {
+                    return this.buildLeaseBO(idWorkerPO.getWorkerId(), now + leaseMillis, idWorkerPO.getLastTimestamp());
+                }
+            }
+            int workerId = idWorkerMapper.selectNextWorkerId();
+            if (workerId > LocalSnowflakeIdBO.MAX_WORKER_ID) {
+                continue;
+            }
+            IdWorkerPO idWorkerPO = new IdWorkerPO();
+            idWorkerPO.setWorkerId(workerId);
+            idWorkerPO.setInstance(instance);
+            idWorkerPO.setLeaseExpire(now + leaseMillis);
+            try {
+                idWorkerMapper.insert(idWorkerPO);
+                return this.buildLeaseBO(workerId, now + leaseMillis, 0);
+            } catch (DuplicateKeyException e) {
+                LOGGER.warn("[takeWorkerId] workerId {} is taken by other instance", workerId);
+            }
+        }
+        throw new RuntimeException("workerId抢占失败，没有可用的workerId或者竞争过于激烈");
+    }
+
+    /**
+     * 上一个持有者上报的时间戳晚于当前时间时（本机时钟落后），等待本机时钟追上后再开始生成id
+     *
+     * @param lastTimestamp 上一个持有者上报的时间戳
+     */
+    private void waitLastTimestamp(long lastTimestamp) {
+        long behind = lastTimestamp - System.currentTimeMillis();
+        if (behind <= 0) {
+            return;
+        }
+        if (behind > idGenerateProperties.getSnowflake().getLeaseDuration().toMillis()) {
+            throw new RuntimeException("本机时钟落后workerId上次使用的时间" + behind + "ms，拒绝启动雪花算法模式");
+        }
+        LOGGER.warn("本机时钟落后workerId上次使用的时间{}ms，等待时钟追上", behind);
+        try {
+            TimeUnit.MILLISECONDS.sleep(behind);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 心跳续约，同时上报当前实例可能使用到的最大时间戳
+     * 数据库不可用时保留本地的租约过期时间，租约过期前仍然可以继续生成id；租约被其他实例接管时立即停止生成id
+     *
+     * @param leaseBO 当前实例持有的租约
+     */
+    private void renew(IdWorkerLeaseBO leaseBO) {
+        IdGenerateProperties.Snowflake snowflake = idGenerateProperties.getSnowflake();
+        long now = System.currentTimeMillis();
+        long leaseExpire = now + snowflake.getLeaseDuration().toMillis();
+        try {
+            int renewResult = idWorkerMapper.renew(leaseBO.getWorkerId(), instance, leaseExpire, now + snowflake.getMaxClockBackward().toMillis());
+            if (renewResult > 0) {
+                leaseBO.setLeaseExpireAt(leaseExpire);
+            } else {
+                leaseBO.setLeaseExpireAt(0);
+                LOGGER.error("[renew] workerId {} 的租约已经被其他实例接管，停止生成雪花算法id", leaseBO.getWorkerId());
+            }
+        } catch (Exception e) {
+            LOGGER.error("[renew] workerId {} 续约失败,租约将在{}过期", leaseBO.getWorkerId(), leaseBO.getLeaseExpireAt(), e);
+        }
+    }
+
+    private IdWorkerLeaseBO buildLeaseBO(int workerId, long leaseExpireAt, long lastTimestamp) {
+        IdWorkerLeaseBO leaseBO = new IdWorkerLeaseBO();
+        leaseBO.setWorkerId(workerId);
+        leaseBO.setInstance(instance);
+        leaseBO.setLeaseExpireAt(leaseExpireAt);
+        leaseBO.setLastTimestamp(lastTimestamp);
+        return leaseBO;
+    }
+
+    /**
+     * 应用关闭时主动释放租约，其他实例可以立即接管该workerId
+     */
+    @Override
+    public void destroy() {
+        if (heartbeatExecutor == null) {
+            return;
+        }
+        heartbeatExecutor.shutdownNow();
+        IdWorkerLeaseBO leaseBO = idWorkerLeaseBO;
+        leaseBO.setLeaseExpireAt(0);
+        try {
+            long lastTimestamp = System.currentTimeMillis() + idGenerateProperties.getSnowflake().getMaxClockBackward().toMillis();
+            idWorkerMapper.renew(leaseBO.getWorkerId(), instance, 0, lastTimestamp);
+        } catch (Exception e) {
+            LOGGER.error("[destroy] release workerId {} error", leaseBO.getWorkerId(), e);
+        }
+    }
+}
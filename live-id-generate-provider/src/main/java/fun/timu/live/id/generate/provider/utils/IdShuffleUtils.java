@@ -0,0 +1,61 @@
+package fun.timu.live.id.generate.provider.utils;
+
+/**
+ * 基于Feistel网络的无状态双射置换，用来把号段内的顺序下标打乱成无序id
+ * 置换只依赖号段长度和随机密钥，不需要在内存中保存任何id，分配时间和内存占用都是O(1)
+ */
+public class IdShuffleUtils {
+
+    private static final int ROUNDS = 4;
+    private static final long ROUND_CONSTANT = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 计算覆盖号段长度所需的半块位数，置换在2^(2*halfBits)的定义域上进行
+     *
+     * @param size 号段长度
+     * @return 半块位数
+     */
+    public static int halfBits(long size) {
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(size - 1, 1));
+        return (bits + 1) / 2;
+    }
+
+    /**
+     * 将[0, size)内的下标映射为[0, size)内的另一个下标，不同的下标一定映射到不同的结果
+     * 定义域大于号段长度时采用cycle walking，重复加密直到结果落回号段内，期望迭代次数不超过4次
+     *
+     * @param index    顺序下标
+     * @param size     号段长度
+     * @param halfBits 半块位数，由{@link #halfBits(long)}计算
+     * @param key      号段的随机密钥
+     * @return 打乱后的下标
+     */
+    public static long shuffle(long index, long size, int halfBits, long key) {
+        long value = index;
+        do {
+            value = encrypt(value, halfBits, key);
+        } while (value >= size);
+        return value;
+    }
+
+    private static long encrypt(long value, int halfBits, long key) {
+        long mask = (1L << halfBits) - 1;
+        long left = value >>> halfBits;
+        long right = value & mask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (mix(right ^ key ^ (round * ROUND_CONSTANT)) & mask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * splitmix64的混淆函数，作为Feistel网络的轮函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,241 @@
+package fun.timu.live.id.generate.provider.service.impl;
+
+import fun.timu.live.id.generate.provider.config.IdGenerateProperties;
+import fun.timu.live.id.generate.provider.dao.mapper.IdGenerateMapper;
+import fun.timu.live.id.generate.provider.dao.po.IdGeneratePO;
+import fun.timu.live.id.generate.provider.enums.IdGenerateModeEnum;
+import fun.timu.live.id.generate.provider.refresh.SegmentRefreshScheduler;
+import fun.timu.live.id.generate.provider.service.IdWorkerLeaseService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 多线程并发获取id的压力测试
+ * <p>
+ * 数据库由内存中的记录模拟，步长很小，保证测试期间会发生大量的号段预加载和切换
+ */
+class IdGenerateServiceImplTest {
+
+    private static final int SEQ_ID = 9001;
+    private static final int UN_SEQ_ID = 9002;
+    private static final int STRIPED_SEQ_ID = 9003;
+    private static final int STEP = 100;
+    private static final int THREADS = 32;
+    private static final int IDS_PER_THREAD = 5000;
+    private static final int BATCH_SIZE = 37;
+
+    private static final Map<Integer, IdGeneratePO> ROWS = new ConcurrentHashMap<>();
+    private static SegmentRefreshScheduler segmentRefreshScheduler;
+    private static IdGenerateServiceImpl idGenerateService;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        ROWS.put(SEQ_ID, newRow(SEQ_ID, 1, IdGenerateModeEnum.SEGMENT));
+        ROWS.put(UN_SEQ_ID, newRow(UN_SEQ_ID, 0, IdGenerateModeEnum.SEGMENT));
+        ROWS.put(STRIPED_SEQ_ID, newRow(STRIPED_SEQ_ID, 1, IdGenerateModeEnum.STRIPED_SEGMENT));
+
+        IdGenerateMapper idGenerateMapper = mock(IdGenerateMapper.class);
+        when(idGenerateMapper.selectAllForUpdate()).thenAnswer(invocation -> {
+            List<IdGeneratePO> idGeneratePOList = new ArrayList<>();
+            for (Integer id : ROWS.keySet()) {
+                idGeneratePOList.add(selectRow(id));
+            }
+            return idGeneratePOList;
+        });
+        when(idGenerateMapper.selectById(any())).thenAnswer(invocation -> selectRow(invocation.getArgument(0)));
+        when(idGenerateMapper.batchUpdateNewIdCountAndVersionByStep(any())).thenAnswer(invocation -> {
+            Map<Integer, Long> steps = invocation.getArgument(0);
+            steps.forEach((id, step) -> updateRow(id, ROWS.get(id).getVersion(), step));
+            return steps.size();
+        });
+        when(idGenerateMapper.updateNewIdCountAndVersionByStep(anyInt(), anyInt(), anyLong()))
+                .thenAnswer(invocation -> updateRow(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        IdGenerateProperties idGenerateProperties = new IdGenerateProperties();
+        idGenerateProperties.setMinStep(STEP);
+        idGenerateProperties.setMaxStep(STEP * 4);
+        idGenerateProperties.getStriped().setStripes(8);
+        idGenerateProperties.getStriped().setBlockSize(16);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        segmentRefreshScheduler = new SegmentRefreshScheduler(idGenerateProperties, meterRegistry);
+        idGenerateService = new IdGenerateServiceImpl(idGenerateMapper, idGenerateProperties, meterRegistry,
+                mock(IdWorkerLeaseService.class), segmentRefreshScheduler, transactionTemplate);
+        idGenerateService.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        segmentRefreshScheduler.destroy();
+    }
+
+    @Test
+    void concurrentSeqIdsAreUniqueAndNotNull() throws Exception {
+        Set<Long> ids = concurrentGet(() -> idGenerateService.getSeqId(SEQ_ID));
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    void concurrentUnSeqIdsAreUniqueAndNotNull() throws Exception {
+        Set<Long> ids = concurrentGet(() -> idGenerateService.getUnSeqId(UN_SEQ_ID));
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    void concurrentStripedSeqIdsAreUniqueAndNotNull() throws Exception {
+        Set<Long> ids = concurrentGet(() -> idGenerateService.getSeqId(STRIPED_SEQ_ID));
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    void concurrentMixedSingleAndBatchIdsAreUnique() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean batch = i % 2 == 0;
+            tasks.add(() -> {
+                int count = 0;
+                for (int j = 0; j < IDS_PER_THREAD / BATCH_SIZE; j++) {
+                    if (batch) {
+                        long[] batchIds = idGenerateService.getUnSeqIdBatch(UN_SEQ_ID, BATCH_SIZE);
+                        assertNotNull(batchIds);
+                        for (long id : batchIds) {
+                            assertTrue(ids.add(id), "duplicate id " + id);
+                        }
+                        count += batchIds.length;
+                    } else {
+                        for (int k = 0; k < BATCH_SIZE; k++) {
+                            Long id = idGenerateService.getUnSeqId(UN_SEQ_ID);
+                            assertNotNull(id);
+                            assertTrue(ids.add(id), "duplicate id " + id);
+                        }
+                        count += BATCH_SIZE;
+                    }
+                }
+                return count;
+            });
+        }
+        int total = 0;
+        for (Future<Integer> future : runConcurrently(tasks)) {
+            total += future.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(total, ids.size());
+    }
+
+    /**
+     * 所有线程同时开始，每个线程获取IDS_PER_THREAD个id
+     */
+    private static Set<Long> concurrentGet(Supplier<Long> idSupplier) throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < IDS_PER_THREAD; j++) {
+                    Long id = idSupplier.get();
+                    assertNotNull(id);
+                    assertTrue(ids.add(id), "duplicate id " + id);
+                }
+                return IDS_PER_THREAD;
+            });
+        }
+        for (Future<Integer> future : runConcurrently(tasks)) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        return ids;
+    }
+
+    private static List<Future<Integer>> runConcurrently(List<Callable<Integer>> tasks) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (Callable<Integer> task : tasks) {
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return task.call();
+                }));
+            }
+            startLatch.countDown();
+        } finally {
+            executorService.shutdown();
+        }
+        assertTrue(executorService.awaitTermination(60, TimeUnit.SECONDS));
+        return futures;
+    }
+
+    private static IdGeneratePO newRow(int id, int isSeq, IdGenerateModeEnum idMode) {
+        IdGeneratePO idGeneratePO = new IdGeneratePO();
+        idGeneratePO.setId(id);
+        idGeneratePO.setInitNum(10000);
+        idGeneratePO.setStep(STEP);
+        idGeneratePO.setIsSeq(isSeq);
+        idGeneratePO.setIdMode(idMode.getCode());
+        idGeneratePO.setCurrentStart(10000);
+        idGeneratePO.setNextThreshold(10000 + STEP);
+        return idGeneratePO;
+    }
+
+    /**
+     * 模拟select，返回记录的副本
+     */
+    private static IdGeneratePO selectRow(Integer id) {
+        IdGeneratePO row = ROWS.get(id);
+        synchronized (row) {
+            IdGeneratePO idGeneratePO = new IdGeneratePO();
+            idGeneratePO.setId(row.getId());
+            idGeneratePO.setInitNum(row.getInitNum());
+            idGeneratePO.setStep(row.getStep());
+            idGeneratePO.setIsSeq(row.getIsSeq());
+            idGeneratePO.setIdMode(row.getIdMode());
+            idGeneratePO.setCurrentStart(row.getCurrentStart());
+            idGeneratePO.setNextThreshold(row.getNextThreshold());
+            idGeneratePO.setVersion(row.getVersion());
+            return idGeneratePO;
+        }
+    }
+
+    /**
+     * 模拟带乐观锁的号段推进
+     */
+    private static int updateRow(int id, int version, long step) {
+        IdGeneratePO row = ROWS.get(id);
+        synchronized (row) {
+            if (row.getVersion() != version) {
+                return 0;
+            }
+            row.setCurrentStart(row.getCurrentStart() + step);
+            row.setNextThreshold(row.getNextThreshold() + step);
+            row.setVersion(version + 1);
+            return 1;
+        }
+    }
+}
@@ -25,7 +25,7 @@ public class SmsServiceImpl implements ISmsService {
     private static Logger logger = LoggerFactory.getLogger(SmsServiceImpl.class);
 
     private final SmsMapper smsMapper;
-    @Resource
+    @Resource(name = "integerRedisTemplate")
     private RedisTemplate<String, Integer> redisTemplate;
 
     private final MsgProviderCacheKeyBuilder msgProviderCacheKeyBuilder;
@@ -85,7 +85,7 @@ public class SmsServiceImpl implements ISmsService {
 
         //redis校验验证码
         String codeCacheKey = msgProviderCacheKeyBuilder.buildSmsLoginCodeKey(phone);
-        Integer cacheCode = (Integer) redisTemplate.opsForValue().get(codeCacheKey);
+        Integer cacheCode = redisTemplate.opsForValue().get(codeCacheKey);
         if (cacheCode == null || cacheCode < 1000) {
             return new MsgCheckDTO(false, "验证码已过期");
         }
@@ -1,7 +1,13 @@
 package fun.timu.live.user.constants;
 
+import java.util.List;
+
 public class UserTagFieldNameConstants {
     public static final String TAG_INFO_01 = "tag_info_01";
     public static final String TAG_INFO_02 = "tag_info_02";
     public static final String TAG_INFO_03 = "tag_info_03";
+    /**
+     * 按照字段下标排列的标签字段，动态注册的标签按照下标分配在这些字段上
+     */
+    public static final List<String> FIELD_NAMES = List.of(TAG_INFO_01, TAG_INFO_02, TAG_INFO_03);
 }
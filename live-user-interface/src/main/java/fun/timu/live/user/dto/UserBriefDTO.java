@@ -0,0 +1,20 @@
+package fun.timu.live.user.dto;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 用户的简要信息，只包含直播间聊天、榜单等高频展示场景需要的字段
+ */
+@Data
+public class UserBriefDTO implements Serializable {
+
+    private Long userId;
+    private String nickName;
+    private String avatar;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,32 @@
+package fun.timu.live.user.dto;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 标签定义，记录标签保存在哪个标签字段的哪一位
+ * <p>
+ * UserTagsEnum中的标签是内置定义，tagCode为枚举名；运行时注册的标签保存在t_user_tag_define中
+ */
+@Data
+public class UserTagDefineDTO implements Serializable {
+
+    /**
+     * 标签编码，全局唯一
+     */
+    private String tagCode;
+    private String desc;
+    /**
+     * 标签字段的下标，0对应tag_info_01，以此类推
+     */
+    private int fieldIndex;
+    /**
+     * 标签在字段中的位，标签值为 1L << bitIndex
+     */
+    private int bitIndex;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
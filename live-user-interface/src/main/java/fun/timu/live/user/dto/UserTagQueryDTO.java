@@ -0,0 +1,41 @@
+package fun.timu.live.user.dto;
+
+import fun.timu.live.user.constants.UserTagsEnum;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 按照标签圈选用户的查询条件，结果为 (allTags的交集) ∩ (anyTags的并集) - (excludeTags的并集)
+ * <p>
+ * allTags和anyTags至少要有一个不为空，为空的条件不参与计算
+ */
+@Data
+public class UserTagQueryDTO implements Serializable {
+
+    /**
+     * 必须同时拥有的标签（AND）
+     */
+    private List<UserTagsEnum> allTags;
+    /**
+     * 至少拥有其中一个的标签（OR）
+     */
+    private List<UserTagsEnum> anyTags;
+    /**
+     * 不能拥有的标签（NOT）
+     */
+    private List<UserTagsEnum> excludeTags;
+    /**
+     * 上一页最后一个userId，第一页传null
+     */
+    private Long cursor;
+    /**
+     * 每页返回的userId数量，为0时只返回总数
+     */
+    private int pageSize;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,34 @@
+package fun.timu.live.user.dto;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 按照标签圈选用户的结果
+ */
+@Data
+public class UserTagQueryResultDTO implements Serializable {
+
+    /**
+     * 标签索引是否已经构建完成，没有构建完成时结果为空
+     */
+    private boolean ready;
+    /**
+     * 满足条件的用户总数
+     */
+    private long total;
+    /**
+     * 当前页的userId，按照从小到大排列
+     */
+    private List<Long> userIdList;
+    /**
+     * 下一页的游标，为null时表示没有更多数据
+     */
+    private Long nextCursor;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
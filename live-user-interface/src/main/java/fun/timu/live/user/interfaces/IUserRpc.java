@@ -1,5 +1,6 @@
 package fun.timu.live.user.interfaces;
 
+import fun.timu.live.user.dto.UserBriefDTO;
 import fun.timu.live.user.dto.UserDTO;
 
 import java.util.List;
@@ -41,4 +42,12 @@ public interface IUserRpc {
      * @return
      */
     Map<Long, UserDTO> batchQueryUserInfo(List<Long> userIdList);
+
+    /**
+     * 批量查询用户的简要信息（昵称和头像）
+     *
+     * @param userIdList
+     * @return
+     */
+    Map<Long, UserBriefDTO> batchQueryUserBrief(List<Long> userIdList);
 }
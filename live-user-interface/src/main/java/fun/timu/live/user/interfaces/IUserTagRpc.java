@@ -1,6 +1,11 @@
 package fun.timu.live.user.interfaces;
 
 import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserTagDefineDTO;
+import fun.timu.live.user.dto.UserTagQueryDTO;
+import fun.timu.live.user.dto.UserTagQueryResultDTO;
+
+import java.util.List;
 
 public interface IUserTagRpc {
     /**
@@ -29,4 +34,73 @@ public interface IUserTagRpc {
      * @return
      */
     boolean containTag(Long userId, UserTagsEnum userTagsEnum);
+
+    /**
+     * 按照标签的交集、并集和差集圈选用户，分页返回userId
+     *
+     * @param userTagQueryDTO
+     * @return
+     */
+    UserTagQueryResultDTO queryUserIdsByTags(UserTagQueryDTO userTagQueryDTO);
+
+    /**
+     * 批量判断多个用户是否拥有多个标签
+     *
+     * @param userIdList       用户ID列表
+     * @param userTagsEnumList 需要判断的标签，最多64个
+     * @return 与userIdList一一对应，第j位为1表示该用户拥有userTagsEnumList中的第j个标签
+     */
+    long[] batchContainTags(List<Long> userIdList, List<UserTagsEnum> userTagsEnumList);
+
+    /**
+     * 注册动态标签，在标签字段中分配一个空闲的位，标签编码已经存在时返回已有的定义
+     *
+     * @param tagCode 标签编码
+     * @param desc    标签描述
+     * @return 标签定义，没有空闲的位时返回null
+     */
+    UserTagDefineDTO registerTag(String tagCode, String desc);
+
+    /**
+     * 查询所有的标签定义，包括内置标签和动态标签
+     *
+     * @return
+     */
+    List<UserTagDefineDTO> listTagDefines();
+
+    /**
+     * 按照标签编码设置标签，未注册的标签返回false
+     *
+     * @param userId
+     * @param tagCode
+     * @return
+     */
+    boolean setTagByCode(Long userId, String tagCode);
+
+    /**
+     * 按照标签编码取消标签，未注册的标签返回false
+     *
+     * @param userId
+     * @param tagCode
+     * @return
+     */
+    boolean cancelTagByCode(Long userId, String tagCode);
+
+    /**
+     * 按照标签编码判断是否包含某个标签，未注册的标签返回false
+     *
+     * @param userId
+     * @param tagCode
+     * @return
+     */
+    boolean containTagByCode(Long userId, String tagCode);
+
+    /**
+     * 按照标签编码批量判断多个用户是否拥有多个标签
+     *
+     * @param userIdList  用户ID列表
+     * @param tagCodeList 需要判断的标签编码，最多64个，未注册的标签不会匹配任何用户
+     * @return 与userIdList一一对应，第j位为1表示该用户拥有tagCodeList中的第j个标签
+     */
+    long[] batchContainTagsByCode(List<Long> userIdList, List<String> tagCodeList);
 }
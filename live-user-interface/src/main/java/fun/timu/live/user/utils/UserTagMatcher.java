@@ -0,0 +1,146 @@
+package fun.timu.live.user.utils;
+
+import fun.timu.live.user.constants.UserTagFieldNameConstants;
+import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserTagDTO;
+import fun.timu.live.user.dto.UserTagDefineDTO;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预先计算好的标签匹配器
+ * <p>
+ * 创建时把每个标签换算成标签字段的下标和对应的位，匹配时只需要位运算，不再按照字段名比较字符串；
+ * 匹配结果的第i位表示是否拥有创建时传入的第i个标签。内置的枚举标签和运行时注册的标签使用同样的匹配方式
+ */
+public class UserTagMatcher {
+
+    /**
+     * 单次匹配最多支持的标签数量
+     */
+    public static final int MAX_TAGS = Long.SIZE;
+    private static final Map<UserTagsEnum, Integer> FIELD_INDEX = new EnumMap<>(UserTagsEnum.class);
+
+    static {
+        for (UserTagsEnum userTagsEnum : UserTagsEnum.values()) {
+            FIELD_INDEX.put(userTagsEnum, fieldIndexOf(userTagsEnum.getFieldName()));
+        }
+    }
+
+    private final int[] fieldIndexes;
+    private final long[] tags;
+
+    private UserTagMatcher(int[] fieldIndexes, long[] tags) {
+        this.fieldIndexes = fieldIndexes;
+        this.tags = tags;
+    }
+
+    public static UserTagMatcher of(List<UserTagsEnum> userTagsEnumList) {
+        checkSize(userTagsEnumList.size());
+        int[] fieldIndexes = new int[userTagsEnumList.size()];
+        long[] tags = new long[userTagsEnumList.size()];
+        for (int i = 0; i < userTagsEnumList.size(); i++) {
+            fieldIndexes[i] = FIELD_INDEX.get(userTagsEnumList.get(i));
+            tags[i] = userTagsEnumList.get(i).getTag();
+        }
+        return new UserTagMatcher(fieldIndexes, tags);
+    }
+
+    /**
+     * 根据标签定义创建匹配器，为null的定义（未注册的标签）不会匹配任何用户
+     */
+    public static UserTagMatcher ofDefines(List<UserTagDefineDTO> userTagDefineDTOList) {
+        checkSize(userTagDefineDTOList.size());
+        int[] fieldIndexes = new int[userTagDefineDTOList.size()];
+        long[] tags = new long[userTagDefineDTOList.size()];
+        for (int i = 0; i < userTagDefineDTOList.size(); i++) {
+            UserTagDefineDTO userTagDefineDTO = userTagDefineDTOList.get(i);
+            fieldIndexes[i] = userTagDefineDTO == null ? -1 : userTagDefineDTO.getFieldIndex();
+            tags[i] = userTagDefineDTO == null ? 0 : tagOf(userTagDefineDTO);
+        }
+        return new UserTagMatcher(fieldIndexes, tags);
+    }
+
+    /**
+     * 匹配用户的标签
+     *
+     * @return 第i位为1表示拥有第i个标签，userTagDTO为null时返回0
+     */
+    public long match(UserTagDTO userTagDTO) {
+        if (userTagDTO == null) {
+            return 0;
+        }
+        long tagInfo01 = valueOf(userTagDTO.getTagInfo01());
+        long tagInfo02 = valueOf(userTagDTO.getTagInfo02());
+        long tagInfo03 = valueOf(userTagDTO.getTagInfo03());
+        long result = 0;
+        for (int i = 0; i < tags.length; i++) {
+            long tagInfo = switch (fieldIndexes[i]) {
+                case 0 -> tagInfo01;
+                case 1 -> tagInfo02;
+                case 2 -> tagInfo03;
+                default -> 0;
+            };
+            if (tags[i] > 0 && (tagInfo & tags[i]) == tags[i]) {
+                result |= 1L << i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 判断用户是否拥有某个标签
+     */
+    public static boolean contains(UserTagDTO userTagDTO, UserTagsEnum userTagsEnum) {
+        return contains(userTagDTO, FIELD_INDEX.get(userTagsEnum), userTagsEnum.getTag());
+    }
+
+    /**
+     * 判断用户是否拥有某个标签
+     *
+     * @param fieldIndex 标签字段的下标
+     * @param tag        标签值
+     */
+    public static boolean contains(UserTagDTO userTagDTO, int fieldIndex, long tag) {
+        if (userTagDTO == null) {
+            return false;
+        }
+        Long tagInfo = switch (fieldIndex) {
+            case 0 -> userTagDTO.getTagInfo01();
+            case 1 -> userTagDTO.getTagInfo02();
+            case 2 -> userTagDTO.getTagInfo03();
+            default -> null;
+        };
+        return TagInfoUtils.isContain(tagInfo, tag);
+    }
+
+    /**
+     * 标签定义对应的标签值
+     */
+    public static long tagOf(UserTagDefineDTO userTagDefineDTO) {
+        return 1L << userTagDefineDTO.getBitIndex();
+    }
+
+    /**
+     * 标签所在字段的下标，tag_info_01对应0，以此类推，未知字段返回-1
+     */
+    public static int fieldIndex(UserTagsEnum userTagsEnum) {
+        return FIELD_INDEX.get(userTagsEnum);
+    }
+
+    private static void checkSize(int size) {
+        if (size > MAX_TAGS) {
+            throw new IllegalArgumentException("too many tags,size is " + size);
+        }
+    }
+
+    private static int fieldIndexOf(String fieldName) {
+        return UserTagFieldNameConstants.FIELD_NAMES.indexOf(fieldName);
+    }
+
+    private static long valueOf(Long tagInfo) {
+        return tagInfo == null ? 0 : tagInfo;
+    }
+}
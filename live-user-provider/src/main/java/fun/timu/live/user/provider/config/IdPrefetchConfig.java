@@ -0,0 +1,42 @@
+package fun.timu.live.user.provider.config;
+
+import fun.timu.live.id.generate.client.IdPrefetchCache;
+import fun.timu.live.id.generate.enums.IdTypeEnum;
+import fun.timu.live.id.generate.interfaces.IdGenerateRpc;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdPrefetchConfig {
+    @DubboReference
+    private IdGenerateRpc idGenerateRpc;
+    @Resource
+    private IdPrefetchProperties idPrefetchProperties;
+
+    /**
+     * 创建id预取缓存，注册流程直接从本地缓存中获取用户id，避免每次注册都同步调用id生成服务
+     * 每种id类型的命中率和同步调用次数注册为监控指标，用于判断容量和水位线是否合适
+     *
+     * @return 预热过用户id的预取缓存
+     */
+    @Bean(destroyMethod = "shutdown")
+    public IdPrefetchCache idPrefetchCache(MeterRegistry meterRegistry) {
+        IdPrefetchCache idPrefetchCache = new IdPrefetchCache(idGenerateRpc, idPrefetchProperties.getCapacity(),
+                idPrefetchProperties.getLowWaterMark(), idPrefetchProperties.getRefillParallelism());
+        for (IdTypeEnum idTypeEnum : IdTypeEnum.values()) {
+            Gauge.builder("live.id.prefetch.hit.ratio", idPrefetchCache, cache -> cache.getHitRatio(idTypeEnum))
+                    .tag("idType", idTypeEnum.name())
+                    .register(meterRegistry);
+            FunctionCounter.builder("live.id.prefetch.stall.count", idPrefetchCache, cache -> cache.getStallCount(idTypeEnum))
+                    .tag("idType", idTypeEnum.name())
+                    .register(meterRegistry);
+        }
+        idPrefetchCache.warmUp(IdTypeEnum.USER_ID, false);
+        return idPrefetchCache;
+    }
+}
@@ -0,0 +1,17 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@ConfigurationProperties(prefix = "live.id-prefetch")
+@Configuration
+public class IdPrefetchProperties {
+    //每种id类型在本地缓存的id数量
+    private int capacity = 2000;
+    //剩余数量低于该值时异步补充
+    private int lowWaterMark = 500;
+    //同时进行的补充请求数量
+    private int refillParallelism = 1;
+}
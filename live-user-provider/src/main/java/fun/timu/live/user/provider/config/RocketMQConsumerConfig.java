@@ -1,8 +1,22 @@
 package fun.timu.live.user.provider.config;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import fun.timu.live.common.interfaces.topic.UserProviderTopicNames;
+import fun.timu.live.framework.redis.starter.hotkey.HotKeyLocalCache;
 import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.constants.CacheAsyncDeleteCode;
+import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserCacheAsyncDeleteDTO;
 import fun.timu.live.user.dto.UserDTO;
+import fun.timu.live.user.provider.service.cache.UserIdBloomFilter;
+import fun.timu.live.user.provider.service.cache.UserInfoHashCache;
+import fun.timu.live.user.provider.service.cache.UserInfoLocalCache;
+import fun.timu.live.user.provider.service.cache.UserTagBitCache;
+import fun.timu.live.user.provider.service.cache.UserTagCache;
+import fun.timu.live.user.provider.service.index.UserTagBitmapIndex;
+import fun.timu.live.user.provider.service.registry.UserTagRegistry;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
@@ -11,6 +25,7 @@ import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -28,10 +43,27 @@ public class RocketMQConsumerConfig implements InitializingBean {
     private RedisTemplate<String, Object> redisTemplate;
     @Resource
     private UserProviderCacheKeyBuilder userProviderCacheKeyBuilder;
+    @Resource
+    private UserInfoLocalCache userInfoLocalCache;
+    @Resource
+    private UserInfoHashCache userInfoHashCache;
+    @Resource
+    private UserIdBloomFilter userIdBloomFilter;
+    @Resource
+    private UserTagBitmapIndex userTagBitmapIndex;
+    @Resource
+    private UserTagCache userTagHashCache;
+    @Resource
+    private UserTagBitCache userTagBitCache;
+    @Resource
+    private HotKeyLocalCache hotKeyLocalCache;
 
     @Override
     public void afterPropertiesSet() throws Exception {
         initConsumer();
+        initLocalCacheEvictConsumer();
+        initUserRegisterConsumer();
+        initUserTagChangeConsumer();
     }
 
     /**
@@ -75,6 +107,7 @@ public class RocketMQConsumerConfig implements InitializingBean {
 
                     //延迟消息的回调，处理相关的缓存二次删除
                     redisTemplate.delete(userProviderCacheKeyBuilder.buildUserInfoKey(userDTO.getUserId()));
+                    userInfoHashCache.delete(userDTO.getUserId());
                     LOGGER.error("延迟删除处理，userDTO is {}", userDTO);
 
                     //确认消息消费成功
@@ -92,4 +125,129 @@ public class RocketMQConsumerConfig implements InitializingBean {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 初始化本地缓存淘汰的消费者
+     * 以广播模式消费用户缓存延迟删除的消息，每个节点都会收到消息并淘汰自己的本地缓存
+     */
+    public void initLocalCacheEvictConsumer() {
+        try {
+            DefaultMQPushConsumer defaultMQPushConsumer = new DefaultMQPushConsumer();
+            defaultMQPushConsumer.setNamesrvAddr(consumerProperties.getNameSrv());
+            //广播模式下每个节点都要消费，使用单独的消费者组
+            defaultMQPushConsumer.setConsumerGroup(consumerProperties.getGroupName() + "-local-cache");
+            defaultMQPushConsumer.setMessageModel(MessageModel.BROADCASTING);
+            defaultMQPushConsumer.setConsumeMessageBatchMaxSize(1);
+            //本地缓存只需要处理启动之后的消息
+            defaultMQPushConsumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+            defaultMQPushConsumer.subscribe(UserProviderTopicNames.CACHE_ASYNC_DELETE_TOPIC, "*");
+            defaultMQPushConsumer.setMessageListener(new MessageListenerConcurrently() {
+                @Override
+                public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                    String msgStr = new String(msgs.get(0).getBody());
+                    UserCacheAsyncDeleteDTO userCacheAsyncDeleteDTO = JSON.parseObject(msgStr, UserCacheAsyncDeleteDTO.class);
+                    if (userCacheAsyncDeleteDTO == null || userCacheAsyncDeleteDTO.getCode() != CacheAsyncDeleteCode.USER_INFO_DELETE.getCode()) {
+                        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                    }
+                    JSONObject jsonParam = JSON.parseObject(userCacheAsyncDeleteDTO.getJson());
+                    //写缓冲刷盘后一次通知多个用户
+                    JSONArray userIdArray = jsonParam.getJSONArray("userIdList");
+                    if (userIdArray != null) {
+                        userIdArray.toJavaList(Long.class).forEach(userInfoLocalCache::invalidate);
+                        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                    }
+                    Long userId = jsonParam.getLong("userId");
+                    if (userId == null) {
+                        LOGGER.error("用户 id 为空，参数异常，内容: {} ", msgStr);
+                        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                    }
+                    userInfoLocalCache.invalidate(userId);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            });
+            defaultMQPushConsumer.start();
+            LOGGER.info("本地缓存淘汰的 MQ 消费者启动成功,nameSrv is {}", consumerProperties.getNameSrv());
+        } catch (MQClientException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 初始化新用户注册的消费者
+     * 以广播模式消费新用户注册的消息，每个节点都把新用户加入自己的userId布隆过滤器
+     */
+    public void initUserRegisterConsumer() {
+        try {
+            DefaultMQPushConsumer defaultMQPushConsumer = new DefaultMQPushConsumer();
+            defaultMQPushConsumer.setNamesrvAddr(consumerProperties.getNameSrv());
+            //广播模式下每个节点都要消费，使用单独的消费者组
+            defaultMQPushConsumer.setConsumerGroup(consumerProperties.getGroupName() + "-bloom-filter");
+            defaultMQPushConsumer.setMessageModel(MessageModel.BROADCASTING);
+            defaultMQPushConsumer.setConsumeMessageBatchMaxSize(1);
+            //启动之前注册的用户由布隆过滤器的全量构建覆盖
+            defaultMQPushConsumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+            defaultMQPushConsumer.subscribe(UserProviderTopicNames.USER_REGISTER_TOPIC, "*");
+            defaultMQPushConsumer.setMessageListener(new MessageListenerConcurrently() {
+                @Override
+                public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                    String msgStr = new String(msgs.get(0).getBody());
+                    Long userId = JSON.parseObject(msgStr).getLong("userId");
+                    if (userId == null) {
+                        LOGGER.error("用户 id 为空，参数异常，内容: {} ", msgStr);
+                        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                    }
+                    userIdBloomFilter.add(userId);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            });
+            defaultMQPushConsumer.start();
+            LOGGER.info("新用户注册的 MQ 消费者启动成功,nameSrv is {}", consumerProperties.getNameSrv());
+        } catch (MQClientException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 初始化用户标签变更的消费者
+     * 以广播模式消费标签变更的消息，每个节点都淘汰自己的热点标签本地缓存并更新标签位图索引，发送消息的节点重复更新不影响结果
+     */
+    public void initUserTagChangeConsumer() {
+        try {
+            DefaultMQPushConsumer defaultMQPushConsumer = new DefaultMQPushConsumer();
+            defaultMQPushConsumer.setNamesrvAddr(consumerProperties.getNameSrv());
+            //广播模式下每个节点都要消费，使用单独的消费者组
+            defaultMQPushConsumer.setConsumerGroup(consumerProperties.getGroupName() + "-tag-index");
+            defaultMQPushConsumer.setMessageModel(MessageModel.BROADCASTING);
+            defaultMQPushConsumer.setConsumeMessageBatchMaxSize(1);
+            //启动之前的变更由标签位图索引的全量构建覆盖
+            defaultMQPushConsumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+            defaultMQPushConsumer.subscribe(UserProviderTopicNames.USER_TAG_CHANGE_TOPIC, "*");
+            defaultMQPushConsumer.setMessageListener(new MessageListenerConcurrently() {
+                @Override
+                public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                    String msgStr = new String(msgs.get(0).getBody());
+                    JSONObject jsonParam = JSON.parseObject(msgStr);
+                    Long userId = jsonParam.getLong("userId");
+                    String tag = jsonParam.getString("tag");
+                    if (userId == null || tag == null) {
+                        LOGGER.error("用户标签变更参数异常，内容: {} ", msgStr);
+                        return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                    }
+                    //两种存储结构的key都淘汰，不需要关心当前使用的是哪一种
+                    hotKeyLocalCache.invalidate(userTagHashCache.buildKey(userId));
+                    hotKeyLocalCache.invalidate(userTagBitCache.buildKey(userId));
+                    //位图索引只包含内置标签，动态注册的标签不需要更新索引
+                    UserTagsEnum userTagsEnum = UserTagRegistry.builtInOf(tag);
+                    if (userTagsEnum != null) {
+                        userTagBitmapIndex.update(userId, userTagsEnum, jsonParam.getBooleanValue("set"));
+                    }
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            });
+            defaultMQPushConsumer.start();
+            LOGGER.info("用户标签变更的 MQ 消费者启动成功,nameSrv is {}", consumerProperties.getNameSrv());
+        } catch (MQClientException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.batch-load")
+@Configuration
+public class UserBatchLoadProperties {
+    //批量回源的线程数，也是单个节点批量查询同时占用的数据库连接数上限
+    private int threads = 8;
+    //等待执行的查询任务队列长度，队列满时由调用线程自己执行
+    private int queueCapacity = 256;
+    //单次查询的userId数量上限，多个分表的userId合并到一次查询中直到达到该上限
+    private int maxIdsPerQuery = 200;
+    //回填redis的过期时间（秒），实际过期时间会再加上随机的秒数，避免同时过期
+    private int cacheExpireSeconds = 30 * 60;
+    //回填redis过期时间的最大随机秒数
+    private int cacheExpireJitterSeconds = 10000;
+}
@@ -0,0 +1,25 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.bloom-filter")
+@Configuration
+public class UserBloomFilterProperties {
+    //是否开启userId的布隆过滤器，关闭时所有userId都会查询缓存和数据库
+    private boolean enabled = true;
+    //预计的用户数量，超过后误判率会上升，需要调大后重建
+    private long expectedInsertions = 10_000_000L;
+    //误判率
+    private double fpp = 0.01;
+    //重建时每页查询的userId数量，按照userId顺序翻页
+    private int rebuildPageSize = 5000;
+    //定时全量重建的间隔，丢失了注册广播消息的userId最多在一个间隔之后恢复
+    private Duration rebuildInterval = Duration.ofHours(1);
+    //数据库中不存在的userId在redis中的空值缓存时间
+    private Duration nullMarkerTtl = Duration.ofSeconds(60);
+}
@@ -0,0 +1,13 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.info-cache")
+@Configuration
+public class UserInfoCacheProperties {
+    //是否使用redis hash保存用户信息，开启后修改用户信息时只更新变化的字段，不再删除整个缓存
+    private boolean hashMode;
+}
@@ -0,0 +1,19 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.local-cache")
+@Configuration
+public class UserLocalCacheProperties {
+    //是否开启用户信息的本地缓存
+    private boolean enabled = true;
+    //本地缓存的最大条数
+    private long maximumSize = 10000;
+    //写入后的过期时间，也是其他节点修改用户信息后本地缓存最长的不一致时间
+    private Duration expireAfterWrite = Duration.ofSeconds(10);
+}
@@ -0,0 +1,13 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.tag-cache")
+@Configuration
+public class UserTagCacheProperties {
+    //是否把三个标签字段打包成一个redis二进制字符串保存，开启后判断单个标签只需要一条BITFIELD命令，不需要反序列化
+    private boolean bitfieldMode;
+}
@@ -0,0 +1,21 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.tag-index")
+@Configuration
+public class UserTagIndexProperties {
+    //是否开启用户标签的位图索引，关闭后不能按照标签圈选用户
+    private boolean enabled = true;
+    //重建时每页查询的记录数，按照userId顺序翻页
+    private int rebuildPageSize = 5000;
+    //圈选用户时每页最多返回的userId数量
+    private int maxPageSize = 1000;
+    //圈选结果的缓存时间，翻页时复用同一个结果，也是圈选结果最长的延迟时间，为0时不缓存
+    private Duration resultCacheTtl = Duration.ofSeconds(5);
+}
@@ -0,0 +1,17 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.tag-registry")
+@Configuration
+public class UserTagRegistryProperties {
+    //定时从数据库全量刷新标签定义的间隔，其他节点注册的标签在第一次使用时也会按需加载
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    //数据库中不存在的标签编码的缓存时间，避免错误的标签编码反复查询数据库
+    private Duration unknownCodeTtl = Duration.ofSeconds(5);
+}
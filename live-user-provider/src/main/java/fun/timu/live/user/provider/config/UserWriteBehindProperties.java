@@ -0,0 +1,25 @@
+package fun.timu.live.user.provider.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "live.user.write-behind")
+@Configuration
+public class UserWriteBehindProperties {
+    //是否开启用户信息修改的写缓冲，开启后修改先写入本地日志和内存缓冲区，由后台线程合并后批量写入数据库
+    private boolean enabled;
+    //单个分表缓冲的用户数达到该值时立即触发刷盘，也是单条批量更新语句的最大行数
+    private int flushSize = 200;
+    //定时刷盘的间隔，也是数据库中用户信息最长的延迟时间
+    private Duration flushInterval = Duration.ofMillis(500);
+    //缓冲区中最多保存的用户数，超过后新用户的修改直接同步写入数据库
+    private int maxPendingUsers = 50000;
+    //本地日志的目录，同一台机器上部署多个节点时需要使用不同的目录
+    private String journalDir = "./write-behind-journal";
+    //写入本地日志后是否等待落盘，关闭后只能保证进程崩溃时不丢失，机器宕机时可能丢失
+    private boolean fsync = true;
+}
@@ -3,7 +3,49 @@ package fun.timu.live.user.provider.dao.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import fun.timu.live.user.provider.dao.po.UserPO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 @Mapper
 public interface IUserMapper extends BaseMapper<UserPO> {
+
+    /**
+     * 按照userId顺序查询lastUserId之后的一页userId，每个分表各自取limit条后归并排序
+     */
+    @Select("select user_id from t_user where user_id > #{lastUserId} order by user_id limit #{limit}")
+    List<Long> selectUserIdAfter(@Param("lastUserId") long lastUserId, @Param("limit") int limit);
+
+    /**
+     * 在一条语句中批量更新多个用户不为null的字段，传入的userId需要属于同一张分表，每个用户都需要指定修改时间update_time
+     * 记录的update_time比修改时间更新时说明已经写入了更新的修改，这个用户的字段保持不变，最后写入的修改生效；
+     * update_time在最后赋值，前面的字段比较的都是修改前的值
+     */
+    @Update({"<script>",
+            "update t_user",
+            "<trim prefix='set' suffixOverrides=','>",
+            "<trim prefix='nick_name = case user_id' suffix='else nick_name end,'>",
+            "<foreach collection='list' item='item'><if test='item.nickName != null'>when #{item.userId} then if(update_time > #{item.updateTime}, nick_name, #{item.nickName}) </if></foreach></trim>",
+            "<trim prefix='true_name = case user_id' suffix='else true_name end,'>",
+            "<foreach collection='list' item='item'><if test='item.trueName != null'>when #{item.userId} then if(update_time > #{item.updateTime}, true_name, #{item.trueName}) </if></foreach></trim>",
+            "<trim prefix='avatar = case user_id' suffix='else avatar end,'>",
+            "<foreach collection='list' item='item'><if test='item.avatar != null'>when #{item.userId} then if(update_time > #{item.updateTime}, avatar, #{item.avatar}) </if></foreach></trim>",
+            "<trim prefix='sex = case user_id' suffix='else sex end,'>",
+            "<foreach collection='list' item='item'><if test='item.sex != null'>when #{item.userId} then if(update_time > #{item.updateTime}, sex, #{item.sex}) </if></foreach></trim>",
+            "<trim prefix='work_city = case user_id' suffix='else work_city end,'>",
+            "<foreach collection='list' item='item'><if test='item.workCity != null'>when #{item.userId} then if(update_time > #{item.updateTime}, work_city, #{item.workCity}) </if></foreach></trim>",
+            "<trim prefix='born_city = case user_id' suffix='else born_city end,'>",
+            "<foreach collection='list' item='item'><if test='item.bornCity != null'>when #{item.userId} then if(update_time > #{item.updateTime}, born_city, #{item.bornCity}) </if></foreach></trim>",
+            "<trim prefix='born_date = case user_id' suffix='else born_date end,'>",
+            "<foreach collection='list' item='item'><if test='item.bornDate != null'>when #{item.userId} then if(update_time > #{item.updateTime}, born_date, #{item.bornDate}) </if></foreach></trim>",
+            "<trim prefix='create_time = case user_id' suffix='else create_time end,'>",
+            "<foreach collection='list' item='item'><if test='item.createTime != null'>when #{item.userId} then if(update_time > #{item.updateTime}, create_time, #{item.createTime}) </if></foreach></trim>",
+            "<trim prefix='update_time = case user_id' suffix='else update_time end,'>",
+            "<foreach collection='list' item='item'>when #{item.userId} then if(update_time > #{item.updateTime}, update_time, #{item.updateTime}) </foreach></trim>",
+            "</trim>",
+            "where user_id in <foreach collection='list' item='item' open='(' separator=',' close=')'>#{item.userId}</foreach>",
+            "</script>"})
+    int batchUpdateByUserId(@Param("list") List<UserPO> userPOList);
 }
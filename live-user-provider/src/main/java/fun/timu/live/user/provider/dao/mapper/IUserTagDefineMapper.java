@@ -0,0 +1,9 @@
+package fun.timu.live.user.provider.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import fun.timu.live.user.provider.dao.po.UserTagDefinePO;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface IUserTagDefineMapper extends BaseMapper<UserTagDefinePO> {
+}
@@ -2,22 +2,26 @@ package fun.timu.live.user.provider.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import fun.timu.live.user.provider.dao.po.UserTagPO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.List;
+
 @Mapper
 public interface IUserTagMapper extends BaseMapper<UserTagPO> {
 
     /**
-     * 使用或的思路来设置标签，只能允许第一次设置成功
+     * 在一条语句中设置标签：用户还没有标签记录时插入带有标签的记录，记录已经存在时在更新子句中用或运算设置标签位，
+     * 按照user_id路由到对应的分表。数据源开启了useAffectedRows，影响行数按照实际修改计算
      *
-     * @param userId
-     * @param fieldName
-     * @param tag
-     * @return
+     * @return 插入新记录返回1，已有记录新设置了标签返回2，标签已经存在返回0
      */
-    @Update("update t_user_tag set ${fieldName}=${fieldName} | #{tag} where user_id=#{userId} and ${fieldName} & #{tag}=0")
-    int setTag(Long userId, String fieldName, long tag);
+    @Insert("insert into t_user_tag (user_id, ${fieldName}) values (#{userId}, #{tag}) "
+            + "on duplicate key update ${fieldName} = ${fieldName} | #{tag}")
+    int upsertTag(Long userId, String fieldName, long tag);
 
     /**
      * 使用先取反在与的思路来取消标签，只能允许第一次删除成功
@@ -29,4 +33,10 @@ public interface IUserTagMapper extends BaseMapper<UserTagPO> {
      */
     @Update("update t_user_tag set ${fieldName}=${fieldName} &~ #{tag} where user_id=#{userId} and ${fieldName} & #{tag}=#{tag}")
     int cancelTag(Long userId, String fieldName, long tag);
+
+    /**
+     * 按照userId顺序查询lastUserId之后的一页标签，每个分表各自取limit条后归并排序
+     */
+    @Select("select user_id, tag_info_01, tag_info_02, tag_info_03 from t_user_tag where user_id > #{lastUserId} order by user_id limit #{limit}")
+    List<UserTagPO> selectTagAfter(@Param("lastUserId") long lastUserId, @Param("limit") int limit);
 }
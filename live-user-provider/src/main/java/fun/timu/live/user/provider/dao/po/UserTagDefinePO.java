@@ -0,0 +1,20 @@
+package fun.timu.live.user.provider.dao.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@TableName("t_user_tag_define")
+public class UserTagDefinePO {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String tagCode;
+    private String tagDesc;
+    private Integer fieldIndex;
+    private Integer bitIndex;
+    private Date createTime;
+}
@@ -1,5 +1,6 @@
 package fun.timu.live.user.provider.rpc;
 
+import fun.timu.live.user.dto.UserBriefDTO;
 import fun.timu.live.user.dto.UserDTO;
 import fun.timu.live.user.interfaces.IUserRpc;
 import fun.timu.live.user.provider.service.IUserService;
@@ -54,4 +55,15 @@ public class UserRpcImpl implements IUserRpc {
     public Map<Long, UserDTO> batchQueryUserInfo(List<Long> userIdList) {
         return userService.batchQueryUserInfo(userIdList);
     }
+
+    /**
+     * 批量查询用户的简要信息，用于直播间聊天等只需要昵称和头像的高频场景
+     *
+     * @param userIdList 用户ID列表
+     * @return 返回一个映射，键为用户ID，值为用户简要信息
+     */
+    @Override
+    public Map<Long, UserBriefDTO> batchQueryUserBrief(List<Long> userIdList) {
+        return userService.batchQueryUserBrief(userIdList);
+    }
 }
@@ -1,10 +1,15 @@
 package fun.timu.live.user.provider.rpc;
 
 import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserTagDefineDTO;
+import fun.timu.live.user.dto.UserTagQueryDTO;
+import fun.timu.live.user.dto.UserTagQueryResultDTO;
 import fun.timu.live.user.interfaces.IUserTagRpc;
 import fun.timu.live.user.provider.service.IUserTagService;
 import org.apache.dubbo.config.annotation.DubboService;
 
+import java.util.List;
+
 @DubboService
 public class UserTagRpcImpl implements IUserTagRpc {
     private final IUserTagService userTagService;
@@ -27,4 +32,44 @@ public class UserTagRpcImpl implements IUserTagRpc {
     public boolean containTag(Long userId, UserTagsEnum userTagsEnum) {
         return userTagService.containTag(userId, userTagsEnum);
     }
+
+    @Override
+    public UserTagQueryResultDTO queryUserIdsByTags(UserTagQueryDTO userTagQueryDTO) {
+        return userTagService.queryUserIdsByTags(userTagQueryDTO);
+    }
+
+    @Override
+    public long[] batchContainTags(List<Long> userIdList, List<UserTagsEnum> userTagsEnumList) {
+        return userTagService.batchContainTags(userIdList, userTagsEnumList);
+    }
+
+    @Override
+    public UserTagDefineDTO registerTag(String tagCode, String desc) {
+        return userTagService.registerTag(tagCode, desc);
+    }
+
+    @Override
+    public List<UserTagDefineDTO> listTagDefines() {
+        return userTagService.listTagDefines();
+    }
+
+    @Override
+    public boolean setTagByCode(Long userId, String tagCode) {
+        return userTagService.setTagByCode(userId, tagCode);
+    }
+
+    @Override
+    public boolean cancelTagByCode(Long userId, String tagCode) {
+        return userTagService.cancelTagByCode(userId, tagCode);
+    }
+
+    @Override
+    public boolean containTagByCode(Long userId, String tagCode) {
+        return userTagService.containTagByCode(userId, tagCode);
+    }
+
+    @Override
+    public long[] batchContainTagsByCode(List<Long> userIdList, List<String> tagCodeList) {
+        return userTagService.batchContainTagsByCode(userIdList, tagCodeList);
+    }
 }
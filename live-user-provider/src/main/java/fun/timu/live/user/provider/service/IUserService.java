@@ -1,5 +1,6 @@
 package fun.timu.live.user.provider.service;
 
+import fun.timu.live.user.dto.UserBriefDTO;
 import fun.timu.live.user.dto.UserDTO;
 
 import java.util.List;
@@ -39,4 +40,12 @@ public interface IUserService {
      * @return
      */
     Map<Long,UserDTO> batchQueryUserInfo(List<Long> userIdList);
+
+    /**
+     * 批量查询用户的简要信息（昵称和头像）
+     *
+     * @param userIdList
+     * @return
+     */
+    Map<Long, UserBriefDTO> batchQueryUserBrief(List<Long> userIdList);
 }
@@ -0,0 +1,48 @@
+package fun.timu.live.user.provider.service.cache;
+
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.user.dto.UserTagDTO;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户标签在redis中的缓存，不同的实现使用不同的存储结构，设置和取消标签时都直接在缓存中修改对应的位
+ */
+public interface IUserTagCache {
+
+    String buildKey(Long userId);
+
+    /**
+     * 读取用户标签
+     *
+     * @return 缓存不存在或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    UserTagDTO get(Long userId);
+
+    /**
+     * 批量读取用户标签，空值缓存也算作命中，值为userId为null的对象
+     */
+    BatchGetResult<Long, UserTagDTO> multiGet(Collection<Long> userIds);
+
+    /**
+     * 批量回填用户标签和空值缓存，已经存在的缓存不会被覆盖
+     *
+     * @param userTagDTOList     数据库中存在标签记录的用户
+     * @param notExistUserIdList 数据库中没有标签记录的userId
+     * @param expireTime         标签缓存的过期时间
+     * @param nullMarkerTtl      空值缓存的过期时间
+     */
+    void putAllIfAbsent(List<UserTagDTO> userTagDTOList, List<Long> notExistUserIdList, Duration expireTime, Duration nullMarkerTtl);
+
+    /**
+     * 在缓存中原地设置或取消标签，缓存不存在时写入短期的脏标记，等待下次读取时回源数据库
+     *
+     * @param fieldIndex 标签字段的下标
+     * @param tag        标签值
+     * @param set        true表示设置标签，false表示取消标签
+     * @return 缓存是否存在并且完成了修改
+     */
+    boolean updateTag(Long userId, int fieldIndex, long tag, boolean set);
+}
@@ -0,0 +1,166 @@
+package fun.timu.live.user.provider.service.cache;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import fun.timu.live.user.provider.config.UserBloomFilterProperties;
+import fun.timu.live.user.provider.dao.mapper.IUserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 已存在userId的本地布隆过滤器，缓存未命中时在回源数据库之前拦截不存在的userId
+ * <p>
+ * 启动时从所有分表中异步构建，构建完成之前不做拦截；新注册的用户由注册节点直接加入，
+ * 其他节点通过广播消息加入，收到消息之前只能从注册时写入的缓存中读到新用户；
+ * 定时全量重建，避免丢失的广播消息导致新用户一直被拦截，也可以通过actuator端点手动重建
+ */
+@Component
+public class UserIdBloomFilter implements InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserIdBloomFilter.class);
+
+    private final UserBloomFilterProperties userBloomFilterProperties;
+    private final IUserMapper userMapper;
+    /**
+     * 当前生效的过滤器，为null时表示还没有构建完成
+     */
+    private volatile BloomFilter<Long> current;
+    /**
+     * 正在重建的过滤器，重建期间新增的userId需要同时加入，与替换current在同一把锁中进行
+     */
+    private BloomFilter<Long> building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final ScheduledExecutorService rebuildExecutor;
+
+    public UserIdBloomFilter(UserBloomFilterProperties userBloomFilterProperties, IUserMapper userMapper) {
+        this.userBloomFilterProperties = userBloomFilterProperties;
+        this.userMapper = userMapper;
+        this.rebuildExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-bloom-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (userBloomFilterProperties.isEnabled()) {
+            long rebuildMillis = userBloomFilterProperties.getRebuildInterval().toMillis();
+            rebuildExecutor.scheduleWithFixedDelay(this::rebuildAsync, 0, rebuildMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * userId是否可能存在
+     *
+     * @return false表示一定不存在；过滤器关闭或者还没有构建完成时总是返回true
+     */
+    public boolean mightExist(Long userId) {
+        BloomFilter<Long> bloomFilter = current;
+        if (!userBloomFilterProperties.isEnabled() || bloomFilter == null) {
+            return true;
+        }
+        return bloomFilter.mightContain(userId);
+    }
+
+    /**
+     * 加入新注册的userId，重建期间同时加入正在重建的过滤器，保证替换之后不会丢失
+     */
+    public synchronized void add(Long userId) {
+        if (current != null) {
+            current.put(userId);
+        }
+        if (building != null) {
+            building.put(userId);
+        }
+    }
+
+    /**
+     * 在后台线程中重建
+     *
+     * @return 已经有重建任务在执行时返回false
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.execute(this::doRebuild);
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按照userId顺序分页扫描所有分表重建过滤器，重建完成后整体替换
+     */
+    private void doRebuild() {
+        long startTime = System.currentTimeMillis();
+        try {
+            BloomFilter<Long> bloomFilter = BloomFilter.create(Funnels.longFunnel(),
+                    userBloomFilterProperties.getExpectedInsertions(), userBloomFilterProperties.getFpp());
+            synchronized (this) {
+                building = bloomFilter;
+            }
+            int pageSize = Math.max(1, userBloomFilterProperties.getRebuildPageSize());
+            long lastUserId = Long.MIN_VALUE;
+            long count = 0;
+            List<Long> userIdList;
+            do {
+                userIdList = userMapper.selectUserIdAfter(lastUserId, pageSize);
+                for (Long userId : userIdList) {
+                    bloomFilter.put(userId);
+                    lastUserId = userId;
+                }
+                count += userIdList.size();
+            } while (userIdList.size() == pageSize);
+            synchronized (this) {
+                current = bloomFilter;
+                building = null;
+            }
+            LOGGER.info("[UserIdBloomFilter] rebuild finish,count is {},cost {}ms", count, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            LOGGER.error("[UserIdBloomFilter] rebuild is error", e);
+        } finally {
+            synchronized (this) {
+                building = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 过滤器的当前状态
+     */
+    public Map<String, Object> stats() {
+        BloomFilter<Long> bloomFilter = current;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", userBloomFilterProperties.isEnabled());
+        stats.put("ready", bloomFilter != null);
+        stats.put("rebuilding", rebuilding.get());
+        if (bloomFilter != null) {
+            stats.put("approximateElementCount", bloomFilter.approximateElementCount());
+            stats.put("expectedFpp", bloomFilter.expectedFpp());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,34 @@
+package fun.timu.live.user.provider.service.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * userId布隆过滤器的actuator端点，GET查看状态，POST触发重建
+ */
+@Component
+@Endpoint(id = "userbloomfilter")
+public class UserIdBloomFilterEndpoint {
+
+    private final UserIdBloomFilter userIdBloomFilter;
+
+    public UserIdBloomFilterEndpoint(UserIdBloomFilter userIdBloomFilter) {
+        this.userIdBloomFilter = userIdBloomFilter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return userIdBloomFilter.stats();
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        Map<String, Object> stats = userIdBloomFilter.stats();
+        stats.put("rebuildStarted", userIdBloomFilter.rebuildAsync());
+        return stats;
+    }
+}
@@ -0,0 +1,328 @@
+package fun.timu.live.user.provider.service.cache;
+
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.dto.UserBriefDTO;
+import fun.timu.live.user.dto.UserDTO;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以redis hash保存的用户信息缓存，每个字段单独保存为字符串
+ * <p>
+ * 修改用户信息时只写入变化的字段，不需要删除整个缓存后再全量加载；只需要昵称和头像的场景使用HMGET读取部分字段。
+ * 数据库中不存在的用户保存为只包含_null字段的hash。从数据库加载后只在缓存不存在时回填；
+ * 修改时缓存不存在会写入只包含_dirty字段的短期标记，标记存在期间读取都会回源数据库并且不会回填，
+ * 避免修改之前从数据库读到的旧数据在修改之后写入缓存
+ */
+@Component
+public class UserInfoHashCache {
+
+    private static final String USER_ID = "userId";
+    private static final String NICK_NAME = "nickName";
+    private static final String TRUE_NAME = "trueName";
+    private static final String AVATAR = "avatar";
+    private static final String SEX = "sex";
+    private static final String WORK_CITY = "workCity";
+    private static final String BORN_CITY = "bornCity";
+    private static final String BORN_DATE = "bornDate";
+    private static final String CREATE_TIME = "createTime";
+    private static final String UPDATE_TIME = "updateTime";
+    private static final String NULL_MARKER = "_null";
+    private static final String DIRTY_MARKER = "_dirty";
+    private static final List<String> BRIEF_FIELDS = List.of(USER_ID, NICK_NAME, AVATAR, NULL_MARKER, DIRTY_MARKER);
+    /**
+     * 修改时缓存不存在，写入的脏标记的存活时间
+     */
+    private static final Duration DIRTY_MARKER_TTL = Duration.ofSeconds(3);
+    /**
+     * 只有缓存不存在时才写入，已经存在的缓存（包括脏标记）以修改时写入的字段为准
+     * ARGV[1]为过期时间（毫秒），之后是hash的字段和值
+     */
+    private static final byte[] PUT_IF_ABSENT_SCRIPT = ("if redis.call('exists', KEYS[1]) == 1 then return 0 end "
+            + "redis.call('hset', KEYS[1], unpack(ARGV, 2)) "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]) return 1").getBytes(StandardCharsets.UTF_8);
+    /**
+     * 只有缓存存在并且保存的是完整的用户信息时才写入变化的字段，避免产生只包含部分字段的hash；
+     * 否则改为写入脏标记。ARGV[1]为脏标记的过期时间（毫秒），之后是hash的字段和值
+     */
+    private static final DefaultRedisScript<Long> UPDATE_FIELDS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], '" + USER_ID + "') == 1 then "
+                    + "redis.call('hset', KEYS[1], unpack(ARGV, 2)) return 1 end "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('hset', KEYS[1], '" + DIRTY_MARKER + "', '1') "
+                    + "redis.call('pexpire', KEYS[1], ARGV[1]) return 0", Long.class);
+
+    /**
+     * 删除缓存后写入脏标记，ARGV[1]为脏标记的过期时间（毫秒）
+     */
+    private static final byte[] MARK_DIRTY_SCRIPT = ("redis.call('del', KEYS[1]) "
+            + "redis.call('hset', KEYS[1], '" + DIRTY_MARKER + "', '1') "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]) return 1").getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final UserProviderCacheKeyBuilder cacheKeyBuilder;
+
+    public UserInfoHashCache(StringRedisTemplate stringRedisTemplate, UserProviderCacheKeyBuilder cacheKeyBuilder) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheKeyBuilder = cacheKeyBuilder;
+    }
+
+    public String buildKey(Long userId) {
+        return cacheKeyBuilder.buildUserInfoHashKey(userId);
+    }
+
+    /**
+     * 读取完整的用户信息
+     *
+     * @return 缓存不存在或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    public UserDTO get(Long userId) {
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        return fromHash(hashOperations.entries(this.buildKey(userId)));
+    }
+
+    /**
+     * 在一次pipeline中批量读取完整的用户信息，空值缓存也算作命中，值为userId为null的对象
+     */
+    @SuppressWarnings("unchecked")
+    public BatchGetResult<Long, UserDTO> multiGet(Collection<Long> userIds) {
+        List<Long> userIdList = new ArrayList<>(userIds);
+        List<Object> resultList = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (Long userId : userIdList) {
+                    operations.opsForHash().entries((K) buildKey(userId));
+                }
+                return null;
+            }
+        });
+        BatchGetResult<Long, UserDTO> batchGetResult = new BatchGetResult<>(userIdList.size());
+        for (int i = 0; i < userIdList.size(); i++) {
+            UserDTO userDTO = fromHash((Map<String, String>) resultList.get(i));
+            if (userDTO == null) {
+                batchGetResult.miss(userIdList.get(i));
+            } else {
+                batchGetResult.hit(userIdList.get(i), userDTO);
+            }
+        }
+        return batchGetResult;
+    }
+
+    /**
+     * 在一次pipeline中批量读取昵称和头像，空值缓存也算作命中，值为userId为null的对象
+     */
+    @SuppressWarnings("unchecked")
+    public BatchGetResult<Long, UserBriefDTO> multiGetBrief(Collection<Long> userIds) {
+        List<Long> userIdList = new ArrayList<>(userIds);
+        List<Object> resultList = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                HashOperations<K, String, String> hashOperations = operations.opsForHash();
+                for (Long userId : userIdList) {
+                    hashOperations.multiGet((K) buildKey(userId), BRIEF_FIELDS);
+                }
+                return null;
+            }
+        });
+        BatchGetResult<Long, UserBriefDTO> batchGetResult = new BatchGetResult<>(userIdList.size());
+        for (int i = 0; i < userIdList.size(); i++) {
+            List<String> values = (List<String>) resultList.get(i);
+            Long userId = userIdList.get(i);
+            if (values == null || values.stream().allMatch(value -> value == null) || values.get(4) != null) {
+                batchGetResult.miss(userId);
+                continue;
+            }
+            UserBriefDTO userBriefDTO = new UserBriefDTO();
+            if (values.get(3) == null) {
+                userBriefDTO.setUserId(userId);
+                userBriefDTO.setNickName(values.get(1));
+                userBriefDTO.setAvatar(values.get(2));
+            }
+            batchGetResult.hit(userId, userBriefDTO);
+        }
+        return batchGetResult;
+    }
+
+    /**
+     * 缓存不存在时写入完整的用户信息
+     */
+    public void putIfAbsent(UserDTO userDTO, long expireSeconds) {
+        this.putAllIfAbsent(Collections.singletonList(userDTO), Collections.emptyList(), expireSeconds, null);
+    }
+
+    /**
+     * 缓存不存在时写入空值缓存
+     */
+    public void putNullMarkerIfAbsent(Long userId, Duration nullMarkerTtl) {
+        this.putAllIfAbsent(Collections.emptyList(), Collections.singletonList(userId), 0, nullMarkerTtl);
+    }
+
+    /**
+     * 在一次pipeline中回填用户信息和空值缓存，已经存在的缓存（包括脏标记）不会被覆盖
+     *
+     * @param userDTOList        数据库中存在的用户
+     * @param notExistUserIdList 数据库中不存在的userId
+     * @param expireSeconds      用户信息的过期时间
+     * @param nullMarkerTtl      空值缓存的过期时间
+     */
+    public void putAllIfAbsent(List<UserDTO> userDTOList, List<Long> notExistUserIdList, long expireSeconds, Duration nullMarkerTtl) {
+        if (userDTOList.isEmpty() && notExistUserIdList.isEmpty()) {
+            return;
+        }
+        byte[] expireMillis = toBytes(TimeUnit.SECONDS.toMillis(expireSeconds));
+        stringRedisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                for (UserDTO userDTO : userDTOList) {
+                    Map<String, String> hash = toHash(userDTO);
+                    byte[][] keysAndArgs = new byte[2 + hash.size() * 2][];
+                    keysAndArgs[0] = toBytes(buildKey(userDTO.getUserId()));
+                    keysAndArgs[1] = expireMillis;
+                    int index = 2;
+                    for (Map.Entry<String, String> entry : hash.entrySet()) {
+                        keysAndArgs[index++] = toBytes(entry.getKey());
+                        keysAndArgs[index++] = toBytes(entry.getValue());
+                    }
+                    connection.scriptingCommands().eval(PUT_IF_ABSENT_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs);
+                }
+                for (Long userId : notExistUserIdList) {
+                    connection.scriptingCommands().eval(PUT_IF_ABSENT_SCRIPT, ReturnType.INTEGER, 1,
+                            toBytes(buildKey(userId)), toBytes(nullMarkerTtl.toMillis()), toBytes(NULL_MARKER), toBytes("1"));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 只更新不为null的字段，缓存不存在时写入短期的脏标记，等待标记过期后读取时全量加载
+     *
+     * @return 缓存是否存在并且完成了更新
+     */
+    public boolean updateFields(UserDTO userDTO) {
+        Map<String, String> hash = toHash(userDTO);
+        hash.remove(USER_ID);
+        if (hash.isEmpty()) {
+            return false;
+        }
+        Object[] args = new Object[hash.size() * 2 + 1];
+        args[0] = String.valueOf(DIRTY_MARKER_TTL.toMillis());
+        int index = 1;
+        for (Map.Entry<String, String> entry : hash.entrySet()) {
+            args[index++] = entry.getKey();
+            args[index++] = entry.getValue();
+        }
+        Long result = stringRedisTemplate.execute(UPDATE_FIELDS_SCRIPT, Collections.singletonList(this.buildKey(userDTO.getUserId())), args);
+        return result != null && result == 1;
+    }
+
+    /**
+     * 在一次pipeline中把缓存替换为短期的脏标记，用于不确定哪些字段已经写入数据库的场景
+     */
+    public void markDirty(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        byte[] ttlMillis = toBytes(DIRTY_MARKER_TTL.toMillis());
+        stringRedisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                for (Long userId : userIds) {
+                    connection.scriptingCommands().eval(MARK_DIRTY_SCRIPT, ReturnType.INTEGER, 1, toBytes(buildKey(userId)), ttlMillis);
+                }
+                return null;
+            }
+        });
+    }
+
+    public void delete(Long userId) {
+        stringRedisTemplate.delete(this.buildKey(userId));
+    }
+
+    /**
+     * 把用户信息转换为hash，为null的字段不写入
+     */
+    static Map<String, String> toHash(UserDTO userDTO) {
+        Map<String, String> hash = new HashMap<>(16);
+        putIfNotNull(hash, USER_ID, userDTO.getUserId());
+        putIfNotNull(hash, NICK_NAME, userDTO.getNickName());
+        putIfNotNull(hash, TRUE_NAME, userDTO.getTrueName());
+        putIfNotNull(hash, AVATAR, userDTO.getAvatar());
+        putIfNotNull(hash, SEX, userDTO.getSex());
+        putIfNotNull(hash, WORK_CITY, userDTO.getWorkCity());
+        putIfNotNull(hash, BORN_CITY, userDTO.getBornCity());
+        putIfNotNull(hash, BORN_DATE, userDTO.getBornDate());
+        putIfNotNull(hash, CREATE_TIME, userDTO.getCreateTime());
+        putIfNotNull(hash, UPDATE_TIME, userDTO.getUpdateTime());
+        return hash;
+    }
+
+    /**
+     * 把hash转换为用户信息
+     *
+     * @return hash为空或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    static UserDTO fromHash(Map<String, String> hash) {
+        if (hash == null || hash.isEmpty() || hash.containsKey(DIRTY_MARKER)) {
+            return null;
+        }
+        UserDTO userDTO = new UserDTO();
+        if (hash.containsKey(NULL_MARKER)) {
+            return userDTO;
+        }
+        userDTO.setUserId(toLong(hash.get(USER_ID)));
+        userDTO.setNickName(hash.get(NICK_NAME));
+        userDTO.setTrueName(hash.get(TRUE_NAME));
+        userDTO.setAvatar(hash.get(AVATAR));
+        userDTO.setSex(toInteger(hash.get(SEX)));
+        userDTO.setWorkCity(toInteger(hash.get(WORK_CITY)));
+        userDTO.setBornCity(toInteger(hash.get(BORN_CITY)));
+        userDTO.setBornDate(toDate(hash.get(BORN_DATE)));
+        userDTO.setCreateTime(toDate(hash.get(CREATE_TIME)));
+        userDTO.setUpdateTime(toDate(hash.get(UPDATE_TIME)));
+        return userDTO;
+    }
+
+    private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value == null) {
+            return;
+        }
+        hash.put(field, value instanceof Date date ? String.valueOf(date.getTime()) : value.toString());
+    }
+
+    private static byte[] toBytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Long toLong(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private static Integer toInteger(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static Date toDate(String value) {
+        return value == null ? null : new Date(Long.parseLong(value));
+    }
+}
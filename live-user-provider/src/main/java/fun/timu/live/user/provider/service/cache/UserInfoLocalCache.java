@@ -0,0 +1,83 @@
+package fun.timu.live.user.provider.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fun.timu.live.user.dto.UserDTO;
+import fun.timu.live.user.provider.config.UserLocalCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户信息的本地缓存（L1），位于redis（L2）之前
+ * <p>
+ * 修改用户信息的节点会立即淘汰本地缓存，其他节点通过广播消费UserCacheAsyncDeleteDTO消息淘汰，
+ * 写入后的过期时间兜底消息丢失或者延迟的情况
+ */
+@Component
+public class UserInfoLocalCache {
+
+    private final UserLocalCacheProperties userLocalCacheProperties;
+    private final Cache<Long, UserDTO> cache;
+    private final Counter l2HitCounter;
+    private final Counter l2MissCounter;
+
+    public UserInfoLocalCache(UserLocalCacheProperties userLocalCacheProperties, MeterRegistry meterRegistry) {
+        this.userLocalCacheProperties = userLocalCacheProperties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(userLocalCacheProperties.getMaximumSize())
+                .expireAfterWrite(userLocalCacheProperties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-info-l1");
+        Gauge.builder("live.user.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("level", "l1")
+                .register(meterRegistry);
+        // L2与CaffeineCacheMetrics使用相同的指标名，按照cache标签区分
+        this.l2HitCounter = Counter.builder("cache.gets").tag("cache", "user-info-l2").tag("result", "hit").register(meterRegistry);
+        this.l2MissCounter = Counter.builder("cache.gets").tag("cache", "user-info-l2").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("live.user.cache.hit.ratio", this, UserInfoLocalCache::l2HitRatio)
+                .tag("level", "l2")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从本地缓存中获取用户信息
+     *
+     * @param userId 用户id
+     * @return 本地缓存未命中或者本地缓存关闭时返回null
+     */
+    public UserDTO get(Long userId) {
+        if (!userLocalCacheProperties.isEnabled()) {
+            return null;
+        }
+        return cache.getIfPresent(userId);
+    }
+
+    public void put(Long userId, UserDTO userDTO) {
+        if (userLocalCacheProperties.isEnabled()) {
+            cache.put(userId, userDTO);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * 记录一次L2（redis）的访问结果，只在L1未命中时调用
+     *
+     * @param hit 是否命中
+     */
+    public void recordL2(boolean hit) {
+        (hit ? l2HitCounter : l2MissCounter).increment();
+    }
+
+    private double l2HitRatio() {
+        double hit = l2HitCounter.count();
+        double total = hit + l2MissCounter.count();
+        return total == 0 ? 0 : hit / total;
+    }
+}
@@ -0,0 +1,226 @@
+package fun.timu.live.user.provider.service.cache;
+
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.framework.redis.starter.batch.RedisBatchReader;
+import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.constants.UserTagFieldNameConstants;
+import fun.timu.live.user.dto.UserTagDTO;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以redis二进制字符串保存的用户标签缓存
+ * <p>
+ * 三个标签字段按照大端序依次保存为3个64位整数，最后一个字节是状态标记，整个值只有25个字节；
+ * 标签字段第n位在字符串中的位偏移是 字段下标 * 64 + 63 - n，判断单个标签只需要一条BITFIELD命令同时读取标签位和状态标记，
+ * 设置和取消标签时在lua脚本中检查状态标记后直接SETBIT。状态标记的含义与hash结构的缓存一致：
+ * 数据库中没有标签记录的用户保存为空值缓存，标签变更时缓存不存在会写入短期的脏标记
+ */
+@Component
+public class UserTagBitCache implements IUserTagCache {
+
+    private static final int TAG_FIELD_COUNT = UserTagFieldNameConstants.FIELD_NAMES.size();
+    private static final int FLAG_BIT_OFFSET = TAG_FIELD_COUNT * Long.SIZE;
+    private static final int VALUE_LENGTH = TAG_FIELD_COUNT * Long.BYTES + 1;
+    private static final byte FLAG_PRESENT = 1;
+    private static final byte FLAG_NULL = 2;
+    private static final byte FLAG_DIRTY = 4;
+    /**
+     * 标签变更时缓存不存在，写入的脏标记的存活时间
+     */
+    private static final Duration DIRTY_MARKER_TTL = Duration.ofSeconds(3);
+    /**
+     * 只有缓存存在并且保存的是标签记录时才修改标签位，否则改为写入脏标记
+     * ARGV[1]为1表示设置、0表示取消，ARGV[2]为脏标记的过期时间（毫秒），ARGV[3]为状态标记的位偏移，之后是需要修改的标签位的位偏移
+     */
+    private static final DefaultRedisScript<Long> UPDATE_TAG_SCRIPT = new DefaultRedisScript<>(
+            "local flag = redis.call('bitfield', KEYS[1], 'GET', 'u8', ARGV[3])[1] "
+                    + "if flag ~= " + FLAG_PRESENT + " then "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('bitfield', KEYS[1], 'SET', 'u8', ARGV[3], " + FLAG_DIRTY + ") "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) return 0 end "
+                    + "for i = 4, #ARGV do redis.call('setbit', KEYS[1], ARGV[i], ARGV[1]) end "
+                    + "return 1", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, byte[]> bytesRedisTemplate;
+    private final RedisBatchReader redisBatchReader;
+    private final UserProviderCacheKeyBuilder cacheKeyBuilder;
+
+    public UserTagBitCache(StringRedisTemplate stringRedisTemplate, RedisConnectionFactory redisConnectionFactory,
+                           RedisBatchReader redisBatchReader, UserProviderCacheKeyBuilder cacheKeyBuilder) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisBatchReader = redisBatchReader;
+        this.cacheKeyBuilder = cacheKeyBuilder;
+        // 值是原始的二进制内容，不经过任何序列化
+        this.bytesRedisTemplate = new RedisTemplate<>();
+        this.bytesRedisTemplate.setConnectionFactory(redisConnectionFactory);
+        this.bytesRedisTemplate.setKeySerializer(RedisSerializer.string());
+        this.bytesRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        this.bytesRedisTemplate.afterPropertiesSet();
+    }
+
+    @Override
+    public String buildKey(Long userId) {
+        return cacheKeyBuilder.buildTagBitKey(userId);
+    }
+
+    /**
+     * 用一条BITFIELD命令判断用户是否拥有某个标签
+     *
+     * @param fieldIndex 标签字段的下标
+     * @param tag        标签值
+     * @return 缓存不存在或者是脏标记时返回null，需要回源数据库
+     */
+    public Boolean contains(Long userId, int fieldIndex, long tag) {
+        // 只有单个位的标签可以用一次GET读取，其他情况读取整个字段
+        boolean singleBit = Long.bitCount(tag) == 1;
+        BitFieldSubCommands subCommands = BitFieldSubCommands.create()
+                .get(singleBit ? BitFieldSubCommands.BitFieldType.unsigned(1) : BitFieldSubCommands.BitFieldType.signed(64))
+                .valueAt(singleBit ? bitOffset(fieldIndex, Long.numberOfTrailingZeros(tag)) : (long) fieldIndex * Long.SIZE)
+                .get(BitFieldSubCommands.BitFieldType.unsigned(8)).valueAt(FLAG_BIT_OFFSET);
+        List<Long> resultList = stringRedisTemplate.opsForValue().bitField(this.buildKey(userId), subCommands);
+        if (resultList == null || resultList.size() < 2) {
+            return null;
+        }
+        long flag = resultList.get(1);
+        if (flag == FLAG_NULL) {
+            return false;
+        }
+        if (flag != FLAG_PRESENT) {
+            return null;
+        }
+        long value = resultList.get(0);
+        return singleBit ? value == 1 : tag > 0 && (value & tag) == tag;
+    }
+
+    @Override
+    public UserTagDTO get(Long userId) {
+        return fromBytes(userId, bytesRedisTemplate.opsForValue().get(this.buildKey(userId)));
+    }
+
+    /**
+     * 按照slot分组的MGET批量读取
+     */
+    @Override
+    public BatchGetResult<Long, UserTagDTO> multiGet(Collection<Long> userIds) {
+        BatchGetResult<Long, byte[]> bytesResult = redisBatchReader.multiGet(bytesRedisTemplate, userIds, this::buildKey);
+        BatchGetResult<Long, UserTagDTO> batchGetResult = new BatchGetResult<>(userIds.size());
+        for (Map.Entry<Long, byte[]> entry : bytesResult.getHits().entrySet()) {
+            UserTagDTO userTagDTO = fromBytes(entry.getKey(), entry.getValue());
+            if (userTagDTO == null) {
+                batchGetResult.miss(entry.getKey());
+            } else {
+                batchGetResult.hit(entry.getKey(), userTagDTO);
+            }
+        }
+        for (Long userId : bytesResult.getMisses()) {
+            batchGetResult.miss(userId);
+        }
+        return batchGetResult;
+    }
+
+    /**
+     * 在一次pipeline中用SET NX回填，已经存在的缓存（包括脏标记）不会被覆盖
+     */
+    @Override
+    public void putAllIfAbsent(List<UserTagDTO> userTagDTOList, List<Long> notExistUserIdList, Duration expireTime, Duration nullMarkerTtl) {
+        if (userTagDTOList.isEmpty() && notExistUserIdList.isEmpty()) {
+            return;
+        }
+        bytesRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (UserTagDTO userTagDTO : userTagDTOList) {
+                    operations.opsForValue().setIfAbsent((K) buildKey(userTagDTO.getUserId()), (V) toBytes(userTagDTO), expireTime);
+                }
+                for (Long userId : notExistUserIdList) {
+                    byte[] value = new byte[VALUE_LENGTH];
+                    value[VALUE_LENGTH - 1] = FLAG_NULL;
+                    operations.opsForValue().setIfAbsent((K) buildKey(userId), (V) value, nullMarkerTtl);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public boolean updateTag(Long userId, int fieldIndex, long tag, boolean set) {
+        List<String> args = new ArrayList<>();
+        args.add(set ? "1" : "0");
+        args.add(String.valueOf(DIRTY_MARKER_TTL.toMillis()));
+        args.add(String.valueOf(FLAG_BIT_OFFSET));
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if ((tag & (1L << bit)) != 0) {
+                args.add(String.valueOf(bitOffset(fieldIndex, bit)));
+            }
+        }
+        if (args.size() == 3) {
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(UPDATE_TAG_SCRIPT, Collections.singletonList(this.buildKey(userId)), args.toArray());
+        return result != null && result == 1;
+    }
+
+    /**
+     * 标签字段第bit位在字符串中的位偏移，redis的位偏移从每个字节的最高位开始计算
+     */
+    static long bitOffset(int fieldIndex, int bit) {
+        return (long) fieldIndex * Long.SIZE + (Long.SIZE - 1 - bit);
+    }
+
+    static byte[] toBytes(UserTagDTO userTagDTO) {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(VALUE_LENGTH);
+        byteBuffer.putLong(valueOf(userTagDTO.getTagInfo01()));
+        byteBuffer.putLong(valueOf(userTagDTO.getTagInfo02()));
+        byteBuffer.putLong(valueOf(userTagDTO.getTagInfo03()));
+        byteBuffer.put(FLAG_PRESENT);
+        return byteBuffer.array();
+    }
+
+    /**
+     * 把二进制内容转换为用户标签
+     *
+     * @return 内容为空或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    static UserTagDTO fromBytes(Long userId, byte[] value) {
+        if (value == null || value.length < VALUE_LENGTH) {
+            return null;
+        }
+        byte flag = value[VALUE_LENGTH - 1];
+        if (flag == FLAG_NULL) {
+            return new UserTagDTO();
+        }
+        if (flag != FLAG_PRESENT) {
+            return null;
+        }
+        ByteBuffer byteBuffer = ByteBuffer.wrap(value);
+        UserTagDTO userTagDTO = new UserTagDTO();
+        userTagDTO.setUserId(userId);
+        userTagDTO.setTagInfo01(byteBuffer.getLong());
+        userTagDTO.setTagInfo02(byteBuffer.getLong());
+        userTagDTO.setTagInfo03(byteBuffer.getLong());
+        return userTagDTO;
+    }
+
+    private static long valueOf(Long tagInfo) {
+        return tagInfo == null ? 0 : tagInfo;
+    }
+}
@@ -0,0 +1,248 @@
+package fun.timu.live.user.provider.service.cache;
+
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.dto.UserTagDTO;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 以redis hash保存的用户标签缓存
+ * <p>
+ * 每个标签字段拆成高32位和低32位两个hash字段保存，lua脚本中的数字是double类型，32位以内的整数可以精确地做加减，
+ * 设置和取消标签时直接在脚本中修改对应的位，不需要删除缓存后再发送延迟消息做二次删除。
+ * 数据库中没有标签记录的用户保存为只包含_null字段的hash；标签变更时缓存不存在会写入只包含_dirty字段的短期标记，
+ * 标记存在期间读取都会回源数据库并且不会回填，避免变更之前从数据库读到的旧值覆盖缓存
+ */
+@Component
+public class UserTagCache implements IUserTagCache {
+
+    private static final String[] TAG_FIELDS = {"tagInfo01", "tagInfo02", "tagInfo03"};
+    private static final String HIGH_SUFFIX = "Hi";
+    private static final String LOW_SUFFIX = "Lo";
+    private static final String NULL_MARKER = "_null";
+    private static final String DIRTY_MARKER = "_dirty";
+    private static final long LOW_MASK = 0xFFFFFFFFL;
+    /**
+     * 标签变更时缓存不存在，写入的脏标记的存活时间
+     */
+    private static final Duration DIRTY_MARKER_TTL = Duration.ofSeconds(3);
+    private static final List<String> READ_FIELDS;
+
+    static {
+        List<String> readFields = new ArrayList<>(TAG_FIELDS.length * 2 + 2);
+        for (String tagField : TAG_FIELDS) {
+            readFields.add(tagField + HIGH_SUFFIX);
+            readFields.add(tagField + LOW_SUFFIX);
+        }
+        readFields.add(NULL_MARKER);
+        readFields.add(DIRTY_MARKER);
+        READ_FIELDS = Collections.unmodifiableList(readFields);
+    }
+
+    /**
+     * 只有缓存不存在时才写入，已经存在的缓存（包括脏标记）以标签变更脚本的修改为准
+     * ARGV[1]为过期时间（毫秒），之后是hash的字段和值
+     */
+    private static final String PUT_IF_ABSENT_SCRIPT_TEXT = "if redis.call('exists', KEYS[1]) == 1 then return 0 end "
+            + "redis.call('hset', KEYS[1], unpack(ARGV, 2)) "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]) return 1";
+    private static final byte[] PUT_IF_ABSENT_SCRIPT = PUT_IF_ABSENT_SCRIPT_TEXT.getBytes(StandardCharsets.UTF_8);
+    /**
+     * 在缓存中设置或取消标签位，缓存不存在、是空值缓存或者脏标记时改为写入脏标记
+     * ARGV[1]为1表示设置、0表示取消，ARGV[2]为脏标记的过期时间（毫秒），之后每两个参数为一个hash字段和需要修改的位的值
+     */
+    private static final DefaultRedisScript<Long> UPDATE_TAG_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[3]) == 0 then "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('hset', KEYS[1], '" + DIRTY_MARKER + "', '1') "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) return 0 end "
+                    + "for i = 3, #ARGV, 2 do "
+                    + "local value = tonumber(redis.call('hget', KEYS[1], ARGV[i])) "
+                    + "local bit = tonumber(ARGV[i + 1]) "
+                    + "local has = math.floor(value / bit) % 2 == 1 "
+                    + "if ARGV[1] == '1' and not has then redis.call('hset', KEYS[1], ARGV[i], string.format('%.0f', value + bit)) "
+                    + "elseif ARGV[1] == '0' and has then redis.call('hset', KEYS[1], ARGV[i], string.format('%.0f', value - bit)) end "
+                    + "end return 1", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final UserProviderCacheKeyBuilder cacheKeyBuilder;
+
+    public UserTagCache(StringRedisTemplate stringRedisTemplate, UserProviderCacheKeyBuilder cacheKeyBuilder) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheKeyBuilder = cacheKeyBuilder;
+    }
+
+    @Override
+    public String buildKey(Long userId) {
+        return cacheKeyBuilder.buildTagHashKey(userId);
+    }
+
+    /**
+     * 读取用户标签
+     *
+     * @return 缓存不存在或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    @Override
+    public UserTagDTO get(Long userId) {
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        return fromValues(userId, hashOperations.multiGet(this.buildKey(userId), READ_FIELDS));
+    }
+
+    /**
+     * 在一次pipeline中批量读取用户标签，空值缓存也算作命中，值为userId为null的对象
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public BatchGetResult<Long, UserTagDTO> multiGet(Collection<Long> userIds) {
+        List<Long> userIdList = new ArrayList<>(userIds);
+        // stringRedisTemplate的key和hash字段、值都是字符串，pipeline中每条HMGET的结果都是List<String>
+        List<Object> resultList = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                HashOperations<K, String, String> hashOperations = operations.opsForHash();
+                for (Long userId : userIdList) {
+                    hashOperations.multiGet((K) buildKey(userId), READ_FIELDS);
+                }
+                return null;
+            }
+        });
+        BatchGetResult<Long, UserTagDTO> batchGetResult = new BatchGetResult<>(userIdList.size());
+        for (int i = 0; i < userIdList.size(); i++) {
+            UserTagDTO userTagDTO = fromValues(userIdList.get(i), (List<String>) resultList.get(i));
+            if (userTagDTO == null) {
+                batchGetResult.miss(userIdList.get(i));
+            } else {
+                batchGetResult.hit(userIdList.get(i), userTagDTO);
+            }
+        }
+        return batchGetResult;
+    }
+
+    /**
+     * 在一次pipeline中回填用户标签和空值缓存，已经存在的缓存不会被覆盖
+     *
+     * @param userTagDTOList     数据库中存在标签记录的用户
+     * @param notExistUserIdList 数据库中没有标签记录的userId
+     * @param expireTime         标签缓存的过期时间
+     * @param nullMarkerTtl      空值缓存的过期时间
+     */
+    @Override
+    public void putAllIfAbsent(List<UserTagDTO> userTagDTOList, List<Long> notExistUserIdList, Duration expireTime, Duration nullMarkerTtl) {
+        if (userTagDTOList.isEmpty() && notExistUserIdList.isEmpty()) {
+            return;
+        }
+        byte[] expireMillis = toBytes(expireTime.toMillis());
+        byte[] nullMarkerMillis = toBytes(nullMarkerTtl.toMillis());
+        stringRedisTemplate.executePipelined(new RedisCallback<Object>() {
+            @Override
+            public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                for (UserTagDTO userTagDTO : userTagDTOList) {
+                    byte[][] keysAndArgs = new byte[2 + TAG_FIELDS.length * 4][];
+                    keysAndArgs[0] = toBytes(buildKey(userTagDTO.getUserId()));
+                    keysAndArgs[1] = expireMillis;
+                    long[] tagInfos = {valueOf(userTagDTO.getTagInfo01()), valueOf(userTagDTO.getTagInfo02()), valueOf(userTagDTO.getTagInfo03())};
+                    int index = 2;
+                    for (int i = 0; i < TAG_FIELDS.length; i++) {
+                        keysAndArgs[index++] = toBytes(TAG_FIELDS[i] + HIGH_SUFFIX);
+                        keysAndArgs[index++] = toBytes(tagInfos[i] >>> Integer.SIZE);
+                        keysAndArgs[index++] = toBytes(TAG_FIELDS[i] + LOW_SUFFIX);
+                        keysAndArgs[index++] = toBytes(tagInfos[i] & LOW_MASK);
+                    }
+                    connection.scriptingCommands().eval(PUT_IF_ABSENT_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs);
+                }
+                for (Long userId : notExistUserIdList) {
+                    connection.scriptingCommands().eval(PUT_IF_ABSENT_SCRIPT, ReturnType.INTEGER, 1,
+                            toBytes(buildKey(userId)), nullMarkerMillis, toBytes(NULL_MARKER), toBytes("1"));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 在缓存中原地设置或取消标签，缓存不存在时写入短期的脏标记，等待下次读取时回源数据库
+     *
+     * @param fieldIndex 标签字段的下标
+     * @param tag        标签值
+     * @param set        true表示设置标签，false表示取消标签
+     * @return 缓存是否存在并且完成了修改
+     */
+    @Override
+    public boolean updateTag(Long userId, int fieldIndex, long tag, boolean set) {
+        String tagField = TAG_FIELDS[fieldIndex];
+        List<String> args = new ArrayList<>();
+        args.add(set ? "1" : "0");
+        args.add(String.valueOf(DIRTY_MARKER_TTL.toMillis()));
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if ((tag & (1L << bit)) == 0) {
+                continue;
+            }
+            if (bit < Integer.SIZE) {
+                args.add(tagField + LOW_SUFFIX);
+                args.add(String.valueOf(1L << bit));
+            } else {
+                args.add(tagField + HIGH_SUFFIX);
+                args.add(String.valueOf(1L << (bit - Integer.SIZE)));
+            }
+        }
+        if (args.size() == 2) {
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(UPDATE_TAG_SCRIPT, Collections.singletonList(this.buildKey(userId)), args.toArray());
+        return result != null && result == 1;
+    }
+
+    /**
+     * 把HMGET的结果转换为用户标签
+     *
+     * @return 缓存不存在或者是脏标记时返回null，空值缓存返回userId为null的对象
+     */
+    static UserTagDTO fromValues(Long userId, List<String> values) {
+        if (values == null || values.stream().allMatch(value -> value == null)) {
+            return null;
+        }
+        int markerIndex = TAG_FIELDS.length * 2;
+        if (values.get(markerIndex + 1) != null) {
+            return null;
+        }
+        UserTagDTO userTagDTO = new UserTagDTO();
+        if (values.get(markerIndex) != null) {
+            return userTagDTO;
+        }
+        userTagDTO.setUserId(userId);
+        userTagDTO.setTagInfo01(toTagInfo(values.get(0), values.get(1)));
+        userTagDTO.setTagInfo02(toTagInfo(values.get(2), values.get(3)));
+        userTagDTO.setTagInfo03(toTagInfo(values.get(4), values.get(5)));
+        return userTagDTO;
+    }
+
+    private static long toTagInfo(String high, String low) {
+        long highValue = high == null ? 0 : Long.parseLong(high);
+        long lowValue = low == null ? 0 : Long.parseLong(low);
+        return (highValue << Integer.SIZE) | lowValue;
+    }
+
+    private static long valueOf(Long tagInfo) {
+        return tagInfo == null ? 0 : tagInfo;
+    }
+
+    private static byte[] toBytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
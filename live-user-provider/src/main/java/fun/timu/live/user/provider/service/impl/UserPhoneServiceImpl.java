@@ -5,9 +5,11 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import fun.timu.live.common.interfaces.enums.CommonStatusEum;
 import fun.timu.live.common.interfaces.utils.ConvertBeanUtils;
 import fun.timu.live.common.interfaces.utils.DESUtils;
+import fun.timu.live.framework.redis.starter.hotkey.HotKeyLocalCache;
 import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.framework.redis.starter.loader.CacheSingleFlightLoader;
+import fun.timu.live.id.generate.client.IdPrefetchCache;
 import fun.timu.live.id.generate.enums.IdTypeEnum;
-import fun.timu.live.id.generate.interfaces.IdGenerateRpc;
 import fun.timu.live.user.dto.UserDTO;
 import fun.timu.live.user.dto.UserLoginDTO;
 import fun.timu.live.user.dto.UserPhoneDTO;
@@ -17,7 +19,6 @@ import fun.timu.live.user.provider.service.IUserPhoneService;
 import fun.timu.live.user.provider.service.IUserService;
 import jakarta.annotation.Resource;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.dubbo.config.annotation.DubboReference;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -25,17 +26,20 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Service
 public class UserPhoneServiceImpl implements IUserPhoneService {
     private final IUserPhoneMapper userPhoneMapper;
     private final IUserService userService;
     private final UserProviderCacheKeyBuilder cacheKeyBuilder;
-    @DubboReference
-    private IdGenerateRpc idGenerateRpc;
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private IdPrefetchCache idPrefetchCache;
+    @Resource(name = "userPhoneDTORedisTemplate")
+    private RedisTemplate<String, UserPhoneDTO> redisTemplate;
+    @Resource
+    private CacheSingleFlightLoader cacheSingleFlightLoader;
+    @Resource
+    private HotKeyLocalCache hotKeyLocalCache;
 
     public UserPhoneServiceImpl(IUserPhoneMapper userPhoneMapper, IUserService userService, UserProviderCacheKeyBuilder cacheKeyBuilder) {
         this.userPhoneMapper = userPhoneMapper;
@@ -79,8 +83,8 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
      * @return UserLoginDTO 包含用户登录信息的对象
      */
     private UserLoginDTO registerAndLogin(String phone) {
-        // 生成用户ID
-        Long userId = idGenerateRpc.getUnSeqId(IdTypeEnum.USER_ID.getCode());
+        // 生成用户ID，优先从本地预取的id中获取
+        Long userId = idPrefetchCache.getUnSeqId(IdTypeEnum.USER_ID);
 
         // 创建用户基本信息并插入数据库
         UserDTO userDTO = new UserDTO();
@@ -96,7 +100,9 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
         userPhoneMapper.insert(userPhonePO);
 
         // 删除缓存中的用户手机号信息，确保数据一致性
-        redisTemplate.delete(cacheKeyBuilder.buildUserPhoneObjKey(phone));
+        String phoneObjKey = cacheKeyBuilder.buildUserPhoneObjKey(phone);
+        redisTemplate.delete(phoneObjKey);
+        hotKeyLocalCache.invalidate(phoneObjKey);
 
         // 返回用户登录成功信息
         return UserLoginDTO.loginSuccess(userId);
@@ -121,8 +127,8 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
         }
         // 构建Redis缓存的键
         String redisKey = cacheKeyBuilder.buildUserPhoneObjKey(phone);
-        // 尝试从Redis缓存中获取用户信息
-        UserPhoneDTO userPhoneDTO = (UserPhoneDTO) redisTemplate.opsForValue().get(redisKey);
+        // 尝试从Redis缓存中获取用户信息，热点手机号优先从本地缓存中获取
+        UserPhoneDTO userPhoneDTO = hotKeyLocalCache.get(redisKey, () -> redisTemplate.opsForValue().get(redisKey));
         // 如果缓存中存在用户信息
         if (userPhoneDTO != null) {
             // 属于空值缓存对象
@@ -131,8 +137,26 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
             }
             return userPhoneDTO;
         }
-        // 如果缓存中不存在用户信息，则从数据库中查询
-        userPhoneDTO = this.queryByPhoneFromDB(phone);
+        // 如果缓存中不存在用户信息，则从数据库中查询，同一个手机号的并发查询只会有一个回源数据库
+        userPhoneDTO = cacheSingleFlightLoader.load(redisKey, () -> redisTemplate.opsForValue().get(redisKey),
+                () -> this.loadByPhoneToRedis(phone, redisKey));
+        // 空值缓存对象表示手机号未注册
+        if (userPhoneDTO.getUserId() == null) {
+            return null;
+        }
+        return userPhoneDTO;
+    }
+
+    /**
+     * 从数据库中查询手机号对应的用户信息并回填缓存
+     * 数据库中不存在时回填一个空的UserPhoneDTO对象，以避免缓存击穿
+     *
+     * @param phone    电话号码
+     * @param redisKey Redis缓存的键
+     * @return 用户信息对象，未找到时返回空值缓存对象
+     */
+    private UserPhoneDTO loadByPhoneToRedis(String phone, String redisKey) {
+        UserPhoneDTO userPhoneDTO = this.queryByPhoneFromDB(phone);
         // 如果数据库中查询到用户信息
         if (userPhoneDTO != null) {
             // 对电话号码进行解密
@@ -145,7 +169,7 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
         userPhoneDTO = new UserPhoneDTO();
         // 将空的UserPhoneDTO对象存入缓存，以避免缓存击穿，并设置较短的过期时间
         redisTemplate.opsForValue().set(redisKey, userPhoneDTO, 5, TimeUnit.MINUTES);
-        return null;
+        return userPhoneDTO;
     }
 
     /**
@@ -166,15 +190,18 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
         // 构建缓存键
         String redisKey = cacheKeyBuilder.buildUserPhoneListKey(userId);
         // 从缓存中获取用户电话信息列表
-        List<Object> userPhoneList = redisTemplate.opsForList().range(redisKey, 0, -1);
+        List<UserPhoneDTO> userPhoneList = redisTemplate.opsForList().range(redisKey, 0, -1);
         // 检查缓存中是否有数据
         if (!CollectionUtils.isEmpty(userPhoneList)) {
-            // 证明是空值缓存
-            if (((UserPhoneDTO) userPhoneList.get(0)).getUserId() == null) {
+            // 缓存的数据与当前的类结构不兼容时读取结果为null，删除后重新加载
+            if (userPhoneList.contains(null)) {
+                redisTemplate.delete(redisKey);
+            } else if (userPhoneList.get(0).getUserId() == null) {
+                // 证明是空值缓存
                 return Collections.emptyList();
+            } else {
+                return userPhoneList;
             }
-            // 将缓存中的数据转换为UserPhoneDTO列表并返回
-            return userPhoneList.stream().map(x -> (UserPhoneDTO) x).collect(Collectors.toList());
         }
         // 从数据库中查询用户电话信息
         List<UserPhoneDTO> userPhoneDTOS = this.queryByUserIdFromDB(userId);
@@ -183,7 +210,7 @@ public class UserPhoneServiceImpl implements IUserPhoneService {
             // 解密电话号码
             userPhoneDTOS.stream().forEach(x -> x.setPhone(DESUtils.decrypt(x.getPhone())));
             // 将查询结果缓存，并设置过期时间
-            redisTemplate.opsForList().leftPushAll(redisKey, userPhoneDTOS.toArray());
+            redisTemplate.opsForList().leftPushAll(redisKey, userPhoneDTOS);
             redisTemplate.expire(redisKey, 30, TimeUnit.MINUTES);
             return userPhoneDTOS;
         }
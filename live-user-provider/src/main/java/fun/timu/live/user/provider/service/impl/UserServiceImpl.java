@@ -4,57 +4,101 @@ import com.alibaba.fastjson.JSON;
 import com.google.common.collect.Maps;
 import fun.timu.live.common.interfaces.topic.UserProviderTopicNames;
 import fun.timu.live.common.interfaces.utils.ConvertBeanUtils;
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.framework.redis.starter.batch.RedisBatchReader;
+import fun.timu.live.framework.redis.starter.hotkey.HotKeyLocalCache;
 import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.framework.redis.starter.loader.CacheSingleFlightLoader;
 import fun.timu.live.user.constants.CacheAsyncDeleteCode;
+import fun.timu.live.user.dto.UserBriefDTO;
 import fun.timu.live.user.dto.UserCacheAsyncDeleteDTO;
 import fun.timu.live.user.dto.UserDTO;
 import fun.timu.live.user.provider.dao.mapper.IUserMapper;
 import fun.timu.live.user.provider.dao.po.UserPO;
+import fun.timu.live.user.provider.config.UserBloomFilterProperties;
+import fun.timu.live.user.provider.config.UserInfoCacheProperties;
+import fun.timu.live.user.provider.service.cache.UserIdBloomFilter;
+import fun.timu.live.user.provider.service.cache.UserInfoHashCache;
+import fun.timu.live.user.provider.service.cache.UserInfoLocalCache;
 import fun.timu.live.user.provider.service.IUserService;
+import fun.timu.live.user.provider.service.loader.UserInfoBatchLoader;
+import fun.timu.live.user.provider.service.writebehind.UserWriteBehindBuffer;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.client.producer.MQProducer;
 import org.apache.rocketmq.common.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataAccessException;
-import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Service
 public class UserServiceImpl implements IUserService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserServiceImpl.class);
+
     private final IUserMapper userMapper;
 
-    @Resource
+    @Resource(name = "userDTORedisTemplate")
     private RedisTemplate<String, UserDTO> redisTemplate;
 
     @Resource
     private UserProviderCacheKeyBuilder cacheKeyBuilder;
 
+    @Resource
+    private CacheSingleFlightLoader cacheSingleFlightLoader;
+
+    @Resource
+    private RedisBatchReader redisBatchReader;
+
+    @Resource
+    private HotKeyLocalCache hotKeyLocalCache;
+
     private final MQProducer mqProducer;
 
+    private final UserInfoLocalCache userInfoLocalCache;
+
+    private final UserInfoBatchLoader userInfoBatchLoader;
+
+    private final UserIdBloomFilter userIdBloomFilter;
+
+    @Resource
+    private UserBloomFilterProperties userBloomFilterProperties;
+
+    @Resource
+    private UserInfoCacheProperties userInfoCacheProperties;
+
+    @Resource
+    private UserInfoHashCache userInfoHashCache;
+
+    @Resource
+    private UserWriteBehindBuffer userWriteBehindBuffer;
+
     @Autowired
-    public UserServiceImpl(IUserMapper userMapper, MQProducer mqProducer) {
+    public UserServiceImpl(IUserMapper userMapper, MQProducer mqProducer, UserInfoLocalCache userInfoLocalCache,
+                           UserInfoBatchLoader userInfoBatchLoader, UserIdBloomFilter userIdBloomFilter) {
         this.userMapper = userMapper;
         this.mqProducer = mqProducer;
+        this.userInfoLocalCache = userInfoLocalCache;
+        this.userInfoBatchLoader = userInfoBatchLoader;
+        this.userIdBloomFilter = userIdBloomFilter;
     }
 
 
     /**
      * 根据用户ID获取用户信息
-     * 首先尝试从Redis缓存中获取用户信息，如果未命中，则从数据库中查询
-     * 并将结果缓存到Redis中，以提高后续相同查询的性能
+     * 依次查询本地缓存、Redis缓存和数据库，查到后回填上一级缓存，以提高后续相同查询的性能
+     * 缓存未命中时同一个用户的并发查询只会有一个回源数据库，其他请求共享加载结果；
+     * 布隆过滤器判断不存在的userId只跳过数据库，仍然读取缓存，其他节点刚注册、广播消息还没有到达的用户可以从注册时写入的缓存中读到
      *
      * @param userId 用户ID，用于查询用户信息
      * @return UserDTO 如果找到用户信息，则返回UserDTO对象，否则返回null
@@ -64,18 +108,70 @@ public class UserServiceImpl implements IUserService {
         if (userId == null) {
             return null;
         }
-        String key = cacheKeyBuilder.buildUserInfoKey(userId);
-        UserDTO userDTO = redisTemplate.opsForValue().get(key);
+        UserDTO userDTO = userInfoLocalCache.get(userId);
         if (userDTO != null) {
             return userDTO;
         }
-        userDTO = ConvertBeanUtils.convert(userMapper.selectById(userId), UserDTO.class);
-        if (userDTO != null) {
-            redisTemplate.opsForValue().set(key, userDTO, 30, TimeUnit.MINUTES);
+        boolean mightExist = userIdBloomFilter.mightExist(userId);
+        userDTO = userInfoCacheProperties.isHashMode() ? this.getFromHash(userId, mightExist) : this.getFromValue(userId, mightExist);
+        // 缓存未命中并且跳过了数据库，或者属于空值缓存对象
+        if (userDTO == null || userDTO.getUserId() == null) {
+            return null;
         }
+        userInfoLocalCache.put(userId, userDTO);
         return userDTO;
     }
 
+    /**
+     * 从以完整对象保存的redis缓存中读取用户信息，未命中时回源数据库
+     *
+     * @param mightExist 布隆过滤器的判断结果，为false时缓存未命中不回源数据库
+     * @return 用户不存在时返回空值缓存对象，跳过数据库时返回null
+     */
+    private UserDTO getFromValue(Long userId, boolean mightExist) {
+        String key = cacheKeyBuilder.buildUserInfoKey(userId);
+        UserDTO userDTO = hotKeyLocalCache.get(key, () -> redisTemplate.opsForValue().get(key));
+        userInfoLocalCache.recordL2(userDTO != null);
+        if (userDTO != null || !mightExist) {
+            return userDTO;
+        }
+        return cacheSingleFlightLoader.load(key, () -> redisTemplate.opsForValue().get(key), () -> {
+            UserDTO dbUserDTO = ConvertBeanUtils.convert(userMapper.selectById(userId), UserDTO.class);
+            if (dbUserDTO != null) {
+                redisTemplate.opsForValue().set(key, dbUserDTO, 30, TimeUnit.MINUTES);
+                return dbUserDTO;
+            }
+            // 布隆过滤器误判或者还没有构建完成时，不存在的userId使用较短时间的空值缓存
+            dbUserDTO = new UserDTO();
+            redisTemplate.opsForValue().set(key, dbUserDTO, userBloomFilterProperties.getNullMarkerTtl().toMillis(), TimeUnit.MILLISECONDS);
+            return dbUserDTO;
+        });
+    }
+
+    /**
+     * 从以hash保存的redis缓存中读取用户信息，未命中时回源数据库
+     *
+     * @param mightExist 布隆过滤器的判断结果，为false时缓存未命中不回源数据库
+     * @return 用户不存在时返回空值缓存对象，跳过数据库时返回null
+     */
+    private UserDTO getFromHash(Long userId, boolean mightExist) {
+        String key = userInfoHashCache.buildKey(userId);
+        UserDTO userDTO = hotKeyLocalCache.get(key, () -> userInfoHashCache.get(userId));
+        userInfoLocalCache.recordL2(userDTO != null);
+        if (userDTO != null || !mightExist) {
+            return userDTO;
+        }
+        return cacheSingleFlightLoader.load(key, () -> userInfoHashCache.get(userId), () -> {
+            UserDTO dbUserDTO = ConvertBeanUtils.convert(userMapper.selectById(userId), UserDTO.class);
+            if (dbUserDTO != null) {
+                userInfoHashCache.putIfAbsent(dbUserDTO, TimeUnit.MINUTES.toSeconds(30));
+                return dbUserDTO;
+            }
+            userInfoHashCache.putNullMarkerIfAbsent(userId, userBloomFilterProperties.getNullMarkerTtl());
+            return new UserDTO();
+        });
+    }
+
     /**
      * 更新用户信息的方法
      *
@@ -88,13 +184,33 @@ public class UserServiceImpl implements IUserService {
         if (userDTO == null || userDTO.getUserId() == null) {
             return false;
         }
+        // 开启写缓冲时修改写入本地日志和缓冲区后直接返回，由后台线程合并后批量写入数据库并更新缓存
+        if (userWriteBehindBuffer.submit(userDTO)) {
+            if (userInfoCacheProperties.isHashMode()) {
+                userInfoHashCache.updateFields(userDTO);
+            } else {
+                // 值模式下无法只修改部分字段，先删除缓存，批量写入数据库之后还会再删除一次
+                redisTemplate.delete(cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId()));
+            }
+            userInfoLocalCache.invalidate(userDTO.getUserId());
+            this.invalidateHotKey(userDTO.getUserId());
+            return true;
+        }
         // 将用户DTO转换为用户PO并更新数据库中的用户信息
         int updateStatus = userMapper.updateById(ConvertBeanUtils.convert(userDTO, UserPO.class));
         // 如果数据库更新操作成功（更新状态大于-1），则进行缓存删除操作
         if (updateStatus > -1) {
-            // 构建缓存键并删除Redis中的用户信息缓存
-            String key = cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId());
-            redisTemplate.delete(key);
+            if (userInfoCacheProperties.isHashMode()) {
+                // hash模式下只写入变化的字段，缓存不存在时写入短期的脏标记，避免并发读取时把旧数据回填到缓存
+                userInfoHashCache.updateFields(userDTO);
+            } else {
+                // 构建缓存键并删除Redis中的用户信息缓存
+                String key = cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId());
+                redisTemplate.delete(key);
+            }
+            // 当前节点的本地缓存立即淘汰，其他节点在收到下面的延迟消息后淘汰
+            userInfoLocalCache.invalidate(userDTO.getUserId());
+            this.invalidateHotKey(userDTO.getUserId());
             // 准备异步删除缓存的消息体
             UserCacheAsyncDeleteDTO userCacheAsyncDeleteDTO = new UserCacheAsyncDeleteDTO();
             userCacheAsyncDeleteDTO.setCode(CacheAsyncDeleteCode.USER_INFO_DELETE.getCode());
@@ -133,84 +249,151 @@ public class UserServiceImpl implements IUserService {
         // 转换用户DTO为用户PO并调用Mapper方法插入数据库
         userMapper.insert(ConvertBeanUtils.convert(userDTO, UserPO.class));
 
+        // 新用户加入当前节点的布隆过滤器，并用新用户的信息覆盖可能存在的空值缓存
+        userIdBloomFilter.add(userDTO.getUserId());
+        this.cacheRegisteredUser(userDTO);
+        this.invalidateHotKey(userDTO.getUserId());
+        // 通过广播消息通知其他节点加入布隆过滤器，发送失败时抛出运行时异常，不能让注册静默成功
+        Map<String, Object> jsonParam = new HashMap<>();
+        jsonParam.put("userId", userDTO.getUserId());
+        Message message = new Message();
+        message.setTopic(UserProviderTopicNames.USER_REGISTER_TOPIC);
+        message.setBody(JSON.toJSONString(jsonParam).getBytes());
+        try {
+            mqProducer.send(message);
+        } catch (Exception e) {
+            LOGGER.error("[insertOne] send user register message is error,userId is {}", userDTO.getUserId(), e);
+            throw new RuntimeException(e);
+        }
+
         // 插入成功后返回true
         return true;
     }
 
+    /**
+     * 把新注册的用户写入redis缓存
+     * 其他节点的布隆过滤器在收到广播消息之前会判断该用户不存在，只能从缓存中读到，
+     * 因此缓存至少保留到所有节点都完成了下一次定时重建
+     */
+    private void cacheRegisteredUser(UserDTO userDTO) {
+        long expireSeconds = Math.max(TimeUnit.MINUTES.toSeconds(30), userBloomFilterProperties.getRebuildInterval().toSeconds() * 2);
+        if (userInfoCacheProperties.isHashMode()) {
+            userInfoHashCache.delete(userDTO.getUserId());
+            userInfoHashCache.putIfAbsent(userDTO, expireSeconds);
+        } else {
+            redisTemplate.opsForValue().set(cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId()), userDTO, expireSeconds, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * 批量查询用户信息
+     * 先从Redis中按位置批量获取，未命中的部分交给批量加载器按照分表合并查询数据库并回填Redis，
+     * 布隆过滤器判断不存在的userId只跳过数据库
      *
      * @param userIdList 用户ID列表
      * @return 返回一个映射，键为用户ID，值为用户信息DTO
      */
     @Override
     public Map<Long, UserDTO> batchQueryUserInfo(List<Long> userIdList) {
-        // 判断用户ID列表是否为空，如果为空则返回空映射
-        if (CollectionUtils.isEmpty(userIdList)) {
+        Set<Long> userIdSet = this.filterUserIds(userIdList);
+        if (userIdSet.isEmpty()) {
             return Maps.newHashMap();
         }
 
-        // 过滤用户ID列表，仅保留ID大于10000的用户
-        userIdList = userIdList.stream().filter(id -> id > 10000).collect(Collectors.toList());
-        // 再次检查过滤后的用户ID列表是否为空，如果为空则返回空映射
-        if (CollectionUtils.isEmpty(userIdList)) {
-            return Maps.newHashMap();
+        // 从Redis中批量获取用户信息，结果中直接区分命中和未命中的用户
+        BatchGetResult<Long, UserDTO> batchGetResult = userInfoCacheProperties.isHashMode()
+                ? userInfoHashCache.multiGet(userIdSet)
+                : redisBatchReader.multiGet(redisTemplate, userIdSet, cacheKeyBuilder::buildUserInfoKey);
+        Map<Long, UserDTO> userDTOMap = new HashMap<>(batchGetResult.getHits());
+        // 去除空值缓存对象
+        userDTOMap.values().removeIf(userDTO -> userDTO.getUserId() == null);
+        if (batchGetResult.isAllHit()) {
+            return userDTOMap;
         }
 
-        // redis
-        // 根据用户ID列表生成对应的Redis键列表
-        List<String> keyList = new ArrayList<>();
-        userIdList.forEach(userId -> {
-            keyList.add(cacheKeyBuilder.buildUserInfoKey(userId));
-        });
+        // 未命中的用户从数据库中加载，并回填Redis缓存
+        for (UserDTO userDTO : userInfoBatchLoader.loadAndCache(this.filterMightExist(batchGetResult.getMisses()))) {
+            userDTOMap.put(userDTO.getUserId(), userDTO);
+        }
+        return userDTOMap;
+    }
 
-        // 从Redis中批量获取用户信息
-        List<UserDTO> userDTOList = redisTemplate.opsForValue().multiGet(keyList).stream().filter(x -> x != null).collect(Collectors.toList());
-        // 如果从Redis中获取的用户信息完整且与用户ID列表大小一致，则直接返回用户信息映射
-        if (!CollectionUtils.isEmpty(userDTOList) && userDTOList.size() == userIdList.size()) {
-            return userDTOList.stream().collect(Collectors.toMap(UserDTO::getUserId, x -> x));
+    /**
+     * 批量查询用户的简要信息
+     * hash模式下通过HMGET只读取昵称和头像字段，未命中的用户从数据库中加载完整信息并回填缓存；
+     * 其他模式下直接使用完整的用户信息转换
+     *
+     * @param userIdList 用户ID列表
+     * @return 返回一个映射，键为用户ID，值为用户简要信息
+     */
+    @Override
+    public Map<Long, UserBriefDTO> batchQueryUserBrief(List<Long> userIdList) {
+        if (!userInfoCacheProperties.isHashMode()) {
+            Map<Long, UserBriefDTO> userBriefDTOMap = new HashMap<>();
+            for (UserDTO userDTO : this.batchQueryUserInfo(userIdList).values()) {
+                userBriefDTOMap.put(userDTO.getUserId(), toBrief(userDTO));
+            }
+            return userBriefDTOMap;
+        }
+        Set<Long> userIdSet = this.filterUserIds(userIdList);
+        if (userIdSet.isEmpty()) {
+            return Maps.newHashMap();
         }
+        BatchGetResult<Long, UserBriefDTO> batchGetResult = userInfoHashCache.multiGetBrief(userIdSet);
+        Map<Long, UserBriefDTO> userBriefDTOMap = new HashMap<>(batchGetResult.getHits());
+        // 去除空值缓存对象
+        userBriefDTOMap.values().removeIf(userBriefDTO -> userBriefDTO.getUserId() == null);
+        if (batchGetResult.isAllHit()) {
+            return userBriefDTOMap;
+        }
+        for (UserDTO userDTO : userInfoBatchLoader.loadAndCache(this.filterMightExist(batchGetResult.getMisses()))) {
+            userBriefDTOMap.put(userDTO.getUserId(), toBrief(userDTO));
+        }
+        return userBriefDTOMap;
+    }
 
-        // 获取Redis中已缓存的用户ID列表
-        List<Long> userIdInCacheList = userDTOList.stream().map(UserDTO::getUserId).collect(Collectors.toList());
-        // 计算需要从数据库查询的用户ID列表
-        List<Long> userIdNotInCacheList = userIdList.stream().filter(x -> !userIdInCacheList.contains(x)).collect(Collectors.toList());
+    /**
+     * 淘汰当前节点热点key本地缓存中的用户信息，其他节点在热点key的本地缓存过期后读到新的值
+     */
+    private void invalidateHotKey(Long userId) {
+        hotKeyLocalCache.invalidate(cacheKeyBuilder.buildUserInfoKey(userId));
+        hotKeyLocalCache.invalidate(userInfoHashCache.buildKey(userId));
+    }
 
-        // 根据用户ID的哈希值对用户ID进行分组，以实现分片查询
-        Map<Long, List<Long>> userIdMap = userIdNotInCacheList.stream().collect(Collectors.groupingBy(userId -> userId % 100));
-        // 使用多线程并行查询数据库中未缓存的用户信息
-        List<UserDTO> dbQueryResult = new CopyOnWriteArrayList<>();
-        userIdMap.values().parallelStream().forEach(queryUserIdList -> {
-            dbQueryResult.addAll(ConvertBeanUtils.convertList(userMapper.selectBatchIds(queryUserIdList), UserDTO.class));
-        });
+    /**
+     * 过滤用户ID列表，仅保留ID大于10000的用户，同时去除重复的用户ID
+     */
+    private Set<Long> filterUserIds(List<Long> userIdList) {
+        if (CollectionUtils.isEmpty(userIdList)) {
+            return new LinkedHashSet<>();
+        }
+        Set<Long> userIdSet = new LinkedHashSet<>(userIdList.size() * 2);
+        for (Long userId : userIdList) {
+            if (userId != null && userId > 10000) {
+                userIdSet.add(userId);
+            }
+        }
+        return userIdSet;
+    }
 
-        // Redis 补偿
-        // 如果从数据库查询到了用户信息，则更新Redis缓存，并设置过期时间
-        if (!CollectionUtils.isEmpty(dbQueryResult)) {
-            Map<String, UserDTO> saveCacheMap = dbQueryResult.stream().collect(Collectors.toMap(userDto -> cacheKeyBuilder.buildUserInfoKey(userDto.getUserId()), x -> x));
-            redisTemplate.opsForValue().multiSet(saveCacheMap);
-
-            // 对命令执行批量过期设置操作
-            redisTemplate.executePipelined(new SessionCallback<Object>() {
-                @Override
-                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
-                    for (String redisKey : saveCacheMap.keySet()) {
-                        operations.expire((K) redisKey, createRandomTime(), TimeUnit.SECONDS);
-                    }
-                    return null;
-                }
-            });
-
-            // 合并从Redis和数据库查询到的用户信息
-            userDTOList.addAll(dbQueryResult);
-        }
-
-        // 返回最终的用户信息映射
-        return userDTOList.stream().collect(Collectors.toMap(UserDTO::getUserId, x -> x));
+    /**
+     * 去除布隆过滤器判断一定不存在的用户，只用于决定是否回源数据库
+     */
+    private List<Long> filterMightExist(List<Long> userIds) {
+        List<Long> userIdList = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            if (userIdBloomFilter.mightExist(userId)) {
+                userIdList.add(userId);
+            }
+        }
+        return userIdList;
     }
 
-    private int createRandomTime() {
-        int randomNumSecond = ThreadLocalRandom.current().nextInt(10000);
-        return randomNumSecond + 30 * 60;
+    private static UserBriefDTO toBrief(UserDTO userDTO) {
+        UserBriefDTO userBriefDTO = new UserBriefDTO();
+        userBriefDTO.setUserId(userDTO.getUserId());
+        userBriefDTO.setNickName(userDTO.getNickName());
+        userBriefDTO.setAvatar(userDTO.getAvatar());
+        return userBriefDTO;
     }
 }
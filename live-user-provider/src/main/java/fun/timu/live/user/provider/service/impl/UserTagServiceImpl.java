@@ -3,39 +3,70 @@ package fun.timu.live.user.provider.service.impl;
 import com.alibaba.fastjson.JSON;
 import fun.timu.live.common.interfaces.topic.UserProviderTopicNames;
 import fun.timu.live.common.interfaces.utils.ConvertBeanUtils;
-import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
-import fun.timu.live.user.constants.CacheAsyncDeleteCode;
+import fun.timu.live.framework.redis.starter.batch.BatchGetResult;
+import fun.timu.live.framework.redis.starter.hotkey.HotKeyLocalCache;
+import fun.timu.live.framework.redis.starter.loader.CacheSingleFlightLoader;
 import fun.timu.live.user.constants.UserTagFieldNameConstants;
 import fun.timu.live.user.constants.UserTagsEnum;
-import fun.timu.live.user.dto.UserCacheAsyncDeleteDTO;
 import fun.timu.live.user.dto.UserTagDTO;
+import fun.timu.live.user.dto.UserTagDefineDTO;
+import fun.timu.live.user.dto.UserTagQueryDTO;
+import fun.timu.live.user.dto.UserTagQueryResultDTO;
 import fun.timu.live.user.provider.dao.mapper.IUserTagMapper;
 import fun.timu.live.user.provider.dao.po.UserTagPO;
 import fun.timu.live.user.provider.service.IUserTagService;
-import fun.timu.live.user.utils.TagInfoUtils;
+import fun.timu.live.user.provider.config.UserTagCacheProperties;
+import fun.timu.live.user.provider.service.cache.IUserTagCache;
+import fun.timu.live.user.provider.service.cache.UserTagBitCache;
+import fun.timu.live.user.provider.service.cache.UserTagCache;
+import fun.timu.live.user.provider.service.index.UserTagBitmapIndex;
+import fun.timu.live.user.provider.service.loader.UserInfoBatchLoader;
+import fun.timu.live.user.provider.service.registry.UserTagRegistry;
+import fun.timu.live.user.utils.UserTagMatcher;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.client.producer.MQProducer;
 import org.apache.rocketmq.common.message.Message;
-import org.springframework.dao.DataAccessException;
-import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.core.RedisCallback;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.RedisSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 @Service
 public class UserTagServiceImpl implements IUserTagService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserTagServiceImpl.class);
+    private static final Duration USER_TAG_CACHE_TTL = Duration.ofMinutes(30);
+    private static final Duration USER_TAG_NULL_CACHE_TTL = Duration.ofMinutes(5);
+
     private final IUserTagMapper userTagMapper;
     @Resource
-    private RedisTemplate<String, UserTagDTO> redisTemplate;
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private UserTagCache userTagHashCache;
+    @Resource
+    private UserTagBitCache userTagBitCache;
+    @Resource
+    private UserTagCacheProperties userTagCacheProperties;
+    @Resource
+    private UserTagRegistry userTagRegistry;
+    @Resource
+    private CacheSingleFlightLoader cacheSingleFlightLoader;
+    @Resource
+    private HotKeyLocalCache hotKeyLocalCache;
     @Resource
-    private UserProviderCacheKeyBuilder cacheKeyBuilder;
+    private UserTagBitmapIndex userTagBitmapIndex;
+    @Resource
+    private UserInfoBatchLoader userInfoBatchLoader;
     private final MQProducer mqProducer;
 
     public UserTagServiceImpl(IUserTagMapper userTagMapper, MQProducer mqProducer) {
@@ -45,61 +76,47 @@ public class UserTagServiceImpl implements IUserTagService {
 
     /**
      * 设置用户标签
+     * 已有标签记录的用户只需要一次条件更新；没有记录时直接插入带有标签的记录，插入时记录已经被其他请求创建则再更新一次，
+     * 整个过程不需要加锁，并发设置同一个用户的标签时不会因为抢锁失败而返回false
      *
      * @param userId       用户ID
      * @param userTagsEnum 用户标签枚举，包含标签字段名和标签值
-     * @return 如果标签设置成功返回true，否则返回false
+     * @return 如果标签设置成功返回true，标签已经存在返回false
      */
     @Override
     public boolean setTag(Long userId, UserTagsEnum userTagsEnum) {
-        // 尝试更新用户标签，如果成功则删除Redis中的缓存并返回true
-        boolean updateStatus = userTagMapper.setTag(userId, userTagsEnum.getFieldName(), userTagsEnum.getTag()) > 0;
-        if (updateStatus) {
-            deleteUserTagDTOFromRedis(userId);
-            return true;
-        }
-
-        // 使用Redis的SETNX命令尝试设置标签锁，以避免并发更新问题
-        String setNxKey = cacheKeyBuilder.buildTagLockKey(userId);
-        String setNxResult = redisTemplate.execute(new RedisCallback<String>() {
-            @Override
-            public String doInRedis(RedisConnection connection) throws DataAccessException {
-                RedisSerializer keySerializer = redisTemplate.getKeySerializer();
-                RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
-                // 执行SETNX命令，如果键不存在则设置键并设置过期时间
-                return (String) connection.execute("set", keySerializer.serialize(setNxKey), valueSerializer.serialize("-1"), "NX".getBytes(StandardCharsets.UTF_8), "EX".getBytes(StandardCharsets.UTF_8), "3".getBytes(StandardCharsets.UTF_8));
-            }
-        });
+        return this.setTag(userId, userTagRegistry.of(userTagsEnum));
+    }
 
-        // 如果SETNX命令返回"OK"，表示成功设置锁，继续后续操作
-        if (!"OK".equals(setNxResult)) {
-            return false;
-        }
+    /**
+     * 按照标签编码设置标签，内置标签和动态注册的标签使用同样的方式
+     *
+     * @param userId  用户ID
+     * @param tagCode 标签编码
+     * @return 如果标签设置成功返回true，标签已经存在或者没有注册返回false
+     */
+    @Override
+    public boolean setTagByCode(Long userId, String tagCode) {
+        UserTagDefineDTO userTagDefineDTO = userTagRegistry.get(tagCode);
+        return userTagDefineDTO != null && this.setTag(userId, userTagDefineDTO);
+    }
 
-        // 检查用户标签是否已存在，如果存在则返回false
-        UserTagPO userTagPO = userTagMapper.selectById(userId);
-        if (userTagPO != null) {
-            return false;
+    private boolean setTag(Long userId, UserTagDefineDTO userTagDefineDTO) {
+        // 字段名由注册表中的字段下标得到，不会把外部传入的字符串拼接到SQL中
+        String fieldName = UserTagFieldNameConstants.FIELD_NAMES.get(userTagDefineDTO.getFieldIndex());
+        long tag = UserTagMatcher.tagOf(userTagDefineDTO);
+        // 记录不存在时插入，存在时用或的思路设置标签位；影响行数为0说明已经有这个标签，不需要修改缓存
+        boolean updateStatus = userTagMapper.upsertTag(userId, fieldName, tag) > 0;
+        if (updateStatus) {
+            updateUserTagCache(userId, userTagDefineDTO, true);
+            notifyTagChange(userId, userTagDefineDTO, true);
         }
-
-        // 如果用户标签不存在，创建新的用户标签对象并插入数据库
-        userTagPO = new UserTagPO();
-        userTagPO.setUserId(userId);
-        userTagMapper.insert(userTagPO);
-
-        // 再次尝试更新用户标签
-        updateStatus = userTagMapper.setTag(userId, userTagsEnum.getFieldName(), userTagsEnum.getTag()) > 0;
-
-        // 删除之前设置的标签锁
-        redisTemplate.delete(setNxKey);
-
-        // 返回标签更新状态
         return updateStatus;
     }
 
     /**
      * 用于取消用户身上的某个标签
-     * 此方法首先尝试在数据库中取消用户的标签，如果取消成功，则进一步在Redis中删除相应的用户标签信息
+     * 此方法首先尝试在数据库中取消用户的标签，如果取消成功，则进一步在Redis中清除相应的标签位
      * 这是为了保持数据库和Redis中的数据一致性
      *
      * @param userId 用户ID，用于标识需要取消标签的用户
@@ -108,15 +125,34 @@ public class UserTagServiceImpl implements IUserTagService {
      */
     @Override
     public boolean cancelTag(Long userId, UserTagsEnum userTagsEnum) {
+        return this.cancelTag(userId, userTagRegistry.of(userTagsEnum));
+    }
+
+    /**
+     * 按照标签编码取消标签
+     *
+     * @param userId  用户ID
+     * @param tagCode 标签编码
+     * @return 如果标签成功取消，返回true；标签不存在或者没有注册返回false
+     */
+    @Override
+    public boolean cancelTagByCode(Long userId, String tagCode) {
+        UserTagDefineDTO userTagDefineDTO = userTagRegistry.get(tagCode);
+        return userTagDefineDTO != null && this.cancelTag(userId, userTagDefineDTO);
+    }
+
+    private boolean cancelTag(Long userId, UserTagDefineDTO userTagDefineDTO) {
         // 尝试在数据库中取消用户的标签，判断取消是否成功
-        boolean cancelStatus = userTagMapper.cancelTag(userId, userTagsEnum.getFieldName(), userTagsEnum.getTag()) > 0;
+        String fieldName = UserTagFieldNameConstants.FIELD_NAMES.get(userTagDefineDTO.getFieldIndex());
+        boolean cancelStatus = userTagMapper.cancelTag(userId, fieldName, UserTagMatcher.tagOf(userTagDefineDTO)) > 0;
         // 如果取消标签失败，直接返回false
         if (!cancelStatus) {
             return false;
         }
-        // 如果取消标签成功，则进一步在Redis中删除相应的用户标签信息，以保持数据一致性
-        deleteUserTagDTOFromRedis(userId);
-        // 标签成功取消，并且Redis中的对应信息也已删除，返回true
+        // 如果取消标签成功，则直接在Redis中清除对应的标签位，以保持数据一致性
+        updateUserTagCache(userId, userTagDefineDTO, false);
+        notifyTagChange(userId, userTagDefineDTO, false);
+        // 标签成功取消，并且Redis中的对应信息也已更新，返回true
         return true;
     }
 
@@ -129,107 +165,248 @@ public class UserTagServiceImpl implements IUserTagService {
      */
     @Override
     public boolean containTag(Long userId, UserTagsEnum userTagsEnum) {
+        return this.containTag(userId, userTagRegistry.of(userTagsEnum));
+    }
+
+    /**
+     * 按照标签编码判断用户是否包含某个标签
+     *
+     * @param userId  用户ID
+     * @param tagCode 标签编码
+     * @return 如果用户包含指定标签，则返回true；标签没有注册返回false
+     */
+    @Override
+    public boolean containTagByCode(Long userId, String tagCode) {
+        UserTagDefineDTO userTagDefineDTO = userTagRegistry.get(tagCode);
+        return userTagDefineDTO != null && this.containTag(userId, userTagDefineDTO);
+    }
+
+    private boolean containTag(Long userId, UserTagDefineDTO userTagDefineDTO) {
+        int fieldIndex = userTagDefineDTO.getFieldIndex();
+        long tag = UserTagMatcher.tagOf(userTagDefineDTO);
+        // 二进制字符串保存的缓存只需要一条BITFIELD命令，缓存不存在时再按照完整的标签信息回源
+        if (userTagCacheProperties.isBitfieldMode()) {
+            Boolean contains = userTagBitCache.contains(userId, fieldIndex, tag);
+            if (contains != null) {
+                return contains;
+            }
+        }
         // 从Redis中根据用户ID查询用户标签信息
         UserTagDTO userTagDTO = this.queryByUserIdFromRedis(userId);
-        // 如果查询结果为空，则返回false，表示不包含指定标签
-        if (userTagDTO == null) {
-            return false;
+        // 查询结果为空时不包含任何标签，标签对应的字段下标和位来自注册表，不再按照字段名比较
+        return UserTagMatcher.contains(userTagDTO, fieldIndex, tag);
+    }
+
+    /**
+     * 批量判断多个用户是否拥有多个标签
+     * 先在一次pipeline中从Redis批量获取标签信息，未命中的用户按照分表合并查询数据库并回填Redis，
+     * 再用预先计算好的标签位进行匹配
+     *
+     * @param userIdList       用户ID列表
+     * @param userTagsEnumList 需要判断的标签，最多64个
+     * @return 与userIdList一一对应，第j位为1表示该用户拥有userTagsEnumList中的第j个标签
+     */
+    @Override
+    public long[] batchContainTags(List<Long> userIdList, List<UserTagsEnum> userTagsEnumList) {
+        if (CollectionUtils.isEmpty(userIdList)) {
+            return new long[0];
+        }
+        if (CollectionUtils.isEmpty(userTagsEnumList)) {
+            return new long[userIdList.size()];
+        }
+        return this.batchMatch(userIdList, UserTagMatcher.of(userTagsEnumList));
+    }
+
+    /**
+     * 按照标签编码批量判断多个用户是否拥有多个标签，标签编码一次性从注册表换算成字段下标和位
+     *
+     * @param userIdList  用户ID列表
+     * @param tagCodeList 需要判断的标签编码，最多64个
+     * @return 与userIdList一一对应，第j位为1表示该用户拥有tagCodeList中的第j个标签
+     */
+    @Override
+    public long[] batchContainTagsByCode(List<Long> userIdList, List<String> tagCodeList) {
+        if (CollectionUtils.isEmpty(userIdList)) {
+            return new long[0];
+        }
+        if (CollectionUtils.isEmpty(tagCodeList)) {
+            return new long[userIdList.size()];
+        }
+        return this.batchMatch(userIdList, UserTagMatcher.ofDefines(userTagRegistry.getAll(tagCodeList)));
+    }
+
+    /**
+     * 注册动态标签
+     *
+     * @param tagCode 标签编码
+     * @param desc    标签描述
+     * @return 标签定义，没有空闲的位时返回null
+     */
+    @Override
+    public UserTagDefineDTO registerTag(String tagCode, String desc) {
+        return userTagRegistry.register(tagCode, desc);
+    }
+
+    @Override
+    public List<UserTagDefineDTO> listTagDefines() {
+        return userTagRegistry.list();
+    }
+
+    private long[] batchMatch(List<Long> userIdList, UserTagMatcher userTagMatcher) {
+        long[] resultArr = new long[userIdList.size()];
+        Map<Long, UserTagDTO> userTagDTOMap = this.batchQueryUserTag(userIdList);
+        for (int i = 0; i < userIdList.size(); i++) {
+            resultArr[i] = userTagMatcher.match(userTagDTOMap.get(userIdList.get(i)));
+        }
+        return resultArr;
+    }
+
+    /**
+     * 批量查询用户标签信息，数据库中没有标签记录的用户回填空值缓存
+     *
+     * @return key为userId，没有标签记录的用户不在结果中
+     */
+    private Map<Long, UserTagDTO> batchQueryUserTag(List<Long> userIdList) {
+        Set<Long> userIdSet = new LinkedHashSet<>(userIdList.size() * 2);
+        for (Long userId : userIdList) {
+            if (userId != null) {
+                userIdSet.add(userId);
+            }
         }
-        // 获取标签枚举对应的字段名，用于后续的条件判断
-        String queryFieldName = userTagsEnum.getFieldName();
-        // 需要根据标签枚举中的fieldName来识别需要匹配MySQL表中哪个字段的标签值
-        // 根据不同的字段名，调用相应的标签信息处理方法
-        if (UserTagFieldNameConstants.TAG_INFO_01.equals(queryFieldName)) {
-            return TagInfoUtils.isContain(userTagDTO.getTagInfo01(), userTagsEnum.getTag());
-        } else if (UserTagFieldNameConstants.TAG_INFO_02.equals(queryFieldName)) {
-            return TagInfoUtils.isContain(userTagDTO.getTagInfo02(), userTagsEnum.getTag());
-        } else if (UserTagFieldNameConstants.TAG_INFO_03.equals(queryFieldName)) {
-            return TagInfoUtils.isContain(userTagDTO.getTagInfo03(), userTagsEnum.getTag());
+        IUserTagCache userTagCache = this.currentTagCache();
+        BatchGetResult<Long, UserTagDTO> batchGetResult = userTagCache.multiGet(userIdSet);
+        Map<Long, UserTagDTO> userTagDTOMap = new HashMap<>(batchGetResult.getHits());
+        if (batchGetResult.isAllHit()) {
+            return userTagDTOMap;
         }
-        // 如果字段名不匹配任何已知标签字段，则返回false
-        return false;
+        List<UserTagPO> userTagPOList = userInfoBatchLoader.queryByShard(batchGetResult.getMisses(), userTagMapper::selectBatchIds);
+        List<UserTagDTO> userTagDTOList = new ArrayList<>(userTagPOList.size());
+        for (UserTagPO userTagPO : userTagPOList) {
+            UserTagDTO userTagDTO = ConvertBeanUtils.convert(userTagPO, UserTagDTO.class);
+            userTagDTOMap.put(userTagDTO.getUserId(), userTagDTO);
+            userTagDTOList.add(userTagDTO);
+        }
+        List<Long> notExistUserIdList = new ArrayList<>();
+        for (Long userId : batchGetResult.getMisses()) {
+            if (!userTagDTOMap.containsKey(userId)) {
+                notExistUserIdList.add(userId);
+            }
+        }
+        try {
+            userTagCache.putAllIfAbsent(userTagDTOList, notExistUserIdList, USER_TAG_CACHE_TTL, USER_TAG_NULL_CACHE_TTL);
+        } catch (Exception e) {
+            LOGGER.error("[batchQueryUserTag] user tag cache write back is error,size is {}", batchGetResult.getMisses().size(), e);
+        }
+        return userTagDTOMap;
     }
 
+    /**
+     * 按照标签的交集、并集和差集圈选用户，直接在标签位图索引上计算，不再扫描分表
+     *
+     * @param userTagQueryDTO 圈选条件和分页参数
+     * @return 满足条件的用户总数和当前页的userId
+     */
+    @Override
+    public UserTagQueryResultDTO queryUserIdsByTags(UserTagQueryDTO userTagQueryDTO) {
+        return userTagBitmapIndex.query(userTagQueryDTO);
+    }
 
     /**
-     * 从Redis中删除用户标签信息
-     * 此方法首先构建Redis中的标签键，然后删除该键
-     * 接着创建一个异步删除缓存的通知对象，设置其代码和参数
-     * 最后，创建一个消息对象，设置其主题和体，用于异步删除缓存
+     * 更新当前节点的标签位图索引，并通过广播消息通知其他节点更新
+     * 消息发送失败时其他节点在下次重建后才能同步；位图索引只包含内置标签
      *
-     * @param userId 用户ID，用于构建Redis键和异步删除缓存
+     * @param userId           用户ID
+     * @param userTagDefineDTO 变更的标签
+     * @param set              true为设置标签，false为取消标签
      */
-    private void deleteUserTagDTOFromRedis(Long userId) {
-        //构建Redis中的标签键
-        String redisKey = cacheKeyBuilder.buildTagKey(userId);
-        //删除Redis中的用户标签信息
-        redisTemplate.delete(redisKey);
-
-        //创建异步删除缓存的通知对象
-        UserCacheAsyncDeleteDTO userCacheAsyncDeleteDTO = new UserCacheAsyncDeleteDTO();
-        //设置异步删除缓存的通知代码
-        userCacheAsyncDeleteDTO.setCode(CacheAsyncDeleteCode.USER_TAG_DELETE.getCode());
-        //创建参数Map，用于存储用户ID
+    private void notifyTagChange(Long userId, UserTagDefineDTO userTagDefineDTO, boolean set) {
+        UserTagsEnum userTagsEnum = UserTagRegistry.builtInOf(userTagDefineDTO.getTagCode());
+        if (userTagsEnum != null) {
+            userTagBitmapIndex.update(userId, userTagsEnum, set);
+        }
         Map<String, Object> jsonParam = new HashMap<>();
         jsonParam.put("userId", userId);
-        //将参数Map转换为JSON字符串，并设置到通知对象中
-        userCacheAsyncDeleteDTO.setJson(JSON.toJSONString(jsonParam));
-
-        //创建消息对象
+        jsonParam.put("tag", userTagDefineDTO.getTagCode());
+        jsonParam.put("set", set);
         Message message = new Message();
-        //设置消息的主题
-        message.setTopic(UserProviderTopicNames.CACHE_ASYNC_DELETE_TOPIC);
-        //将通知对象转换为JSON字符串，并设置为消息的体
-        message.setBody(JSON.toJSONString(userCacheAsyncDeleteDTO).getBytes());
-        //设置消息的延迟级别，用于异步删除缓存
-        message.setDelayTimeLevel(1);
-        //发送消息，如果发生异常则抛出运行时异常
+        message.setTopic(UserProviderTopicNames.USER_TAG_CHANGE_TOPIC);
+        message.setBody(JSON.toJSONString(jsonParam).getBytes());
         try {
             mqProducer.send(message);
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            LOGGER.error("[notifyTagChange] send user tag change message is error,userId is {}", userId, e);
         }
     }
 
+    /**
+     * 在Redis中原地修改用户的标签位，并淘汰当前节点的热点本地缓存，其他节点在消费标签变更消息时淘汰
+     * 修改失败时删除缓存，等待下次读取时回源数据库
+     *
+     * @param userId           用户ID
+     * @param userTagDefineDTO 变更的标签
+     * @param set              true为设置标签，false为取消标签
+     */
+    private void updateUserTagCache(Long userId, UserTagDefineDTO userTagDefineDTO, boolean set) {
+        IUserTagCache userTagCache = this.currentTagCache();
+        String redisKey = userTagCache.buildKey(userId);
+        try {
+            userTagCache.updateTag(userId, userTagDefineDTO.getFieldIndex(), UserTagMatcher.tagOf(userTagDefineDTO), set);
+        } catch (Exception e) {
+            LOGGER.error("[updateUserTagCache] update user tag cache is error,userId is {}", userId, e);
+            stringRedisTemplate.delete(redisKey);
+        } finally {
+            hotKeyLocalCache.invalidate(redisKey);
+        }
+    }
 
     /**
      * 从Redis中查询指定用户的标签信息
      * 如果在Redis中未找到相关信息，则从数据库中查询，并将结果缓存到Redis中
+     * 同一个用户的并发查询只会有一个回源数据库，其他请求共享加载结果
      *
      * @param userId 用户ID，用于查询用户标签信息
      * @return 返回用户标签信息的DTO对象，如果没有找到则返回null
      */
     private UserTagDTO queryByUserIdFromRedis(Long userId) {
+        IUserTagCache userTagCache = this.currentTagCache();
         // 构建Redis缓存的键
-        String redisKey = cacheKeyBuilder.buildTagKey(userId);
+        String redisKey = userTagCache.buildKey(userId);
 
-        // 从Redis中获取用户标签信息
-        UserTagDTO userTagDTO = redisTemplate.opsForValue().get(redisKey);
+        // 从Redis中获取用户标签信息，热点用户优先从本地缓存中获取
+        UserTagDTO userTagDTO = hotKeyLocalCache.get(redisKey, () -> userTagCache.get(userId));
 
-        // 如果在Redis中找到了用户标签信息，则直接返回
+        // 如果在Redis中找到了用户标签信息（包括空值缓存），则直接返回
         if (userTagDTO != null) {
-            return userTagDTO;
+            return userTagDTO.getUserId() == null ? null : userTagDTO;
         }
 
         // 如果Redis中没有相关信息，则从数据库中查询用户标签信息
-        UserTagPO userTagPO = userTagMapper.selectById(userId);
+        userTagDTO = cacheSingleFlightLoader.load(redisKey, () -> userTagCache.get(userId), () -> {
+            UserTagPO userTagPO = userTagMapper.selectById(userId);
 
-        // 如果数据库中也没有找到相关信息，则返回null
-        if (userTagPO == null) {
-            return null;
-        }
+            // 如果数据库中也没有找到相关信息，则写入空值缓存
+            if (userTagPO == null) {
+                userTagCache.putAllIfAbsent(Collections.emptyList(), Collections.singletonList(userId), USER_TAG_CACHE_TTL, USER_TAG_NULL_CACHE_TTL);
+                return new UserTagDTO();
+            }
 
-        // 将数据库中的用户标签信息转换为DTO对象
-        userTagDTO = ConvertBeanUtils.convert(userTagPO, UserTagDTO.class);
+            // 将数据库中的用户标签信息转换为DTO对象
+            UserTagDTO dbUserTagDTO = ConvertBeanUtils.convert(userTagPO, UserTagDTO.class);
 
-        // 将查询到的用户标签信息缓存到Redis中
-        redisTemplate.opsForValue().set(redisKey, userTagDTO);
+            // 将查询到的用户标签信息缓存到Redis中，缓存已经被标签变更修改过时不覆盖
+            userTagCache.putAllIfAbsent(Collections.singletonList(dbUserTagDTO), Collections.emptyList(), USER_TAG_CACHE_TTL, USER_TAG_NULL_CACHE_TTL);
 
-        // 设置Redis缓存的过期时间
-        redisTemplate.expire(redisKey, 30, TimeUnit.MINUTES);
+            // 返回用户标签信息的DTO对象
+            return dbUserTagDTO;
+        });
+        return userTagDTO == null || userTagDTO.getUserId() == null ? null : userTagDTO;
+    }
 
-        // 返回用户标签信息的DTO对象
-        return userTagDTO;
+    /**
+     * 根据配置选择标签缓存的存储结构，两种结构使用不同的key，切换后需要重新预热缓存
+     */
+    private IUserTagCache currentTagCache() {
+        return userTagCacheProperties.isBitfieldMode() ? userTagBitCache : userTagHashCache;
     }
 }
 
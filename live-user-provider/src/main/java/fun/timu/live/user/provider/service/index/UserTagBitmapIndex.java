@@ -0,0 +1,321 @@
+package fun.timu.live.user.provider.service.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fun.timu.live.user.constants.UserTagFieldNameConstants;
+import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserTagQueryDTO;
+import fun.timu.live.user.dto.UserTagQueryResultDTO;
+import fun.timu.live.user.provider.config.UserTagIndexProperties;
+import fun.timu.live.user.provider.dao.mapper.IUserTagMapper;
+import fun.timu.live.user.provider.dao.po.UserTagPO;
+import fun.timu.live.user.utils.TagInfoUtils;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户标签的位图索引，每个标签维护一个压缩位图（Roaring64Bitmap），保存拥有该标签的userId
+ * <p>
+ * 启动时按照userId区间扫描所有t_user_tag分表异步构建，构建完成之前查询返回未就绪；
+ * 设置和取消标签时由修改的节点直接更新，其他节点通过广播消息更新。重建期间的修改会记录下来，在替换前重放到新的位图上
+ * <p>
+ * 稀疏的userId上做一次集合运算需要毫秒级的时间，相同条件的圈选结果缓存resultCacheTtl，翻页时不再重新计算，
+ * 索引有任何修改时清空缓存的结果
+ */
+@Component
+public class UserTagBitmapIndex implements InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserTagBitmapIndex.class);
+
+    private final UserTagIndexProperties userTagIndexProperties;
+    private final IUserTagMapper userTagMapper;
+    /**
+     * 当前生效的位图，为null时表示还没有构建完成，由lock保护
+     */
+    private Map<UserTagsEnum, Roaring64Bitmap> bitmaps;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 重建期间发生的修改，重建完成后重放
+     */
+    private volatile Queue<TagChange> rebuildChanges;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    /**
+     * 圈选结果的缓存，key为归一化后的查询条件，缓存的位图只读
+     */
+    private final Cache<List<EnumSet<UserTagsEnum>>, Roaring64Bitmap> resultCache;
+
+    public UserTagBitmapIndex(UserTagIndexProperties userTagIndexProperties, IUserTagMapper userTagMapper) {
+        this.userTagIndexProperties = userTagIndexProperties;
+        this.userTagMapper = userTagMapper;
+        this.resultCache = Caffeine.newBuilder()
+                .maximumSize(64)
+                .expireAfterWrite(userTagIndexProperties.getResultCacheTtl())
+                .build();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (userTagIndexProperties.isEnabled()) {
+            this.rebuildAsync();
+        }
+    }
+
+    /**
+     * 设置或者取消用户的标签
+     *
+     * @param set true为设置标签，false为取消标签
+     */
+    public void update(Long userId, UserTagsEnum userTagsEnum, boolean set) {
+        if (!userTagIndexProperties.isEnabled()) {
+            return;
+        }
+        Queue<TagChange> changes = rebuildChanges;
+        if (changes != null) {
+            changes.add(new TagChange(userId, userTagsEnum, set));
+        }
+        lock.writeLock().lock();
+        try {
+            if (bitmaps != null) {
+                apply(bitmaps, userId, userTagsEnum, set);
+            }
+            resultCache.invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按照标签的交集、并集和差集圈选用户
+     */
+    public UserTagQueryResultDTO query(UserTagQueryDTO userTagQueryDTO) {
+        UserTagQueryResultDTO resultDTO = new UserTagQueryResultDTO();
+        resultDTO.setUserIdList(Collections.emptyList());
+        if (userTagQueryDTO == null || (CollectionUtils.isEmpty(userTagQueryDTO.getAllTags()) && CollectionUtils.isEmpty(userTagQueryDTO.getAnyTags()))) {
+            resultDTO.setReady(bitmaps != null);
+            return resultDTO;
+        }
+        Roaring64Bitmap result = this.queryBitmap(userTagQueryDTO);
+        if (result == null) {
+            return resultDTO;
+        }
+        resultDTO.setReady(true);
+        resultDTO.setTotal(result.getLongCardinality());
+        int pageSize = Math.min(userTagQueryDTO.getPageSize(), userTagIndexProperties.getMaxPageSize());
+        if (pageSize <= 0) {
+            return resultDTO;
+        }
+        PeekableLongIterator iterator = userTagQueryDTO.getCursor() == null
+                ? result.getLongIterator() : result.getLongIteratorFrom(userTagQueryDTO.getCursor() + 1);
+        List<Long> userIdList = new ArrayList<>(pageSize);
+        while (iterator.hasNext() && userIdList.size() < pageSize) {
+            userIdList.add(iterator.next());
+        }
+        resultDTO.setUserIdList(userIdList);
+        resultDTO.setNextCursor(iterator.hasNext() ? userIdList.get(userIdList.size() - 1) : null);
+        return resultDTO;
+    }
+
+    /**
+     * 优先使用缓存的结果，翻页时各页来自同一个结果
+     *
+     * @return 索引还没有构建完成时返回null
+     */
+    private Roaring64Bitmap queryBitmap(UserTagQueryDTO userTagQueryDTO) {
+        boolean cacheable = !userTagIndexProperties.getResultCacheTtl().isZero();
+        List<EnumSet<UserTagsEnum>> cacheKey = List.of(toSet(userTagQueryDTO.getAllTags()),
+                toSet(userTagQueryDTO.getAnyTags()), toSet(userTagQueryDTO.getExcludeTags()));
+        if (cacheable) {
+            Roaring64Bitmap cached = resultCache.getIfPresent(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Roaring64Bitmap result;
+        lock.readLock().lock();
+        try {
+            if (bitmaps == null) {
+                return null;
+            }
+            result = this.evaluate(userTagQueryDTO);
+            // 在读锁内写入缓存，保证修改索引时的清空不会被修改之前计算的结果覆盖
+            if (cacheable) {
+                resultCache.put(cacheKey, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private static EnumSet<UserTagsEnum> toSet(List<UserTagsEnum> userTagsEnumList) {
+        return CollectionUtils.isEmpty(userTagsEnumList) ? EnumSet.noneOf(UserTagsEnum.class) : EnumSet.copyOf(userTagsEnumList);
+    }
+
+    /**
+     * 在读锁内计算结果，参与计算的位图都不会被修改，只修改复制出来的结果
+     */
+    private Roaring64Bitmap evaluate(UserTagQueryDTO userTagQueryDTO) {
+        Roaring64Bitmap result = null;
+        if (!CollectionUtils.isEmpty(userTagQueryDTO.getAllTags())) {
+            for (UserTagsEnum userTagsEnum : userTagQueryDTO.getAllTags()) {
+                if (result == null) {
+                    result = bitmaps.get(userTagsEnum).clone();
+                } else {
+                    result.and(bitmaps.get(userTagsEnum));
+                }
+            }
+        }
+        if (!CollectionUtils.isEmpty(userTagQueryDTO.getAnyTags())) {
+            Roaring64Bitmap union = new Roaring64Bitmap();
+            for (UserTagsEnum userTagsEnum : userTagQueryDTO.getAnyTags()) {
+                union.or(bitmaps.get(userTagsEnum));
+            }
+            if (result == null) {
+                result = union;
+            } else {
+                result.and(union);
+            }
+        }
+        if (!CollectionUtils.isEmpty(userTagQueryDTO.getExcludeTags())) {
+            for (UserTagsEnum userTagsEnum : userTagQueryDTO.getExcludeTags()) {
+                result.andNot(bitmaps.get(userTagsEnum));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在后台线程中重建
+     *
+     * @return 已经有重建任务在执行时返回false
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(this::doRebuild, "user-tag-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 按照userId顺序分页扫描所有分表重建位图，重放重建期间的修改后整体替换
+     */
+    private void doRebuild() {
+        long startTime = System.currentTimeMillis();
+        Queue<TagChange> changes = new ConcurrentLinkedQueue<>();
+        rebuildChanges = changes;
+        try {
+            Map<UserTagsEnum, Roaring64Bitmap> newBitmaps = newBitmaps();
+            int pageSize = Math.max(1, userTagIndexProperties.getRebuildPageSize());
+            long lastUserId = Long.MIN_VALUE;
+            long count = 0;
+            List<UserTagPO> userTagPOList;
+            do {
+                userTagPOList = userTagMapper.selectTagAfter(lastUserId, pageSize);
+                for (UserTagPO userTagPO : userTagPOList) {
+                    for (UserTagsEnum userTagsEnum : UserTagsEnum.values()) {
+                        if (TagInfoUtils.isContain(tagInfoOf(userTagPO, userTagsEnum.getFieldName()), userTagsEnum.getTag())) {
+                            newBitmaps.get(userTagsEnum).addLong(userTagPO.getUserId());
+                        }
+                    }
+                    lastUserId = userTagPO.getUserId();
+                }
+                count += userTagPOList.size();
+            } while (userTagPOList.size() == pageSize);
+            newBitmaps.values().forEach(Roaring64Bitmap::runOptimize);
+            lock.writeLock().lock();
+            try {
+                // 写锁内不会再有新的修改，重放后替换
+                rebuildChanges = null;
+                for (TagChange change : changes) {
+                    apply(newBitmaps, change.userId, change.userTagsEnum, change.set);
+                }
+                bitmaps = newBitmaps;
+                resultCache.invalidateAll();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            LOGGER.info("[UserTagBitmapIndex] rebuild finish,count is {},replay is {},cost {}ms", count, changes.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            LOGGER.error("[UserTagBitmapIndex] rebuild is error", e);
+        } finally {
+            rebuildChanges = null;
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 索引的当前状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", userTagIndexProperties.isEnabled());
+        stats.put("rebuilding", rebuilding.get());
+        lock.readLock().lock();
+        try {
+            stats.put("ready", bitmaps != null);
+            if (bitmaps != null) {
+                Map<String, Object> tagStats = new LinkedHashMap<>();
+                for (Map.Entry<UserTagsEnum, Roaring64Bitmap> entry : bitmaps.entrySet()) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("cardinality", entry.getValue().getLongCardinality());
+                    item.put("sizeInBytes", entry.getValue().getLongSizeInBytes());
+                    tagStats.put(entry.getKey().name(), item);
+                }
+                stats.put("tags", tagStats);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    private static Map<UserTagsEnum, Roaring64Bitmap> newBitmaps() {
+        Map<UserTagsEnum, Roaring64Bitmap> newBitmaps = new EnumMap<>(UserTagsEnum.class);
+        for (UserTagsEnum userTagsEnum : UserTagsEnum.values()) {
+            newBitmaps.put(userTagsEnum, new Roaring64Bitmap());
+        }
+        return newBitmaps;
+    }
+
+    private static void apply(Map<UserTagsEnum, Roaring64Bitmap> target, Long userId, UserTagsEnum userTagsEnum, boolean set) {
+        if (set) {
+            target.get(userTagsEnum).addLong(userId);
+        } else {
+            target.get(userTagsEnum).removeLong(userId);
+        }
+    }
+
+    private static Long tagInfoOf(UserTagPO userTagPO, String fieldName) {
+        if (UserTagFieldNameConstants.TAG_INFO_01.equals(fieldName)) {
+            return userTagPO.getTagInfo01();
+        } else if (UserTagFieldNameConstants.TAG_INFO_02.equals(fieldName)) {
+            return userTagPO.getTagInfo02();
+        } else if (UserTagFieldNameConstants.TAG_INFO_03.equals(fieldName)) {
+            return userTagPO.getTagInfo03();
+        }
+        return null;
+    }
+
+    private record TagChange(Long userId, UserTagsEnum userTagsEnum, boolean set) {
+    }
+}
@@ -0,0 +1,34 @@
+package fun.timu.live.user.provider.service.index;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 用户标签位图索引的actuator端点，GET查看每个标签的用户数和内存占用，POST触发重建
+ */
+@Component
+@Endpoint(id = "usertagindex")
+public class UserTagBitmapIndexEndpoint {
+
+    private final UserTagBitmapIndex userTagBitmapIndex;
+
+    public UserTagBitmapIndexEndpoint(UserTagBitmapIndex userTagBitmapIndex) {
+        this.userTagBitmapIndex = userTagBitmapIndex;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return userTagBitmapIndex.stats();
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        Map<String, Object> stats = userTagBitmapIndex.stats();
+        stats.put("rebuildStarted", userTagBitmapIndex.rebuildAsync());
+        return stats;
+    }
+}
@@ -0,0 +1,212 @@
+package fun.timu.live.user.provider.service.loader;
+
+import fun.timu.live.common.interfaces.utils.ConvertBeanUtils;
+import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.dto.UserDTO;
+import fun.timu.live.user.provider.config.UserBatchLoadProperties;
+import fun.timu.live.user.provider.config.UserBloomFilterProperties;
+import fun.timu.live.user.provider.config.UserInfoCacheProperties;
+import fun.timu.live.user.provider.dao.mapper.IUserMapper;
+import fun.timu.live.user.provider.service.cache.UserInfoHashCache;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 用户信息的批量回源加载器
+ * <p>
+ * 缓存未命中的userId先按照分表（userId % 100）分组，再把相邻分表的分组合并成不超过maxIdsPerQuery的查询，
+ * 每次查询由sharding-jdbc路由到其中涉及的分表并合并结果；查询在独立的有界线程池中执行，
+ * 不占用公共的ForkJoinPool，同时限制了单个节点批量查询占用的数据库连接数；同样按照userId分表的其他表也通过queryByShard共用
+ */
+@Component
+public class UserInfoBatchLoader implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserInfoBatchLoader.class);
+    private static final int SHARD_COUNT = 100;
+
+    private final IUserMapper userMapper;
+    private final UserBatchLoadProperties userBatchLoadProperties;
+    private final UserBloomFilterProperties userBloomFilterProperties;
+    private final ThreadPoolExecutor loadExecutor;
+    @Resource(name = "userDTORedisTemplate")
+    private RedisTemplate<String, UserDTO> redisTemplate;
+    @Resource
+    private UserProviderCacheKeyBuilder cacheKeyBuilder;
+    @Resource
+    private UserInfoCacheProperties userInfoCacheProperties;
+    @Resource
+    private UserInfoHashCache userInfoHashCache;
+
+    public UserInfoBatchLoader(IUserMapper userMapper, UserBatchLoadProperties userBatchLoadProperties,
+                               UserBloomFilterProperties userBloomFilterProperties) {
+        this.userMapper = userMapper;
+        this.userBatchLoadProperties = userBatchLoadProperties;
+        this.userBloomFilterProperties = userBloomFilterProperties;
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = userBatchLoadProperties.getThreads();
+        this.loadExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(userBatchLoadProperties.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r);
+            thread.setName("user-batch-load-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.loadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 从数据库中批量加载用户信息，并回填到redis中，数据库中不存在的userId回填空值缓存对象
+     *
+     * @param userIds 缓存未命中的userId，不能包含重复的值
+     * @return 数据库中存在的用户信息
+     */
+    public List<UserDTO> loadAndCache(Collection<Long> userIds) {
+        List<UserDTO> userDTOList = this.load(userIds);
+        Set<Long> existUserIdSet = new HashSet<>(userDTOList.size() * 2);
+        for (UserDTO userDTO : userDTOList) {
+            existUserIdSet.add(userDTO.getUserId());
+        }
+        List<Long> notExistUserIdList = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (!existUserIdSet.contains(userId)) {
+                notExistUserIdList.add(userId);
+            }
+        }
+        this.writeBack(userDTOList, notExistUserIdList);
+        return userDTOList;
+    }
+
+    /**
+     * 从数据库中批量加载用户信息
+     */
+    public List<UserDTO> load(Collection<Long> userIds) {
+        return ConvertBeanUtils.convertList(this.queryByShard(userIds, userMapper::selectBatchIds), UserDTO.class);
+    }
+
+    /**
+     * 按照分表合并userId后批量查询，适用于所有按照userId % 100分表的表
+     *
+     * @param userIds 需要查询的userId，不能包含重复的值
+     * @param query   按照一组userId查询的方法
+     * @return 所有查询结果合并后的列表
+     */
+    public <T> List<T> queryByShard(Collection<Long> userIds, Function<List<Long>, List<T>> query) {
+        List<List<Long>> queryList = this.partition(userIds);
+        if (queryList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 只有一次查询时直接在调用线程中执行，避免线程切换
+        if (queryList.size() == 1) {
+            return query.apply(queryList.get(0));
+        }
+        List<CompletableFuture<List<T>>> futureList = new ArrayList<>(queryList.size());
+        for (List<Long> queryIds : queryList) {
+            futureList.add(CompletableFuture.supplyAsync(() -> query.apply(queryIds), loadExecutor));
+        }
+        List<T> resultList = new ArrayList<>(userIds.size());
+        for (CompletableFuture<List<T>> future : futureList) {
+            resultList.addAll(future.join());
+        }
+        return resultList;
+    }
+
+    /**
+     * 按照分表分组后，把相邻分表的userId合并成不超过maxIdsPerQuery的查询，单个分表超过上限时拆分成多次查询
+     */
+    List<List<Long>> partition(Collection<Long> userIds) {
+        Map<Integer, List<Long>> shardMap = new TreeMap<>();
+        for (Long userId : userIds) {
+            shardMap.computeIfAbsent((int) (userId % SHARD_COUNT), shard -> new ArrayList<>()).add(userId);
+        }
+        int maxIdsPerQuery = Math.max(1, userBatchLoadProperties.getMaxIdsPerQuery());
+        List<List<Long>> queryList = new ArrayList<>();
+        List<Long> current = new ArrayList<>(Math.min(maxIdsPerQuery, userIds.size()));
+        for (List<Long> shardIds : shardMap.values()) {
+            for (Long userId : shardIds) {
+                current.add(userId);
+                if (current.size() == maxIdsPerQuery) {
+                    queryList.add(current);
+                    current = new ArrayList<>(maxIdsPerQuery);
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            queryList.add(current);
+        }
+        return queryList;
+    }
+
+    /**
+     * 在一次pipeline中以SET EX的方式回填redis，过期时间加上随机值避免同时过期，空值缓存对象使用较短的过期时间
+     * hash模式下只在缓存不存在时回填，不会覆盖修改时写入的字段和脏标记
+     */
+    private void writeBack(List<UserDTO> userDTOList, List<Long> notExistUserIdList) {
+        if (userDTOList.isEmpty() && notExistUserIdList.isEmpty()) {
+            return;
+        }
+        if (userInfoCacheProperties.isHashMode()) {
+            try {
+                userInfoHashCache.putAllIfAbsent(userDTOList, notExistUserIdList, createRandomTime(), userBloomFilterProperties.getNullMarkerTtl());
+            } catch (Exception e) {
+                LOGGER.error("[writeBack] user info hash cache write back is error,size is {}", userDTOList.size() + notExistUserIdList.size(), e);
+            }
+            return;
+        }
+        Map<String, UserDTO> saveCacheMap = new HashMap<>(userDTOList.size() * 2);
+        for (UserDTO userDTO : userDTOList) {
+            saveCacheMap.put(cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId()), userDTO);
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    for (Map.Entry<String, UserDTO> entry : saveCacheMap.entrySet()) {
+                        operations.opsForValue().set((K) entry.getKey(), (V) entry.getValue(), createRandomTime(), TimeUnit.SECONDS);
+                    }
+                    long nullMarkerTtl = userBloomFilterProperties.getNullMarkerTtl().toMillis();
+                    for (Long userId : notExistUserIdList) {
+                        operations.opsForValue().set((K) cacheKeyBuilder.buildUserInfoKey(userId), (V) new UserDTO(), nullMarkerTtl, TimeUnit.MILLISECONDS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.error("[writeBack] user info cache write back is error,size is {}", saveCacheMap.size() + notExistUserIdList.size(), e);
+        }
+    }
+
+    private int createRandomTime() {
+        int jitter = userBatchLoadProperties.getCacheExpireJitterSeconds();
+        int randomNumSecond = jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter) : 0;
+        return randomNumSecond + userBatchLoadProperties.getCacheExpireSeconds();
+    }
+
+    @Override
+    public void destroy() {
+        loadExecutor.shutdown();
+    }
+}
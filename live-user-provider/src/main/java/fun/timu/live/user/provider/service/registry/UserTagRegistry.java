@@ -0,0 +1,269 @@
+package fun.timu.live.user.provider.service.registry;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fun.timu.live.user.constants.UserTagFieldNameConstants;
+import fun.timu.live.user.constants.UserTagsEnum;
+import fun.timu.live.user.dto.UserTagDefineDTO;
+import fun.timu.live.user.provider.config.UserTagRegistryProperties;
+import fun.timu.live.user.provider.dao.mapper.IUserTagDefineMapper;
+import fun.timu.live.user.provider.dao.po.UserTagDefinePO;
+import fun.timu.live.user.utils.UserTagMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户标签注册表
+ * <p>
+ * UserTagsEnum中的标签作为内置定义，占用固定的位；运行时注册的标签在tag_info_01..03中按照字段下标、位从小到大分配空闲的位，
+ * 定义保存在t_user_tag_define中，(field_index, bit_index)的唯一索引保证多个节点同时注册时不会分配到同一个位。
+ * 其他节点注册的标签在第一次使用时按需加载，同时定时全量刷新；
+ * 每个字段只使用低63位，保证标签值为正数
+ */
+@Component
+public class UserTagRegistry implements InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserTagRegistry.class);
+    private static final int BITS_PER_FIELD = Long.SIZE - 1;
+    private static final int MAX_TAG_CODE_LENGTH = 64;
+    /**
+     * 注册时分配到的位被其他节点抢先占用的重试次数
+     */
+    private static final int MAX_REGISTER_RETRY = 3;
+    private static final Map<String, UserTagsEnum> BUILT_IN_ENUMS = new HashMap<>();
+    private static final Map<UserTagsEnum, UserTagDefineDTO> BUILT_IN_DEFINES = new EnumMap<>(UserTagsEnum.class);
+
+    static {
+        for (UserTagsEnum userTagsEnum : UserTagsEnum.values()) {
+            UserTagDefineDTO userTagDefineDTO = new UserTagDefineDTO();
+            userTagDefineDTO.setTagCode(userTagsEnum.name());
+            userTagDefineDTO.setDesc(userTagsEnum.getDesc());
+            userTagDefineDTO.setFieldIndex(UserTagMatcher.fieldIndex(userTagsEnum));
+            userTagDefineDTO.setBitIndex(Long.numberOfTrailingZeros(userTagsEnum.getTag()));
+            BUILT_IN_ENUMS.put(userTagsEnum.name(), userTagsEnum);
+            BUILT_IN_DEFINES.put(userTagsEnum, userTagDefineDTO);
+        }
+    }
+
+    private final IUserTagDefineMapper userTagDefineMapper;
+    private final UserTagRegistryProperties userTagRegistryProperties;
+    /**
+     * 当前生效的标签定义，key为标签编码，每次修改都替换为新的只读map
+     */
+    private volatile Map<String, UserTagDefineDTO> defineMap;
+    /**
+     * 数据库中不存在的标签编码
+     */
+    private final Cache<String, Boolean> unknownCodeCache;
+    private final ScheduledExecutorService refreshExecutor;
+
+    public UserTagRegistry(IUserTagDefineMapper userTagDefineMapper, UserTagRegistryProperties userTagRegistryProperties) {
+        this.userTagDefineMapper = userTagDefineMapper;
+        this.userTagRegistryProperties = userTagRegistryProperties;
+        this.defineMap = builtInDefineMap();
+        this.unknownCodeCache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(userTagRegistryProperties.getUnknownCodeTtl())
+                .build();
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-tag-registry-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long refreshMillis = userTagRegistryProperties.getRefreshInterval().toMillis();
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 内置标签编码对应的枚举
+     *
+     * @return 动态注册的标签返回null
+     */
+    public static UserTagsEnum builtInOf(String tagCode) {
+        return tagCode == null ? null : BUILT_IN_ENUMS.get(tagCode);
+    }
+
+    /**
+     * 内置标签的定义
+     */
+    public UserTagDefineDTO of(UserTagsEnum userTagsEnum) {
+        return BUILT_IN_DEFINES.get(userTagsEnum);
+    }
+
+    /**
+     * 按照标签编码查询定义，本地没有时从数据库加载
+     *
+     * @return 标签没有注册时返回null
+     */
+    public UserTagDefineDTO get(String tagCode) {
+        if (!StringUtils.hasText(tagCode)) {
+            return null;
+        }
+        UserTagDefineDTO userTagDefineDTO = defineMap.get(tagCode);
+        if (userTagDefineDTO != null || unknownCodeCache.getIfPresent(tagCode) != null) {
+            return userTagDefineDTO;
+        }
+        UserTagDefinePO userTagDefinePO = userTagDefineMapper.selectOne(new LambdaQueryWrapper<UserTagDefinePO>()
+                .eq(UserTagDefinePO::getTagCode, tagCode));
+        if (userTagDefinePO == null) {
+            unknownCodeCache.put(tagCode, Boolean.TRUE);
+            return null;
+        }
+        userTagDefineDTO = toDTO(userTagDefinePO);
+        this.putDefine(userTagDefineDTO);
+        return userTagDefineDTO;
+    }
+
+    /**
+     * 批量查询标签定义，结果与tagCodeList一一对应，没有注册的标签为null
+     */
+    public List<UserTagDefineDTO> getAll(List<String> tagCodeList) {
+        List<UserTagDefineDTO> userTagDefineDTOList = new ArrayList<>(tagCodeList.size());
+        for (String tagCode : tagCodeList) {
+            userTagDefineDTOList.add(this.get(tagCode));
+        }
+        return userTagDefineDTOList;
+    }
+
+    /**
+     * 所有的标签定义，包括内置标签和动态标签
+     */
+    public List<UserTagDefineDTO> list() {
+        return new ArrayList<>(defineMap.values());
+    }
+
+    /**
+     * 注册动态标签
+     *
+     * @return 标签编码已经存在时返回已有的定义，没有空闲的位时返回null
+     */
+    public UserTagDefineDTO register(String tagCode, String desc) {
+        if (!StringUtils.hasText(tagCode) || tagCode.length() > MAX_TAG_CODE_LENGTH) {
+            throw new IllegalArgumentException("illegal tag code,tagCode is " + tagCode);
+        }
+        UserTagDefineDTO userTagDefineDTO = this.get(tagCode);
+        if (userTagDefineDTO != null) {
+            return userTagDefineDTO;
+        }
+        for (int i = 0; i < MAX_REGISTER_RETRY; i++) {
+            List<UserTagDefinePO> userTagDefinePOList = userTagDefineMapper.selectList(null);
+            int slot = allocateSlot(userTagDefinePOList);
+            if (slot < 0) {
+                LOGGER.error("[register] no free tag slot,tagCode is {},registered size is {}", tagCode, userTagDefinePOList.size());
+                return null;
+            }
+            UserTagDefinePO userTagDefinePO = new UserTagDefinePO();
+            userTagDefinePO.setTagCode(tagCode);
+            userTagDefinePO.setTagDesc(desc == null ? "" : desc);
+            userTagDefinePO.setFieldIndex(slot / Long.SIZE);
+            userTagDefinePO.setBitIndex(slot % Long.SIZE);
+            try {
+                userTagDefineMapper.insert(userTagDefinePO);
+            } catch (DuplicateKeyException e) {
+                // 相同的标签编码已经被其他节点注册，或者分配到的位已经被占用
+                unknownCodeCache.invalidate(tagCode);
+                userTagDefineDTO = this.get(tagCode);
+                if (userTagDefineDTO != null) {
+                    return userTagDefineDTO;
+                }
+                continue;
+            }
+            userTagDefineDTO = toDTO(userTagDefinePO);
+            unknownCodeCache.invalidate(tagCode);
+            this.putDefine(userTagDefineDTO);
+            LOGGER.info("[register] user tag registered,tagCode is {},fieldIndex is {},bitIndex is {}", tagCode, userTagDefineDTO.getFieldIndex(), userTagDefineDTO.getBitIndex());
+            return userTagDefineDTO;
+        }
+        LOGGER.error("[register] register tag is error after retry,tagCode is {}", tagCode);
+        return null;
+    }
+
+    /**
+     * 从数据库全量刷新动态标签的定义
+     */
+    public void refresh() {
+        try {
+            List<UserTagDefinePO> userTagDefinePOList = userTagDefineMapper.selectList(null);
+            Map<String, UserTagDefineDTO> newDefineMap = builtInDefineMap();
+            for (UserTagDefinePO userTagDefinePO : userTagDefinePOList) {
+                newDefineMap.putIfAbsent(userTagDefinePO.getTagCode(), toDTO(userTagDefinePO));
+            }
+            synchronized (this) {
+                defineMap = Collections.unmodifiableMap(newDefineMap);
+            }
+        } catch (Exception e) {
+            LOGGER.error("[refresh] refresh user tag define is error", e);
+        }
+    }
+
+    /**
+     * 找到第一个没有被内置标签和已注册标签占用的位
+     *
+     * @return 字段下标 * 64 + 位，没有空闲的位时返回-1
+     */
+    static int allocateSlot(List<UserTagDefinePO> userTagDefinePOList) {
+        BitSet usedSlots = new BitSet();
+        for (UserTagDefineDTO userTagDefineDTO : BUILT_IN_DEFINES.values()) {
+            usedSlots.set(userTagDefineDTO.getFieldIndex() * Long.SIZE + userTagDefineDTO.getBitIndex());
+        }
+        for (UserTagDefinePO userTagDefinePO : userTagDefinePOList) {
+            usedSlots.set(userTagDefinePO.getFieldIndex() * Long.SIZE + userTagDefinePO.getBitIndex());
+        }
+        for (int fieldIndex = 0; fieldIndex < UserTagFieldNameConstants.FIELD_NAMES.size(); fieldIndex++) {
+            int slot = usedSlots.nextClearBit(fieldIndex * Long.SIZE);
+            if (slot < fieldIndex * Long.SIZE + BITS_PER_FIELD) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized void putDefine(UserTagDefineDTO userTagDefineDTO) {
+        Map<String, UserTagDefineDTO> newDefineMap = new HashMap<>(defineMap);
+        newDefineMap.putIfAbsent(userTagDefineDTO.getTagCode(), userTagDefineDTO);
+        defineMap = Collections.unmodifiableMap(newDefineMap);
+    }
+
+    private static Map<String, UserTagDefineDTO> builtInDefineMap() {
+        Map<String, UserTagDefineDTO> builtInDefineMap = new HashMap<>();
+        for (UserTagDefineDTO userTagDefineDTO : BUILT_IN_DEFINES.values()) {
+            builtInDefineMap.put(userTagDefineDTO.getTagCode(), userTagDefineDTO);
+        }
+        return builtInDefineMap;
+    }
+
+    private static UserTagDefineDTO toDTO(UserTagDefinePO userTagDefinePO) {
+        UserTagDefineDTO userTagDefineDTO = new UserTagDefineDTO();
+        userTagDefineDTO.setTagCode(userTagDefinePO.getTagCode());
+        userTagDefineDTO.setDesc(userTagDefinePO.getTagDesc());
+        userTagDefineDTO.setFieldIndex(userTagDefinePO.getFieldIndex());
+        userTagDefineDTO.setBitIndex(userTagDefinePO.getBitIndex());
+        return userTagDefineDTO;
+    }
+}
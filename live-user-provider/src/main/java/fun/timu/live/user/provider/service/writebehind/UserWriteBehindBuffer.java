@@ -0,0 +1,420 @@
+package fun.timu.live.user.provider.service.writebehind;
+
+import com.alibaba.fastjson.JSON;
+import fun.timu.live.common.interfaces.topic.UserProviderTopicNames;
+import fun.timu.live.common.interfaces.utils.ConvertBeanUtils;
+import fun.timu.live.framework.redis.starter.hotkey.HotKeyLocalCache;
+import fun.timu.live.framework.redis.starter.key.UserProviderCacheKeyBuilder;
+import fun.timu.live.user.constants.CacheAsyncDeleteCode;
+import fun.timu.live.user.dto.UserCacheAsyncDeleteDTO;
+import fun.timu.live.user.dto.UserDTO;
+import fun.timu.live.user.provider.config.UserInfoCacheProperties;
+import fun.timu.live.user.provider.config.UserWriteBehindProperties;
+import fun.timu.live.user.provider.dao.mapper.IUserMapper;
+import fun.timu.live.user.provider.dao.po.UserPO;
+import fun.timu.live.user.provider.service.cache.UserInfoHashCache;
+import fun.timu.live.user.provider.service.cache.UserInfoLocalCache;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.client.producer.MQProducer;
+import org.apache.rocketmq.common.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户信息修改的写缓冲
+ * <p>
+ * 修改先追加到本地日志并等待落盘，再按照分表（userId % 100）合并到内存缓冲区，同一个用户的多次修改按字段合并，后写入的字段覆盖先写入的；
+ * 后台线程在某个分表缓冲的用户数达到flushSize或者到达flushInterval时刷盘，每张分表执行一条批量更新语句，
+ * 写入数据库后再更新redis缓存和各个节点的本地缓存。刷盘失败的修改会放回缓冲区等待下次重试，对应的日志段文件在全部写入成功前不会删除
+ * <p>
+ * 每次修改在写入缓冲区时记录修改时间（精确到秒，与update_time的精度一致），同一个用户合并后的修改时间取最新的一次；
+ * 同一个用户的修改在不同节点上缓冲时，刷盘时只在记录的update_time不比修改时间更新时才写入，先修改的节点后刷盘也不会覆盖后修改的数据
+ */
+@Component
+public class UserWriteBehindBuffer implements InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserWriteBehindBuffer.class);
+    private static final int SHARD_COUNT = 100;
+
+    private final UserWriteBehindProperties properties;
+    private final IUserMapper userMapper;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private UserProviderCacheKeyBuilder cacheKeyBuilder;
+    @Resource
+    private UserInfoCacheProperties userInfoCacheProperties;
+    @Resource
+    private UserInfoHashCache userInfoHashCache;
+    @Resource
+    private UserInfoLocalCache userInfoLocalCache;
+    @Resource
+    private MQProducer mqProducer;
+    @Resource
+    private HotKeyLocalCache hotKeyLocalCache;
+
+    /**
+     * 每张分表的缓冲区，key为userId，由对应的shardLocks保护
+     */
+    private final Map<Long, UserDTO>[] shardBuffers;
+    private final ReentrantLock[] shardLocks;
+    /**
+     * 写入缓冲区时持有读锁，刷盘时持有写锁交换缓冲区并切换日志段文件，保证日志段文件和被交换的缓冲区一一对应
+     */
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final AtomicInteger pendingUsers = new AtomicInteger();
+    /**
+     * 正在写入数据库的修改，写入完成前同一个用户的新修改不能直接同步写入数据库
+     */
+    private volatile Map<Long, UserDTO> inFlight = Collections.emptyMap();
+    /**
+     * 还没有全部写入数据库的日志段文件，只由刷盘线程访问
+     */
+    private final List<Path> retainedSegments = new ArrayList<>();
+    private final BlockingQueue<Boolean> flushSignal = new ArrayBlockingQueue<>(1);
+    private UserWriteBehindJournal journal;
+    private Thread flushThread;
+    private volatile boolean running;
+
+    public UserWriteBehindBuffer(UserWriteBehindProperties properties, IUserMapper userMapper) {
+        this.properties = properties;
+        this.userMapper = userMapper;
+        this.shardBuffers = newShardBuffers();
+        this.shardLocks = new ReentrantLock[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shardBuffers[i] = new HashMap<>();
+            shardLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        journal = new UserWriteBehindJournal(properties.getJournalDir(), properties.isFsync());
+        // 重放上次退出时还没有写入数据库的修改，对应的段文件在下次刷盘成功后删除
+        for (Path segment : journal.getRecoveredSegments()) {
+            List<UserDTO> userDTOList = UserWriteBehindJournal.read(segment);
+            for (UserDTO userDTO : userDTOList) {
+                this.merge(userDTO, true);
+            }
+            retainedSegments.add(segment);
+            LOGGER.info("[afterPropertiesSet] write behind journal recovered,segment is {},size is {}", segment, userDTOList.size());
+        }
+        running = true;
+        flushThread = new Thread(this::flushLoop, "user-write-behind-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * 把用户信息的修改写入缓冲区
+     *
+     * @return 是否已经写入缓冲区，返回false时调用方需要同步写入数据库
+     */
+    public boolean submit(UserDTO userDTO) {
+        if (!running) {
+            return false;
+        }
+        Long userId = userDTO.getUserId();
+        int shard = (int) (userId % SHARD_COUNT);
+        long position;
+        boolean flushNow;
+        checkpointLock.readLock().lock();
+        try {
+            ReentrantLock shardLock = shardLocks[shard];
+            shardLock.lock();
+            try {
+                Map<Long, UserDTO> buffer = shardBuffers[shard];
+                UserDTO pending = buffer.get(userId);
+                // 缓冲区已满时新用户的修改同步写入数据库，已经在缓冲或者正在刷盘的用户继续写入缓冲区，保证修改的顺序
+                if (pending == null && pendingUsers.get() >= properties.getMaxPendingUsers() && !inFlight.containsKey(userId)) {
+                    return false;
+                }
+                UserDTO edit = copy(userDTO);
+                edit.setUpdateTime(toSeconds(userDTO.getUpdateTime() == null ? new Date() : userDTO.getUpdateTime()));
+                // 日志的写入顺序与合并的顺序保持一致，重放时得到相同的结果
+                position = journal.append(edit);
+                if (pending == null) {
+                    buffer.put(userId, edit);
+                    pendingUsers.incrementAndGet();
+                } else {
+                    mergeFields(pending, edit, true);
+                }
+                flushNow = buffer.size() >= properties.getFlushSize();
+            } finally {
+                shardLock.unlock();
+            }
+        } catch (IOException e) {
+            LOGGER.error("[submit] write behind journal append is error,userId is {}", userId, e);
+            return false;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        try {
+            journal.sync(position);
+        } catch (IOException e) {
+            // 修改已经在缓冲区中，仍然会写入数据库，只是进程崩溃时可能丢失
+            LOGGER.error("[submit] write behind journal sync is error,userId is {}", userId, e);
+        }
+        if (flushNow) {
+            flushSignal.offer(Boolean.TRUE);
+        }
+        return true;
+    }
+
+    public int getPendingUsers() {
+        return pendingUsers.get();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                flushSignal.poll(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                this.flush();
+            } catch (Exception e) {
+                LOGGER.error("[flushLoop] write behind flush is error", e);
+            }
+        }
+    }
+
+    /**
+     * 交换所有分表的缓冲区并切换日志段文件，再按照分表批量写入数据库
+     */
+    void flush() {
+        Map<Long, UserDTO>[] swapped = newShardBuffers();
+        Map<Long, UserDTO> flushing = new HashMap<>();
+        checkpointLock.writeLock().lock();
+        try {
+            if (pendingUsers.get() == 0 && retainedSegments.isEmpty()) {
+                return;
+            }
+            retainedSegments.add(journal.rotate());
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                swapped[i] = shardBuffers[i];
+                shardBuffers[i] = new HashMap<>();
+                flushing.putAll(swapped[i]);
+            }
+            pendingUsers.set(0);
+            inFlight = flushing;
+        } catch (IOException e) {
+            LOGGER.error("[flush] write behind journal rotate is error", e);
+            return;
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+
+        List<UserDTO> flushedList = new ArrayList<>(flushing.size());
+        boolean allSuccess = true;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            if (swapped[i].isEmpty()) {
+                continue;
+            }
+            try {
+                this.flushShard(swapped[i].values());
+                flushedList.addAll(swapped[i].values());
+            } catch (Exception e) {
+                LOGGER.error("[flush] write behind flush shard is error,shard is {},size is {}", i, swapped[i].size(), e);
+                allSuccess = false;
+                // 放回缓冲区等待下次重试，缓冲区中已有的新修改优先
+                for (UserDTO userDTO : swapped[i].values()) {
+                    this.merge(userDTO, false);
+                }
+            }
+        }
+        inFlight = Collections.emptyMap();
+        if (allSuccess) {
+            journal.delete(retainedSegments);
+            retainedSegments.clear();
+        }
+        this.afterFlush(flushedList);
+    }
+
+    /**
+     * 按照flushSize拆分成多条批量更新语句，所有userId都属于同一张分表
+     */
+    private void flushShard(Collection<UserDTO> userDTOs) {
+        int flushSize = Math.max(1, properties.getFlushSize());
+        List<UserPO> batch = new ArrayList<>(Math.min(flushSize, userDTOs.size()));
+        for (UserDTO userDTO : userDTOs) {
+            if (!hasUpdateField(userDTO)) {
+                continue;
+            }
+            UserPO userPO = ConvertBeanUtils.convert(userDTO, UserPO.class);
+            if (userPO.getUpdateTime() == null) {
+                // 升级前写入日志的修改没有修改时间，按照刷盘时间写入
+                userPO.setUpdateTime(toSeconds(new Date()));
+            }
+            batch.add(userPO);
+            if (batch.size() == flushSize) {
+                userMapper.batchUpdateByUserId(batch);
+                batch = new ArrayList<>(flushSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            userMapper.batchUpdateByUserId(batch);
+        }
+    }
+
+    /**
+     * 写入数据库后更新redis缓存，并通知各个节点淘汰本地缓存
+     */
+    private void afterFlush(List<UserDTO> flushedList) {
+        if (flushedList.isEmpty()) {
+            return;
+        }
+        List<Long> userIdList = new ArrayList<>(flushedList.size());
+        try {
+            if (userInfoCacheProperties.isHashMode()) {
+                // 比数据库中更旧的修改不会写入，不能再用缓冲区的字段更新缓存，改为写入脏标记，标记过期后重新加载
+                for (UserDTO userDTO : flushedList) {
+                    userIdList.add(userDTO.getUserId());
+                }
+                userInfoHashCache.markDirty(userIdList);
+            } else {
+                List<String> keyList = new ArrayList<>(flushedList.size());
+                for (UserDTO userDTO : flushedList) {
+                    keyList.add(cacheKeyBuilder.buildUserInfoKey(userDTO.getUserId()));
+                    userIdList.add(userDTO.getUserId());
+                }
+                stringRedisTemplate.delete(keyList);
+            }
+        } catch (Exception e) {
+            LOGGER.error("[afterFlush] user info cache update is error,size is {}", flushedList.size(), e);
+        }
+        for (Long userId : userIdList) {
+            userInfoLocalCache.invalidate(userId);
+            hotKeyLocalCache.invalidate(cacheKeyBuilder.buildUserInfoKey(userId));
+            hotKeyLocalCache.invalidate(userInfoHashCache.buildKey(userId));
+        }
+        // 一次刷盘只发送一条消息，其他节点按照userIdList淘汰本地缓存
+        UserCacheAsyncDeleteDTO userCacheAsyncDeleteDTO = new UserCacheAsyncDeleteDTO();
+        userCacheAsyncDeleteDTO.setCode(CacheAsyncDeleteCode.USER_INFO_DELETE.getCode());
+        Map<String, Object> jsonParam = new HashMap<>();
+        jsonParam.put("userIdList", userIdList);
+        userCacheAsyncDeleteDTO.setJson(JSON.toJSONString(jsonParam));
+        Message message = new Message();
+        message.setTopic(UserProviderTopicNames.CACHE_ASYNC_DELETE_TOPIC);
+        message.setBody(JSON.toJSONString(userCacheAsyncDeleteDTO).getBytes());
+        message.setDelayTimeLevel(1);
+        try {
+            mqProducer.send(message);
+        } catch (Exception e) {
+            LOGGER.error("[afterFlush] send cache delete message is error,size is {}", userIdList.size(), e);
+        }
+    }
+
+    /**
+     * 把修改合并到缓冲区
+     *
+     * @param override 为true时覆盖缓冲区中已有的字段，为false时只补充缓冲区中为null的字段
+     */
+    private void merge(UserDTO userDTO, boolean override) {
+        int shard = (int) (userDTO.getUserId() % SHARD_COUNT);
+        ReentrantLock shardLock = shardLocks[shard];
+        shardLock.lock();
+        try {
+            UserDTO pending = shardBuffers[shard].get(userDTO.getUserId());
+            if (pending == null) {
+                shardBuffers[shard].put(userDTO.getUserId(), copy(userDTO));
+                pendingUsers.incrementAndGet();
+            } else {
+                mergeFields(pending, userDTO, override);
+            }
+        } finally {
+            shardLock.unlock();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<Long, UserDTO>[] newShardBuffers() {
+        return new Map[SHARD_COUNT];
+    }
+
+    private static UserDTO copy(UserDTO userDTO) {
+        UserDTO target = new UserDTO();
+        target.setUserId(userDTO.getUserId());
+        mergeFields(target, userDTO, true);
+        return target;
+    }
+
+    private static void mergeFields(UserDTO target, UserDTO source, boolean override) {
+        if (source.getNickName() != null && (override || target.getNickName() == null)) {
+            target.setNickName(source.getNickName());
+        }
+        if (source.getTrueName() != null && (override || target.getTrueName() == null)) {
+            target.setTrueName(source.getTrueName());
+        }
+        if (source.getAvatar() != null && (override || target.getAvatar() == null)) {
+            target.setAvatar(source.getAvatar());
+        }
+        if (source.getSex() != null && (override || target.getSex() == null)) {
+            target.setSex(source.getSex());
+        }
+        if (source.getWorkCity() != null && (override || target.getWorkCity() == null)) {
+            target.setWorkCity(source.getWorkCity());
+        }
+        if (source.getBornCity() != null && (override || target.getBornCity() == null)) {
+            target.setBornCity(source.getBornCity());
+        }
+        if (source.getBornDate() != null && (override || target.getBornDate() == null)) {
+            target.setBornDate(source.getBornDate());
+        }
+        if (source.getCreateTime() != null && (override || target.getCreateTime() == null)) {
+            target.setCreateTime(source.getCreateTime());
+        }
+        // 修改时间与覆盖的方向无关，总是取最新的一次
+        if (source.getUpdateTime() != null && (target.getUpdateTime() == null || source.getUpdateTime().after(target.getUpdateTime()))) {
+            target.setUpdateTime(source.getUpdateTime());
+        }
+    }
+
+    private static boolean hasUpdateField(UserDTO userDTO) {
+        return userDTO.getNickName() != null || userDTO.getTrueName() != null || userDTO.getAvatar() != null
+                || userDTO.getSex() != null || userDTO.getWorkCity() != null || userDTO.getBornCity() != null
+                || userDTO.getBornDate() != null || userDTO.getCreateTime() != null;
+    }
+
+    private static Date toSeconds(Date date) {
+        return new Date(date.getTime() / 1000 * 1000);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flushThread.interrupt();
+        flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        // 退出前把缓冲区中的修改写入数据库，失败的部分保留在日志中，下次启动时重放
+        this.flush();
+        journal.close();
+    }
+}
@@ -0,0 +1,208 @@
+package fun.timu.live.user.provider.service.writebehind;
+
+import com.alibaba.fastjson.JSON;
+import fun.timu.live.user.dto.UserDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 写缓冲的本地日志，按照段文件顺序追加，每条记录的格式为[长度][crc32][json]
+ * <p>
+ * 每次刷盘前切换到新的段文件，旧段文件中的修改全部写入数据库后才删除；节点启动时按顺序重放残留的段文件，
+ * 同一个用户的修改按照写入顺序合并，重放多次的结果相同。多个线程等待落盘时只有一个线程执行force，其余线程共享结果
+ */
+public class UserWriteBehindJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserWriteBehindJournal.class);
+    private static final String SEGMENT_PREFIX = "user-write-behind-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path dir;
+    private final boolean fsync;
+    private final FileChannel lockChannel;
+    private final FileLock dirLock;
+    /**
+     * 启动时残留的段文件，按照写入顺序排列
+     */
+    private final List<Path> recoveredSegments;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private Path segment;
+    private long segmentSeq;
+    /**
+     * 所有段文件累计写入的字节数，用于判断记录是否已经落盘
+     */
+    private long writtenPosition;
+    private volatile long syncedPosition;
+
+    public UserWriteBehindJournal(String dir, boolean fsync) throws IOException {
+        this.dir = Paths.get(dir);
+        this.fsync = fsync;
+        Files.createDirectories(this.dir);
+        // 同一个目录只允许一个节点使用，避免两个节点互相删除对方的段文件
+        this.lockChannel = FileChannel.open(this.dir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.dirLock = lockChannel.tryLock();
+        if (dirLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("write behind journal dir is used by another process,dir is " + this.dir.toAbsolutePath());
+        }
+        this.recoveredSegments = this.listSegments();
+        this.segmentSeq = recoveredSegments.isEmpty() ? 0 : seqOf(recoveredSegments.get(recoveredSegments.size() - 1));
+        this.openSegment();
+    }
+
+    public List<Path> getRecoveredSegments() {
+        return recoveredSegments;
+    }
+
+    /**
+     * 追加一条记录，不等待落盘
+     *
+     * @return 记录写入后的位置，传给sync等待落盘
+     */
+    public long append(UserDTO userDTO) throws IOException {
+        byte[] body = JSON.toJSONString(userDTO).getBytes(StandardCharsets.UTF_8);
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(body.length).putInt((int) crc32.getValue()).put(body).flip();
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            writtenPosition += HEADER_SIZE + body.length;
+            return writtenPosition;
+        }
+    }
+
+    /**
+     * 等待指定位置之前的记录落盘，并发调用时只有一个线程执行force
+     */
+    public void sync(long position) throws IOException {
+        if (!fsync || syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            synchronized (writeLock) {
+                current = channel;
+                target = writtenPosition;
+            }
+            current.force(false);
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * 落盘并关闭当前的段文件，之后的记录写入新的段文件
+     *
+     * @return 被关闭的段文件
+     */
+    public Path rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.force(false);
+                syncedPosition = writtenPosition;
+                channel.close();
+                Path closed = segment;
+                this.openSegment();
+                return closed;
+            }
+        }
+    }
+
+    /**
+     * 按照写入顺序读取段文件中的记录，末尾不完整或者校验失败的记录会被忽略
+     */
+    public static List<UserDTO> read(Path segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<UserDTO> userDTOList = new ArrayList<>();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                LOGGER.warn("[read] write behind journal is truncated,segment is {}", segment);
+                break;
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes, buffer.position(), length);
+            if ((int) crc32.getValue() != crc) {
+                LOGGER.warn("[read] write behind journal crc is error,segment is {}", segment);
+                break;
+            }
+            userDTOList.add(JSON.parseObject(new String(bytes, buffer.position(), length, StandardCharsets.UTF_8), UserDTO.class));
+            buffer.position(buffer.position() + length);
+        }
+        return userDTOList;
+    }
+
+    public void delete(Collection<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.error("[delete] write behind journal delete is error,segment is {}", path, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.force(false);
+                channel.close();
+                // 没有写入任何记录的段文件直接删除
+                if (Files.size(segment) == 0) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        }
+        dirLock.release();
+        lockChannel.close();
+    }
+
+    private void openSegment() throws IOException {
+        segmentSeq++;
+        segment = dir.resolve(SEGMENT_PREFIX + String.format("%020d", segmentSeq) + SEGMENT_SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted(Comparator.comparingLong(UserWriteBehindJournal::seqOf)).toList();
+        }
+    }
+
+    private static long seqOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -10,6 +10,7 @@ CREATE TABLE `t_id_generate_config`
 	值',
     `step`           INT                                        DEFAULT NULL COMMENT 'id 递增区间',
     `is_seq`         TINYINT                                    DEFAULT NULL COMMENT '是否有序（0 无序，1 有序）',
+    `id_mode`        TINYINT NOT NULL                           DEFAULT '0' COMMENT 'id 生成方式（0 号段，1 雪花算法，2 分条号段）',
     `id_prefix`      VARCHAR(60) CHARACTER
                          SET utf8mb4 COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '业务前缀码，如果没有则返回
 	时不携带',
@@ -19,4 +20,18 @@ CREATE TABLE `t_id_generate_config`
     `update_time`    DATETIME                                   DEFAULT CURRENT_TIMESTAMP ON
 UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`id`)
-) ENGINE=InnoDB AUTO_INCREMENT=8 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
\ No newline at end of file
+) ENGINE=InnoDB AUTO_INCREMENT=8 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE `t_id_generate_worker`
+(
+    `worker_id`      INT NOT NULL COMMENT '雪花算法的 workerId（0-1023）',
+    `instance`       VARCHAR(128) CHARACTER
+                         SET utf8mb4 COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '持有租约的实例标识',
+    `lease_expire`   BIGINT NOT NULL                            DEFAULT '0' COMMENT '租约过期时间戳（毫秒）',
+    `last_timestamp` BIGINT NOT NULL                            DEFAULT '0' COMMENT '持有者最后上报的时间戳（毫秒）',
+    `version`        INT NOT NULL                               DEFAULT '0' COMMENT '乐观锁版本号',
+    `create_time`    DATETIME                                   DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time`    DATETIME                                   DEFAULT CURRENT_TIMESTAMP ON
+UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`worker_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
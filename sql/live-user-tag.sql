@@ -54,4 +54,18 @@ SET i=i+1;
 END WHILE;
 
 END;;
-DELIMITER ;
\ No newline at end of file
+DELIMITER ;
+
+CREATE TABLE `t_user_tag_define`
+(
+    `id`          bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '主键 id',
+    `tag_code`    varchar(64)  NOT NULL COMMENT '标签编码',
+    `tag_desc`    varchar(255) NOT NULL DEFAULT '' COMMENT '标签描述',
+    `field_index` tinyint      NOT NULL COMMENT '标签字段的下标，0对应tag_info_01',
+    `bit_index`   tinyint      NOT NULL COMMENT '标签在字段中的位',
+    `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_tag_code` (`tag_code`),
+    UNIQUE KEY `uk_field_bit` (`field_index`, `bit_index`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_bin
+COMMENT='动态用户标签定义';